@@ -2,8 +2,10 @@ package org.hms.doctor;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class DoctorServiceApplication {
     public static void main(String[] args) {
         SpringApplication.run(DoctorServiceApplication.class, args);
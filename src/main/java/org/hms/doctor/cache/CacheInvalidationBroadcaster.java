@@ -0,0 +1,13 @@
+package org.hms.doctor.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries doctor cache invalidations to every replica. A {@code null} doctor id means
+ * "drop everything". Invalidation is idempotent, so delivering a message back to its sender is harmless.
+ */
+public interface CacheInvalidationBroadcaster {
+    void publish(Long doctorId);
+
+    void subscribe(Consumer<Long> listener);
+}
@@ -0,0 +1,80 @@
+package org.hms.doctor.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hms.doctor.config.ReadWriteRoutingDataSource;
+import org.hms.doctor.model.Doctor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Bounded read-through cache for doctor profiles and department listing pages. Entries expire
+ * after a TTL and are evicted by size; writes invalidate locally and through the broadcaster so
+ * other replicas drop their copies too. Hit/miss/eviction counts are published as cache.* metrics.
+ * For the read-your-writes window after an invalidation, loads read the primary rather than a read
+ * replica, so a lagging replica cannot put the pre-update row back for a whole TTL.
+ */
+@Component
+public class DoctorCache {
+
+    private record PageKey(String department, int page, int size, String sort) {}
+
+    private final Cache<Long, Doctor> doctors;
+    private final Cache<PageKey, Page<Doctor>> pages;
+    private final CacheInvalidationBroadcaster broadcaster;
+    private final long readYourWritesNanos;
+    private volatile long lastInvalidation;
+
+    public DoctorCache(CacheInvalidationBroadcaster broadcaster, MeterRegistry meters,
+                       @Value("${hms.cache.doctors.max-size:10000}") long maxDoctors,
+                       @Value("${hms.cache.pages.max-size:1000}") long maxPages,
+                       @Value("${hms.cache.ttl:PT5M}") Duration ttl,
+                       @Value("${hms.datasource.read-your-writes:PT5S}") Duration readYourWrites) {
+        this.broadcaster = broadcaster;
+        this.readYourWritesNanos = readYourWrites.toNanos();
+        this.lastInvalidation = System.nanoTime() - readYourWritesNanos;
+        this.doctors = Caffeine.newBuilder().maximumSize(maxDoctors).expireAfterWrite(ttl).recordStats().build();
+        this.pages = Caffeine.newBuilder().maximumSize(maxPages).expireAfterWrite(ttl).recordStats().build();
+        CaffeineCacheMetrics.monitor(meters, doctors, "doctors");
+        CaffeineCacheMetrics.monitor(meters, pages, "doctorPages");
+        broadcaster.subscribe(this::invalidateLocal);
+    }
+
+    public Optional<Doctor> getDoctor(Long id, Supplier<Optional<Doctor>> loader) {
+        // misses are not cached, so a doctor created on another replica is visible immediately
+        return Optional.ofNullable(doctors.get(id, k -> load(loader).orElse(null)));
+    }
+
+    public Page<Doctor> getPage(String department, Pageable pageable, Supplier<Page<Doctor>> loader) {
+        PageKey key = new PageKey(department == null ? null : department.toLowerCase(),
+                pageable.getPageNumber(), pageable.getPageSize(), pageable.getSort().toString());
+        return pages.get(key, k -> load(loader));
+    }
+
+    private <T> T load(Supplier<T> loader) {
+        return System.nanoTime() - lastInvalidation < readYourWritesNanos
+                ? ReadWriteRoutingDataSource.onPrimary(loader) : loader.get();
+    }
+
+    /** Drops a doctor (or everything for {@code null}) here and on every other replica. */
+    public void invalidate(Long doctorId) {
+        invalidateLocal(doctorId);
+        broadcaster.publish(doctorId);
+    }
+
+    void invalidateLocal(Long doctorId) {
+        lastInvalidation = System.nanoTime();
+        if (doctorId == null) doctors.invalidateAll();
+        else doctors.invalidate(doctorId);
+        // any change can move a doctor between department pages
+        pages.invalidateAll();
+    }
+}
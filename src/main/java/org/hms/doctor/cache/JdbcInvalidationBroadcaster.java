@@ -0,0 +1,97 @@
+package org.hms.doctor.cache;
+
+import org.hms.doctor.model.CacheInvalidationEvent;
+import org.hms.doctor.repo.CacheInvalidationRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Cross-replica broadcaster over the shared database: invalidations are appended to
+ * doctor_cache_invalidation and every replica polls for rows newer than the last one it saw.
+ * Ids are handed out before commit, so a gap in the ids is waited on for {@code gap-grace} before the
+ * poller moves past it; worst-case staleness on other replicas is one poll interval, plus gap-grace
+ * behind a transaction that commits late.
+ */
+@Component
+@ConditionalOnProperty(name = "hms.cache.broadcaster", havingValue = "jdbc")
+public class JdbcInvalidationBroadcaster implements CacheInvalidationBroadcaster {
+    private static final Logger log = LoggerFactory.getLogger(JdbcInvalidationBroadcaster.class);
+
+    private final CacheInvalidationRepository repo;
+    private final Duration retention;
+    private final Duration gapGrace;
+    private final String instanceId = UUID.randomUUID().toString();
+    private final List<Consumer<Long>> listeners = new CopyOnWriteArrayList<>();
+    private volatile long lastSeenId = -1;
+
+    public JdbcInvalidationBroadcaster(CacheInvalidationRepository repo,
+                                       @Value("${hms.cache.invalidation-retention:PT1H}") Duration retention,
+                                       @Value("${hms.cache.gap-grace:PT2S}") Duration gapGrace) {
+        this.repo = repo;
+        this.retention = retention;
+        this.gapGrace = gapGrace;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        lastSeenId = repo.findMaxId();
+    }
+
+    @Override
+    public void publish(Long doctorId) {
+        CacheInvalidationEvent e = new CacheInvalidationEvent();
+        e.setOrigin(instanceId);
+        e.setDoctorId(doctorId);
+        repo.save(e);
+    }
+
+    @Override
+    public void subscribe(Consumer<Long> listener) {
+        listeners.add(listener);
+    }
+
+    @Scheduled(fixedDelayString = "${hms.cache.poll-ms:1000}")
+    public void poll() {
+        if (lastSeenId < 0) return;
+        try {
+            List<CacheInvalidationEvent> events;
+            int handled;
+            do {
+                events = repo.findTop500ByIdGreaterThanOrderById(lastSeenId);
+                OffsetDateTime settled = OffsetDateTime.now().minus(gapGrace);
+                handled = 0;
+                for (CacheInvalidationEvent e : events) {
+                    // a lower id may belong to a transaction that has not committed yet
+                    if (e.getId() != lastSeenId + 1 && e.getCreatedAt().isAfter(settled)) break;
+                    if (!instanceId.equals(e.getOrigin())) listeners.forEach(l -> l.accept(e.getDoctorId()));
+                    lastSeenId = e.getId();
+                    handled++;
+                }
+            } while (handled == 500);
+        } catch (RuntimeException e) {
+            log.warn("Polling cache invalidations failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "PT10M")
+    public void purge() {
+        try {
+            repo.deleteOlderThan(OffsetDateTime.now().minus(retention));
+        } catch (RuntimeException e) {
+            log.warn("Purging cache invalidations failed: {}", e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.hms.doctor.cache;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Single-process broadcaster: the local cache is already invalidated by the caller, so publishing
+ * only notifies other in-process subscribers. Used for single-instance runs and tests.
+ */
+@Component
+@ConditionalOnProperty(name = "hms.cache.broadcaster", havingValue = "loopback", matchIfMissing = true)
+public class LoopbackInvalidationBroadcaster implements CacheInvalidationBroadcaster {
+    private final List<Consumer<Long>> listeners = new CopyOnWriteArrayList<>();
+
+    @Override
+    public void publish(Long doctorId) {
+        listeners.forEach(l -> l.accept(doctorId));
+    }
+
+    @Override
+    public void subscribe(Consumer<Long> listener) {
+        listeners.add(listener);
+    }
+}
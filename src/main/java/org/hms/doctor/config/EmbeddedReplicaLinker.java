@@ -0,0 +1,77 @@
+package org.hms.doctor.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Local stand-in for a read replica (profile embedded-replica): the replica is a second in-memory H2
+ * database whose tables are H2 linked tables onto the primary, created once Hibernate has built the
+ * schema. Reads routed there see the primary's committed data through separate connections and a
+ * separate pool, which is enough to exercise routing and pool sizing without a MySQL replica.
+ */
+@Component
+@Profile("embedded-replica")
+public class EmbeddedReplicaLinker {
+    private static final Logger log = LoggerFactory.getLogger(EmbeddedReplicaLinker.class);
+
+    private final String primaryUrl;
+    private final String primaryUser;
+    private final String primaryPassword;
+    private final String replicaUrl;
+    private final String replicaUser;
+    private final String replicaPassword;
+    private volatile boolean linked;
+
+    public EmbeddedReplicaLinker(@Value("${spring.datasource.url}") String primaryUrl,
+                                 @Value("${spring.datasource.username:}") String primaryUser,
+                                 @Value("${spring.datasource.password:}") String primaryPassword,
+                                 @Value("${hms.datasource.replica.url}") String replicaUrl,
+                                 @Value("${hms.datasource.replica.username:}") String replicaUser,
+                                 @Value("${hms.datasource.replica.password:}") String replicaPassword) {
+        this.primaryUrl = primaryUrl;
+        this.primaryUser = primaryUser;
+        this.primaryPassword = primaryPassword;
+        this.replicaUrl = replicaUrl;
+        this.replicaUser = replicaUser;
+        this.replicaPassword = replicaPassword;
+    }
+
+    @EventListener(ContextRefreshedEvent.class)
+    public void link() throws SQLException {
+        if (linked) return;
+        List<String> tables = new ArrayList<>();
+        try (Connection primary = DriverManager.getConnection(primaryUrl, primaryUser, primaryPassword);
+             Statement st = primary.createStatement();
+             ResultSet rs = st.executeQuery("select table_name from information_schema.tables"
+                     + " where table_schema = 'public' and table_type = 'BASE TABLE'")) {
+            while (rs.next()) tables.add(rs.getString(1));
+        }
+        try (Connection replica = DriverManager.getConnection(replicaUrl, replicaUser, replicaPassword);
+             Statement st = replica.createStatement()) {
+            for (String table : tables) {
+                st.execute("drop table if exists " + table);
+                st.execute("create linked table " + table + "('org.h2.Driver', " + literal(primaryUrl) + ", "
+                        + literal(primaryUser) + ", " + literal(primaryPassword) + ", " + literal(table) + ") readonly");
+            }
+        }
+        linked = true;
+        log.info("Embedded replica {} linked to {} primary tables", replicaUrl, tables.size());
+    }
+
+    private static String literal(String s) {
+        return "'" + (s == null ? "" : s.replace("'", "''")) + "'";
+    }
+}
@@ -0,0 +1,66 @@
+package org.hms.doctor.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+
+/**
+ * Read replica routing, on when hms.datasource.replica.url is set. spring.datasource (and its hikari
+ * settings) becomes the primary pool, hms.datasource.replica the replica pool, and the application
+ * DataSource routes between them: read-only transactions (profile and department reads, the free-slot
+ * grid, the availability fallback) go to the replica, reserve/confirm/release and every other write
+ * to the primary. Without a replica URL Spring Boot's single pool is used as before.
+ */
+@Configuration
+@ConditionalOnExpression("!'${hms.datasource.replica.url:}'.isBlank()")
+public class ReadReplicaConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource pool = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        pool.setPoolName("primary");
+        return pool;
+    }
+
+    @Bean
+    public HikariDataSource replicaDataSource(@Value("${hms.datasource.replica.url}") String url,
+                                              @Value("${hms.datasource.replica.username:}") String username,
+                                              @Value("${hms.datasource.replica.password:}") String password,
+                                              @Value("${hms.datasource.replica.pool-size:10}") int poolSize) {
+        HikariDataSource pool = new HikariDataSource();
+        pool.setPoolName("replica");
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pool.setMaximumPoolSize(poolSize);
+        pool.setReadOnly(true);
+        return pool;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primaryDataSource,
+                                 @Qualifier("replicaDataSource") DataSource replicaDataSource,
+                                 MeterRegistry meters) {
+        ReadWriteRoutingDataSource router = new ReadWriteRoutingDataSource(primaryDataSource, replicaDataSource, meters);
+        router.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(router);
+    }
+
+    @Bean
+    public ReadYourWritesFilter readYourWritesFilter(@Value("${hms.datasource.read-your-writes:PT5S}") Duration window) {
+        return new ReadYourWritesFilter(window);
+    }
+}
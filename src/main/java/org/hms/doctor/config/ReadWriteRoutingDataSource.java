@@ -0,0 +1,90 @@
+package org.hms.doctor.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Hands out replica connections to read-only transactions and primary connections to everything else
+ * (read-write transactions, non-transactional JDBC, schema updates). The decision is made when a
+ * connection is first needed, so this must sit behind a LazyConnectionDataSourceProxy: the transaction's
+ * read-only flag is only published after the transaction manager has asked for its connection.
+ * Code on a thread inside {@link #onPrimary} always gets the primary, for read-your-writes, and a
+ * read-write transaction marks its thread so the web layer can tell which requests wrote.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+    public enum Target { PRIMARY, REPLICA }
+
+    private static final ThreadLocal<Integer> PINNED = new ThreadLocal<>();
+    private static final ThreadLocal<Boolean> WROTE = new ThreadLocal<>();
+
+    private final Counter primary;
+    private final Counter replica;
+
+    public ReadWriteRoutingDataSource(DataSource primaryPool, DataSource replicaPool, MeterRegistry meters) {
+        setTargetDataSources(Map.of(Target.PRIMARY, primaryPool, Target.REPLICA, replicaPool));
+        setDefaultTargetDataSource(primaryPool);
+        this.primary = Counter.builder("hms.datasource.connections").tag("target", "primary")
+                .description("Connections handed out by the read/write router").register(meters);
+        this.replica = Counter.builder("hms.datasource.connections").tag("target", "replica")
+                .description("Connections handed out by the read/write router").register(meters);
+    }
+
+    /** Pins this thread to the primary until the returned handle is closed; pins nest. */
+    public static Pin pinToPrimary() {
+        Integer depth = PINNED.get();
+        PINNED.set(depth == null ? 1 : depth + 1);
+        return () -> {
+            if (depth == null) PINNED.remove();
+            else PINNED.set(depth);
+        };
+    }
+
+    /** Runs {@code work} with every connection it opens on this thread coming from the primary. */
+    public static <T> T onPrimary(Supplier<T> work) {
+        try (Pin pin = pinToPrimary()) {
+            return work.get();
+        }
+    }
+
+    /** Marks this thread as having written, for a write another thread committed on its behalf. */
+    public static void markWrite() {
+        WROTE.set(Boolean.TRUE);
+    }
+
+    /** Whether a read-write transaction took a connection on this thread since the mark was last taken. */
+    public static boolean hasWriteMark() {
+        return WROTE.get() != null;
+    }
+
+    /** Whether a read-write transaction took a connection on this thread since the last call; clears the mark. */
+    public static boolean takeWriteMark() {
+        boolean wrote = WROTE.get() != null;
+        WROTE.remove();
+        return wrote;
+    }
+
+    public interface Pin extends AutoCloseable {
+        @Override
+        void close();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (PINNED.get() == null) {
+                replica.increment();
+                return Target.REPLICA;
+            }
+        } else if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            WROTE.set(Boolean.TRUE);
+        }
+        primary.increment();
+        return Target.PRIMARY;
+    }
+}
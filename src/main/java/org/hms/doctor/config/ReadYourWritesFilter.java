@@ -0,0 +1,107 @@
+package org.hms.doctor.config;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.time.Duration;
+
+/**
+ * Read-your-writes for replica routing: once a request has run a read-write transaction (a reserve,
+ * confirm, release or roster change) and succeeded, the response carries the time until which the caller
+ * should read from the primary, as the X-Hms-Read-Primary-Until header and a cookie of the same value
+ * (epoch milliseconds). A request bringing either back before that time reads from the primary, on
+ * whichever replica it lands, so an availability check or profile read right after a booking never sees
+ * a lagging replica. Browsers keep the cookie; API callers, including those identified only by
+ * X-User-Role, echo the header. Values further ahead than twice the window are ignored, so a client
+ * cannot pin itself to the primary for longer.
+ */
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+    public static final String HEADER = "X-Hms-Read-Primary-Until";
+    public static final String COOKIE = "hms_read_primary_until";
+
+    private final Duration window;
+
+    public ReadYourWritesFilter(Duration window) {
+        this.window = window;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long now = System.currentTimeMillis();
+        long until = readUntil(request);
+        ReadWriteRoutingDataSource.Pin pin = until > now && until - now <= 2 * window.toMillis()
+                ? ReadWriteRoutingDataSource.pinToPrimary() : null;
+        ReadWriteRoutingDataSource.takeWriteMark();
+        StampingResponse stamping = new StampingResponse(response);
+        try {
+            chain.doFilter(request, stamping);
+        } finally {
+            if (pin != null) pin.close();
+            stamping.stamp();
+            ReadWriteRoutingDataSource.takeWriteMark();
+        }
+    }
+
+    private static long readUntil(HttpServletRequest request) {
+        String value = request.getHeader(HEADER);
+        if (value == null && request.getCookies() != null) {
+            for (Cookie c : request.getCookies()) {
+                if (COOKIE.equals(c.getName())) value = c.getValue();
+            }
+        }
+        if (value == null) return 0;
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** Adds the header and cookie before the response commits, once the request is known to have written. */
+    private final class StampingResponse extends HttpServletResponseWrapper {
+        private boolean stamped;
+
+        StampingResponse(HttpServletResponse response) {
+            super(response);
+        }
+
+        void stamp() {
+            if (stamped || isCommitted()) return;
+            stamped = true;
+            if (getStatus() >= 400 || !ReadWriteRoutingDataSource.hasWriteMark()) return;
+            String until = Long.toString(System.currentTimeMillis() + window.toMillis());
+            setHeader(HEADER, until);
+            addHeader(HttpHeaders.SET_COOKIE, ResponseCookie.from(COOKIE, until)
+                    .path("/").httpOnly(true).sameSite("Lax").maxAge(window.toSeconds() + 1).build().toString());
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            stamp();
+            return super.getOutputStream();
+        }
+
+        @Override
+        public PrintWriter getWriter() throws IOException {
+            stamp();
+            return super.getWriter();
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            stamp();
+            super.flushBuffer();
+        }
+    }
+}
@@ -6,6 +6,7 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.core.userdetails.User;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.provisioning.InMemoryUserDetailsManager;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.security.web.authentication.www.BasicAuthenticationFilter;
@@ -19,9 +20,13 @@ public class SecurityConfig {
         this.roleBasedAccessFilter = roleBasedAccessFilter;
     }
 
-    /** In-memory users for local testing */
+    /**
+     * In-memory users for local testing. Exposed as a plain UserDetailsService: as a
+     * UserDetailsPasswordService Spring would re-encode the {noop} passwords to bcrypt on first
+     * login, after which every Basic-auth request spends ~100 ms in bcrypt.
+     */
     @Bean
-    public InMemoryUserDetailsManager userDetailsService() {
+    public UserDetailsService userDetailsService() {
         UserDetails admin = User.withUsername("admin")
                 .password("{noop}password")   // {noop} ⇒ no encoder (dev only)
                 .roles("ADMIN")
@@ -37,7 +42,8 @@ public class SecurityConfig {
                 .roles("RECEPTION")
                 .build();
 
-        return new InMemoryUserDetailsManager(admin, doctor, reception);
+        InMemoryUserDetailsManager users = new InMemoryUserDetailsManager(admin, doctor, reception);
+        return users::loadUserByUsername;
     }
 
     /** Security chain + RBAC filter registration */
@@ -0,0 +1,199 @@
+package org.hms.doctor.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.hms.doctor.service.DoctorOwnership;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Sends a doctor's reserve, confirm, release and availability requests to the replica that owns the
+ * doctor (see DoctorOwnership) and relays its response. Runs after Spring Security, so only authenticated
+ * and authorized requests are forwarded; the owner authenticates the forwarded Authorization header again.
+ * A forwarded request is always handled where it lands, so replicas with briefly different rings cannot
+ * bounce it around. If the owner refuses the connection (it just died) the request is handled here, which
+ * the row locks keep safe; if it accepted the request but did not answer in time the outcome is unknown,
+ * so the caller gets a 503 to retry, ideally with an Idempotency-Key.
+ */
+@Component
+@ConditionalOnProperty(name = "hms.sharding.enabled", havingValue = "true")
+public class ShardForwardingFilter extends OncePerRequestFilter {
+    static final String FORWARDED_BY = "X-Hms-Forwarded-By";
+    static final String SERVED_BY = "X-Hms-Served-By";
+    private static final String PREFIX = "/v1/doctors/";
+    private static final List<String> REQUEST_HEADERS = List.of("Authorization", "Content-Type", "Accept", "Idempotency-Key",
+            "Cookie", ReadYourWritesFilter.HEADER);
+    private static final List<String> RESPONSE_HEADERS = List.of("Content-Type", "Retry-After", "Idempotent-Replayed", SERVED_BY,
+            "Set-Cookie", ReadYourWritesFilter.HEADER);
+
+    private final DoctorOwnership ownership;
+    private final HttpClient client;
+    private final Duration timeout;
+    private final Counter forwarded;
+    private final Counter unreachable;
+    private final Counter timedOut;
+
+    public ShardForwardingFilter(DoctorOwnership ownership, MeterRegistry meters,
+                                 @Value("${hms.sharding.forward-timeout:PT5S}") Duration timeout) {
+        this.ownership = ownership;
+        this.timeout = timeout;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(1))
+                .build();
+        this.forwarded = counter(meters, "forwarded");
+        this.unreachable = counter(meters, "owner_unreachable");
+        this.timedOut = counter(meters, "timeout");
+    }
+
+    private static Counter counter(MeterRegistry meters, String outcome) {
+        return Counter.builder("scheduling.shard.forwards")
+                .description("Scheduling requests sent to the owning replica")
+                .tag("outcome", outcome)
+                .register(meters);
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !"POST".equals(request.getMethod()) || doctorOf(request.getRequestURI().substring(request.getContextPath().length())) < 0;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        long doctorId = doctorOf(request.getRequestURI().substring(request.getContextPath().length()));
+        String target = request.getHeader(FORWARDED_BY) == null ? ownership.forwardTarget(doctorId) : null;
+        if (target == null) {
+            response.setHeader(SERVED_BY, ownership.getMemberId());
+            chain.doFilter(request, response);
+            return;
+        }
+        byte[] body = request.getInputStream().readAllBytes();
+        HttpRequest.Builder out = HttpRequest.newBuilder(URI.create(target + request.getRequestURI()
+                        + (request.getQueryString() == null ? "" : "?" + request.getQueryString())))
+                .timeout(timeout)
+                .header(FORWARDED_BY, ownership.getMemberId())
+                .POST(HttpRequest.BodyPublishers.ofByteArray(body));
+        for (String name : REQUEST_HEADERS) {
+            String value = request.getHeader(name);
+            if (value != null) out.header(name, value);
+        }
+        HttpResponse<byte[]> in;
+        try {
+            in = client.send(out.build(), HttpResponse.BodyHandlers.ofByteArray());
+        } catch (ConnectException e) {
+            unreachable.increment();
+            response.setHeader(SERVED_BY, ownership.getMemberId());
+            chain.doFilter(new BodyReplay(request, body), response);
+            return;
+        } catch (HttpTimeoutException e) {
+            timedOut.increment();
+            unavailable(response, "owning replica did not answer in time");
+            return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unavailable(response, "interrupted while forwarding to the owning replica");
+            return;
+        }
+        forwarded.increment();
+        response.setStatus(in.statusCode());
+        for (String name : RESPONSE_HEADERS) in.headers().firstValue(name).ifPresent(v -> response.setHeader(name, v));
+        response.getOutputStream().write(in.body());
+    }
+
+    private static void unavailable(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(503);
+        response.setHeader("Retry-After", "1");
+        response.setContentType("application/json");
+        response.getOutputStream().write(("{\"error\":\"" + message + "\"}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** The request with its already consumed body readable again, for handling it here after all. */
+    private static final class BodyReplay extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        BodyReplay(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override public boolean isFinished() { return in.available() == 0; }
+                @Override public boolean isReady() { return true; }
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    // the bytes are already in memory: everything is available at once
+                    try {
+                        if (!isFinished()) listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+                @Override public int read() { return in.read(); }
+                @Override public int read(byte[] b, int off, int len) { return in.read(b, off, len); }
+            };
+        }
+
+        @Override
+        public BufferedReader getReader() {
+            return new BufferedReader(new InputStreamReader(getInputStream(), StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * The doctor id of {id}/availability, {id}/reserve and {id}/reserve/{holdId}/confirm|release under
+     * /v1/doctors/, or -1 for any other path.
+     */
+    static long doctorOf(String path) {
+        if (!path.startsWith(PREFIX)) return -1;
+        int idEnd = digits(path, PREFIX.length());
+        if (idEnd < 0) return -1;
+        String rest = path.substring(idEnd);
+        if (!rest.equals("/availability") && !rest.equals("/reserve")) {
+            if (!rest.startsWith("/reserve/")) return -1;
+            int holdEnd = digits(path, idEnd + "/reserve/".length());
+            if (holdEnd < 0) return -1;
+            String action = path.substring(holdEnd);
+            if (!action.equals("/confirm") && !action.equals("/release")) return -1;
+        }
+        try {
+            return Long.parseLong(path, PREFIX.length(), idEnd, 10);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // end of the run of digits starting at from, or -1 if there is none
+    private static int digits(String s, int from) {
+        int i = from;
+        while (i < s.length() && s.charAt(i) >= '0' && s.charAt(i) <= '9') i++;
+        return i == from ? -1 : i;
+    }
+}
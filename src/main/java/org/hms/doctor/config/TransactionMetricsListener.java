@@ -0,0 +1,61 @@
+package org.hms.doctor.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionExecution;
+import org.springframework.transaction.TransactionExecutionListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Times every physical transaction from begin to commit or rollback, tagged by the transactional
+ * method ("SchedulingService.reserve"; "programmatic" for TransactionTemplate). Spring Boot registers
+ * listener beans with the auto-configured transaction manager.
+ */
+@Component
+public class TransactionMetricsListener implements TransactionExecutionListener {
+    private final MeterRegistry meters;
+    private final Map<TransactionExecution, Long> started = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Timer>> timers = new ConcurrentHashMap<>();
+
+    public TransactionMetricsListener(MeterRegistry meters) { this.meters = meters; }
+
+    @Override
+    public void afterBegin(TransactionExecution tx, Throwable beginFailure) {
+        if (beginFailure == null && tx.isNewTransaction()) started.put(tx, System.nanoTime());
+    }
+
+    @Override
+    public void afterCommit(TransactionExecution tx, Throwable commitFailure) {
+        record(tx, commitFailure == null ? "commit" : "commit_failed");
+    }
+
+    @Override
+    public void afterRollback(TransactionExecution tx, Throwable rollbackFailure) {
+        record(tx, "rollback");
+    }
+
+    private void record(TransactionExecution tx, String outcome) {
+        Long begin = started.remove(tx);
+        if (begin == null) return;
+        String name = shortName(tx.getTransactionName());
+        timers.computeIfAbsent(name, n -> new ConcurrentHashMap<>())
+                .computeIfAbsent(outcome, o -> Timer.builder("scheduling.transaction")
+                        .description("Transaction duration from begin to completion")
+                        .tags("name", name, "outcome", outcome)
+                        .publishPercentileHistogram()
+                        .register(meters))
+                .record(System.nanoTime() - begin, TimeUnit.NANOSECONDS);
+    }
+
+    // "org.hms.doctor.service.SchedulingService.reserve" -> "SchedulingService.reserve"
+    private static String shortName(String name) {
+        if (name == null || name.isEmpty()) return "programmatic";
+        int method = name.lastIndexOf('.');
+        int type = method > 0 ? name.lastIndexOf('.', method - 1) : -1;
+        return name.substring(type + 1);
+    }
+}
@@ -0,0 +1,78 @@
+package org.hms.doctor.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Reports virtual threads that block while pinned to their carrier (inside a synchronized block or a
+ * native frame). Listens to the JFR jdk.VirtualThreadPinned event in-process, counts pins as
+ * {@code jvm.threads.virtual.pinned{frame}} by the first application or driver frame on the stack,
+ * and logs the stack the first time a frame is seen.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadPinningMonitor {
+    private static final Logger log = LoggerFactory.getLogger(VirtualThreadPinningMonitor.class);
+
+    private final MeterRegistry meters;
+    private final Duration threshold;
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(MeterRegistry meters,
+                                       @Value("${hms.virtual-threads.pinning-threshold-ms:20}") long thresholdMs) {
+        this.meters = meters;
+        this.threshold = Duration.ofMillis(thresholdMs);
+    }
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable("jdk.VirtualThreadPinned").withThreshold(threshold).withStackTrace();
+        stream.onEvent("jdk.VirtualThreadPinned", this::onPinned);
+        stream.startAsync();
+        log.info("Virtual threads enabled; reporting pins longer than {} ms", threshold.toMillis());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) stream.close();
+    }
+
+    private void onPinned(RecordedEvent event) {
+        String frame = culprit(event);
+        counters.computeIfAbsent(frame, f -> {
+            log.warn("Virtual thread pinned for {} ms at {}\n{}", event.getDuration().toMillis(), f, event.getStackTrace());
+            return Counter.builder("jvm.threads.virtual.pinned")
+                    .description("Virtual threads that blocked while pinned to a carrier")
+                    .tag("frame", f)
+                    .register(meters);
+        }).increment();
+    }
+
+    // first frame outside the JDK, e.g. "com.mysql.cj.NativeSession.execSQL"
+    private static String culprit(RecordedEvent event) {
+        if (event.getStackTrace() == null) return "unknown";
+        for (RecordedFrame f : event.getStackTrace().getFrames()) {
+            if (!f.isJavaFrame()) continue;
+            String type = f.getMethod().getType().getName();
+            if (type.startsWith("java.") || type.startsWith("jdk.") || type.startsWith("sun.")) continue;
+            return type + "." + f.getMethod().getName();
+        }
+        return "jdk";
+    }
+}
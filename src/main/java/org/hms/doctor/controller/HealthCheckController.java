@@ -1,5 +1,6 @@
 package org.hms.doctor.controller;
 
+import org.hms.doctor.service.OccupancySnapshot;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import java.time.OffsetDateTime;
@@ -9,6 +10,12 @@ import java.util.Map;
 @RequestMapping("/healthcheck")
 public class HealthCheckController {
 
+    private final OccupancySnapshot occupancy;
+
+    public HealthCheckController(OccupancySnapshot occupancy) {
+        this.occupancy = occupancy;
+    }
+
     // --- Liveness probe ---
     @GetMapping("/live")
     public ResponseEntity<Map<String, Object>> live() {
@@ -25,8 +32,8 @@ public class HealthCheckController {
     @GetMapping("/ready")
     public ResponseEntity<Map<String, Object>> ready() {
         try {
-            // optionally check DB or cache connectivity
-            // e.g. run a lightweight query if you want
+            // not ready until the slot occupancy index is loaded (snapshot or full rebuild)
+            if (!occupancy.isStarted()) throw new IllegalStateException("slot occupancy index loading");
             return ResponseEntity.ok(
                     Map.of(
                             "status", "READY",
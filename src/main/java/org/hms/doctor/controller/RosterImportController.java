@@ -0,0 +1,48 @@
+package org.hms.doctor.controller;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.hms.doctor.dto.ImportJobStatus;
+import org.hms.doctor.importer.RosterImportService;
+import org.hms.doctor.service.AdmissionRejectedException;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+@RestController
+@RequestMapping("/v1/admin/doctors/import")
+public class RosterImportController {
+    private final RosterImportService importer;
+    public RosterImportController(RosterImportService importer) { this.importer = importer; }
+
+    /** Streams the request body (text/csv) into the roster; returns when the whole file has been processed. */
+    @PostMapping(consumes = {"text/csv", "text/plain", "application/octet-stream"})
+    public ResponseEntity<?> importRoster(HttpServletRequest request,
+                                          @RequestParam(required = false) String jobId) throws IOException {
+        try (Reader in = new BufferedReader(new InputStreamReader(request.getInputStream(), StandardCharsets.UTF_8))) {
+            ImportJobStatus status = importer.importRoster("upload", in, jobId);
+            return ResponseEntity.ok(status);
+        } catch (IllegalStateException ex) {
+            return ResponseEntity.status(409).body(java.util.Map.of("error", ex.getMessage()));
+        } catch (AdmissionRejectedException ex) {
+            return ResponseEntity.status(429)
+                    .header("Retry-After", Long.toString(ex.getRetryAfterSeconds()))
+                    .body(java.util.Map.of("error", ex.getMessage()));
+        }
+    }
+
+    @GetMapping("/{jobId}")
+    public ResponseEntity<ImportJobStatus> get(@PathVariable String jobId) {
+        return importer.find(jobId).map(ResponseEntity::ok).orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping
+    public ResponseEntity<List<ImportJobStatus>> list() {
+        return ResponseEntity.ok(importer.list());
+    }
+}
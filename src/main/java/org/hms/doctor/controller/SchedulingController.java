@@ -1,20 +1,121 @@
 package org.hms.doctor.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.hms.doctor.dto.*;
+import org.hms.doctor.model.ScheduleRule;
 import org.hms.doctor.model.SlotHold;
+import org.hms.doctor.service.AdmissionRejectedException;
+import org.hms.doctor.service.ConfirmPipeline;
+import org.hms.doctor.service.DoctorAdmissionLanes;
+import org.hms.doctor.service.FreeSlotService;
+import org.hms.doctor.service.IdempotencyKeyReusedException;
+import org.hms.doctor.service.IdempotencyStore;
+import org.hms.doctor.service.NextAvailableService;
 import org.hms.doctor.service.SchedulingService;
+import org.hms.doctor.service.WorkingCalendar;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.Principal;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/v1/doctors")
 public class SchedulingController {
+    private static final MediaType NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final SchedulingService svc;
-    public SchedulingController(SchedulingService svc) { this.svc = svc; }
+    private final FreeSlotService freeSlots;
+    private final DoctorAdmissionLanes lanes;
+    private final ConfirmPipeline confirms;
+    private final NextAvailableService nextAvailable;
+    private final WorkingCalendar calendar;
+    private final IdempotencyStore idempotency;
+    private final ObjectMapper mapper;
+    public SchedulingController(SchedulingService svc, FreeSlotService freeSlots, NextAvailableService nextAvailable,
+                                WorkingCalendar calendar, DoctorAdmissionLanes lanes, ConfirmPipeline confirms, IdempotencyStore idempotency,
+                                ObjectMapper mapper) {
+        this.svc = svc;
+        this.freeSlots = freeSlots;
+        this.nextAvailable = nextAvailable;
+        this.calendar = calendar;
+        this.lanes = lanes;
+        this.confirms = confirms;
+        this.idempotency = idempotency;
+        this.mapper = mapper;
+    }
+
+    /** Free 30-minute slots per doctor and day, streamed as one JSON object per line. */
+    @GetMapping("/free-slots")
+    public ResponseEntity<StreamingResponseBody> freeSlots(@RequestParam(required = false) String department,
+                                                           @RequestParam(required = false) List<Long> doctorIds,
+                                                           @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+                                                           @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+                                                           @RequestParam(defaultValue = "Z") String offset) {
+        List<Long> ids;
+        ZoneOffset zone;
+        try {
+            zone = ZoneOffset.of(offset);
+            ids = freeSlots.resolveDoctors(department, doctorIds, from, to);
+        } catch (IllegalArgumentException | DateTimeException ex) {
+            var error = java.util.Map.of("error", String.valueOf(ex.getMessage()));
+            return ResponseEntity.badRequest().contentType(MediaType.APPLICATION_JSON).body(out -> mapper.writeValue(out, error));
+        }
+        StreamingResponseBody body = out -> freeSlots.streamFreeSlots(ids, from, to, zone, day -> {
+            try {
+                out.write(mapper.writeValueAsBytes(day));
+                out.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(NDJSON).body(body);
+    }
+
+    /** The k earliest free slots across a department (or doctorIds), soonest first. */
+    @GetMapping("/next-available")
+    public ResponseEntity<?> nextAvailable(@RequestParam(required = false) String department,
+                                           @RequestParam(required = false) List<Long> doctorIds,
+                                           @RequestParam(defaultValue = "5") int k,
+                                           @RequestParam(required = false) Integer perDoctor,
+                                           @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) OffsetDateTime after,
+                                           @RequestParam(defaultValue = "14") int days) {
+        try {
+            return ResponseEntity.ok(nextAvailable.nextAvailable(department, doctorIds, k, perDoctor, after, days));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", ex.getMessage()));
+        }
+    }
+
+    @GetMapping("/{id}/schedule")
+    public ResponseEntity<List<ScheduleRule>> schedule(@PathVariable Long id) {
+        return ResponseEntity.ok(calendar.getTemplate(id));
+    }
+
+    /** Replaces the doctor's working-hours template (shifts, breaks, leave). */
+    @PutMapping("/{id}/schedule")
+    public ResponseEntity<?> replaceSchedule(@PathVariable Long id, @RequestBody List<ScheduleRule> rules) {
+        try {
+            return ResponseEntity.ok(calendar.replaceTemplate(id, rules));
+        } catch (IllegalArgumentException ex) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", ex.getMessage()));
+        }
+    }
 
     @PostMapping("/{id}/availability")
-    public ResponseEntity<?> availability(@PathVariable Long id, @RequestBody AvailabilityRequest req, @RequestHeader("X-User-Role") String role) {
-        if (!role.equals("admin") && !role.equals("reception")) return ResponseEntity.status(403).build();
+    public ResponseEntity<?> availability(@PathVariable Long id, @RequestBody AvailabilityRequest req) {
         try {
             boolean ok = svc.isAvailable(id, req);
             return ResponseEntity.ok(java.util.Map.of("available", ok));
@@ -24,40 +125,127 @@ public class SchedulingController {
     }
 
     @PostMapping("/{id}/reserve")
-    public ResponseEntity<?> reserve(@PathVariable Long id, @RequestBody ReserveRequest req, @RequestHeader("X-User-Role") String role) {
-        if (!role.equals("admin") && !role.equals("reception")) return ResponseEntity.status(403).build();
+    public ResponseEntity<?> reserve(@PathVariable Long id, @RequestBody ReserveRequest req,
+                                     @RequestHeader(value = "Idempotency-Key", required = false) String key, Principal principal) {
+        if (req.ttlMinutes==null) req.ttlMinutes = 10;
+        return idempotent("reserve", key, principal, "reserve " + id, req, () -> {
+            try {
+                var resp = lanes.run(id, () -> svc.reserve(id, req));
+                return ResponseEntity.status(201).body(resp);
+            } catch (IllegalArgumentException ex) {
+                return ResponseEntity.badRequest().body(java.util.Map.of("error", ex.getMessage()));
+            } catch (IllegalStateException ex) {
+                return ResponseEntity.status(409).body(java.util.Map.of("error", ex.getMessage()));
+            } catch (AdmissionRejectedException ex) {
+                return tooManyRequests(ex);
+            }
+        });
+    }
+
+    @PostMapping("/reserve/batch")
+    public ResponseEntity<?> reserveBatch(@RequestBody BatchReserveRequest req) {
         try {
-            if (req.ttlMinutes==null) req.ttlMinutes = 10;
-            var resp = svc.reserve(id, req);
+            if (req.items == null) throw new IllegalArgumentException("items required");
+            List<Long> doctorIds = req.items.stream().map(i -> i.doctorId).filter(java.util.Objects::nonNull).toList();
+            var resp = lanes.runAll(doctorIds, () -> svc.reserveBatch(req));
             return ResponseEntity.status(201).body(resp);
         } catch (IllegalArgumentException ex) {
             return ResponseEntity.badRequest().body(java.util.Map.of("error", ex.getMessage()));
         } catch (IllegalStateException ex) {
             return ResponseEntity.status(409).body(java.util.Map.of("error", ex.getMessage()));
+        } catch (AdmissionRejectedException ex) {
+            return tooManyRequests(ex);
         }
     }
 
     @PostMapping("/{id}/reserve/{holdId}/confirm")
-    public ResponseEntity<?> confirm(@PathVariable Long id, @PathVariable Long holdId, @RequestBody ConfirmRequest req, @RequestHeader("X-User-Role") String role) {
-        if (!role.equals("admin")) return ResponseEntity.status(403).build();
+    public ResponseEntity<?> confirm(@PathVariable Long id, @PathVariable Long holdId, @RequestBody ConfirmRequest req,
+                                     @RequestHeader(value = "Idempotency-Key", required = false) String key, Principal principal) {
+        return idempotent("confirm", key, principal, "confirm " + id + "/" + holdId, req, () -> {
+            try {
+                SlotHold h = confirms.confirm(id, holdId, req);
+                return ResponseEntity.ok(h);
+            } catch (IllegalArgumentException ex) {
+                return ResponseEntity.badRequest().body(java.util.Map.of("error", ex.getMessage()));
+            } catch (IllegalStateException ex) {
+                return ResponseEntity.status(409).body(java.util.Map.of("error", ex.getMessage()));
+            } catch (AdmissionRejectedException ex) {
+                return tooManyRequests(ex);
+            }
+        });
+    }
+
+    @PostMapping("/{id}/reserve/{holdId}/release")
+    public ResponseEntity<?> release(@PathVariable Long id, @PathVariable Long holdId,
+                                     @RequestHeader(value = "Idempotency-Key", required = false) String key, Principal principal) {
+        return idempotent("release", key, principal, "release " + id + "/" + holdId, null, () -> {
+            try {
+                lanes.run(id, () -> svc.release(id, holdId));
+                return ResponseEntity.ok().build();
+            } catch (IllegalArgumentException ex) {
+                return ResponseEntity.badRequest().body(java.util.Map.of("error", ex.getMessage()));
+            } catch (IllegalStateException ex) {
+                return ResponseEntity.status(409).body(java.util.Map.of("error", ex.getMessage()));
+            } catch (AdmissionRejectedException ex) {
+                return tooManyRequests(ex);
+            }
+        });
+    }
+
+    /**
+     * Runs the action once per Idempotency-Key (scoped to the caller) and replays its response to
+     * retries. Without the header the action just runs.
+     */
+    private ResponseEntity<?> idempotent(String operation, String key, Principal principal, String route, Object body,
+                                         Supplier<ResponseEntity<?>> action) {
+        if (key == null) return action.get();
+        if (key.isBlank() || key.length() > IdempotencyStore.MAX_KEY_LENGTH) {
+            return ResponseEntity.badRequest().body(java.util.Map.of("error", "Idempotency-Key must be 1-" + IdempotencyStore.MAX_KEY_LENGTH + " characters"));
+        }
+        String scope = (principal == null ? "" : principal.getName()) + ":" + key;
+        IdempotencyStore.Replay replay;
         try {
-            SlotHold h = svc.confirm(id, holdId, req);
-            return ResponseEntity.ok(h);
-        } catch (IllegalArgumentException ex) {
-            return ResponseEntity.badRequest().body(java.util.Map.of("error", ex.getMessage()));
+            replay = idempotency.begin(operation, scope, route + " " + (body == null ? "" : mapper.writeValueAsString(body)));
         } catch (IllegalStateException ex) {
-            return ResponseEntity.status(409).body(java.util.Map.of("error", ex.getMessage()));
+            return ResponseEntity.status(409).header("Retry-After", "1").body(java.util.Map.of("error", ex.getMessage()));
+        } catch (IdempotencyKeyReusedException ex) {
+            return ResponseEntity.unprocessableEntity().body(java.util.Map.of("error", ex.getMessage()));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+        if (replay != null) {
+            var resp = ResponseEntity.status(replay.status()).header("Idempotent-Replayed", "true");
+            return replay.body() == null ? resp.build() : resp.contentType(MediaType.APPLICATION_JSON).body(replay.body());
+        }
+        ResponseEntity<?> resp = null;
+        try {
+            resp = action.get();
+            return resp;
+        } finally {
+            if (resp == null) idempotency.abandon(scope);
+            else idempotency.complete(scope, resp.getStatusCode().value(), serialize(resp.getBody()));
         }
     }
 
-    @PostMapping("/{id}/reserve/{holdId}/release")
-    public ResponseEntity<?> release(@PathVariable Long id, @PathVariable Long holdId, @RequestHeader("X-User-Role") String role) {
-        if (!role.equals("admin") && !role.equals("reception")) return ResponseEntity.status(403).build();
+    private byte[] serialize(Object body) {
         try {
-            svc.release(id, holdId);
-            return ResponseEntity.ok().build();
-        } catch (IllegalArgumentException ex) {
-            return ResponseEntity.badRequest().body(java.util.Map.of("error", ex.getMessage()));
+            return body == null ? null : mapper.writeValueAsBytes(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
         }
     }
+
+    /** The connection pool stayed exhausted for the whole connection-timeout; callers should back off. */
+    @ExceptionHandler({CannotCreateTransactionException.class, CannotGetJdbcConnectionException.class})
+    public ResponseEntity<?> poolExhausted(RuntimeException ex) {
+        return ResponseEntity.status(503)
+                .header("Retry-After", "1")
+                .body(java.util.Map.of("error", "no database connection available"));
+    }
+
+    private ResponseEntity<?> tooManyRequests(AdmissionRejectedException ex) {
+        return ResponseEntity.status(429)
+                .header("Retry-After", Long.toString(ex.getRetryAfterSeconds()))
+                .body(java.util.Map.of("error", ex.getMessage()));
+    }
 }
@@ -0,0 +1,45 @@
+package org.hms.doctor.controller;
+
+import org.hms.doctor.service.SlotEventRelay;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * Server-sent events for slot holds: one "slot" event per HELD, CONFIRMED, RELEASED or EXPIRED transition,
+ * with the outbox offset as the event id. Reconnecting clients send Last-Event-ID (browsers do this
+ * automatically) or {@code ?since=} to resume where they left off.
+ */
+@RestController
+@RequestMapping("/v1/doctors")
+public class SlotEventController {
+    private final SlotEventRelay relay;
+    public SlotEventController(SlotEventRelay relay) { this.relay = relay; }
+
+    @GetMapping("/{id}/events")
+    public ResponseEntity<SseEmitter> doctorEvents(@PathVariable Long id,
+                                          @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                          @RequestParam(required = false) Long since) {
+        return open(id, null, lastEventId, since);
+    }
+
+    @GetMapping("/events")
+    public ResponseEntity<SseEmitter> departmentEvents(@RequestParam String department,
+                                              @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId,
+                                              @RequestParam(required = false) Long since) {
+        return open(null, department, lastEventId, since);
+    }
+
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<?> badRequest(IllegalArgumentException ex) {
+        return ResponseEntity.badRequest().body(java.util.Map.of("error", ex.getMessage()));
+    }
+
+    private ResponseEntity<SseEmitter> open(Long doctorId, String department, String lastEventId, Long since) {
+        // NumberFormatException is an IllegalArgumentException, so a malformed Last-Event-ID is a 400
+        Long from = lastEventId != null && !lastEventId.isBlank() ? Long.valueOf(lastEventId.trim()) : since;
+        return ResponseEntity.ok()
+                .header("X-Accel-Buffering", "no")
+                .body(relay.subscribe(doctorId, department, from));
+    }
+}
@@ -0,0 +1,16 @@
+package org.hms.doctor.dto;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public class BatchReserveRequest {
+    public List<Item> items;
+    public Long appointmentId;
+    public Integer ttlMinutes;
+
+    public static class Item {
+        public Long doctorId;
+        public OffsetDateTime slotStart;
+        public OffsetDateTime slotEnd;
+    }
+}
@@ -0,0 +1,20 @@
+package org.hms.doctor.dto;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class BatchReserveResponse {
+    public List<Hold> holds = new ArrayList<>();
+
+    public static class Hold {
+        public Long holdId;
+        public Long doctorId;
+        public OffsetDateTime slotStart;
+        public OffsetDateTime slotEnd;
+        public OffsetDateTime expiresAt;
+        public Hold(Long holdId, Long doctorId, OffsetDateTime slotStart, OffsetDateTime slotEnd, OffsetDateTime expiresAt) {
+            this.holdId = holdId; this.doctorId = doctorId; this.slotStart = slotStart; this.slotEnd = slotEnd; this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package org.hms.doctor.dto;
+
+import org.hms.doctor.model.Doctor;
+
+import java.util.List;
+
+public class DoctorCursorPage {
+    public List<Doctor> items;
+    public Long nextCursor; // null when there are no more rows
+    public DoctorCursorPage(List<Doctor> items, Long nextCursor) {
+        this.items = items; this.nextCursor = nextCursor;
+    }
+}
@@ -0,0 +1,13 @@
+package org.hms.doctor.dto;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public class FreeSlotDay {
+    public Long doctorId;
+    public LocalDate date;
+    public Integer bookedCount;
+    public Integer capacity;
+    public List<OffsetDateTime> freeSlots;
+}
@@ -0,0 +1,18 @@
+package org.hms.doctor.dto;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public class ImportJobStatus {
+    public String jobId;
+    public String source;
+    public String state;
+    public OffsetDateTime startedAt;
+    public OffsetDateTime finishedAt;
+    public long rowsRead;
+    public long imported;
+    public long duplicates;
+    public long rejected;
+    public long rowsPerSecond;
+    public List<String> errors;
+}
@@ -0,0 +1,11 @@
+package org.hms.doctor.dto;
+
+import java.time.OffsetDateTime;
+
+public class NextAvailableSlot {
+    public Long doctorId;
+    public String name;
+    public OffsetDateTime slotStart;
+    public OffsetDateTime slotEnd;
+    public Integer remainingCapacity; // on the slot's (UTC) day
+}
@@ -0,0 +1,98 @@
+package org.hms.doctor.importer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 tokenizer: quoted fields may contain commas, doubled quotes and line breaks.
+ * Reads one record at a time from the underlying reader, so memory does not depend on file size.
+ */
+public class CsvReader implements Closeable {
+    private static final int MAX_FIELD_LENGTH = 64 * 1024;
+
+    private final Reader in;
+    private final char[] buf = new char[8192];
+    private int pos, len;
+    private long line = 1, recordLine;
+
+    public CsvReader(Reader in) { this.in = in; }
+
+    /** Line number (1-based) where the record last returned by {@link #next()} starts. */
+    public long getRecordLine() { return recordLine; }
+
+    /** Next record, or {@code null} at end of input. Blank lines are skipped. */
+    public List<String> next() throws IOException {
+        while (true) {
+            int c = read();
+            if (c == -1) return null;
+            if (c == '\r' || c == '\n') {
+                if (c == '\n') line++;
+                continue;
+            }
+            pos--;
+            recordLine = line;
+            return record();
+        }
+    }
+
+    private List<String> record() throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false, wasQuoted = false;
+        while (true) {
+            int c = read();
+            if (quoted) {
+                if (c == -1) throw new IOException("unterminated quoted field at line " + line);
+                if (c == '"') {
+                    if (peek() == '"') {
+                        read();
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                    }
+                } else {
+                    if (c == '\n') line++;
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.isEmpty() && !wasQuoted) {
+                quoted = wasQuoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                if (c == '\r' && peek() == '\n') read();
+                if (c != -1) line++;
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) c);
+            }
+            if (field.length() > MAX_FIELD_LENGTH) throw new IOException("field longer than " + MAX_FIELD_LENGTH + " chars at line " + line);
+        }
+    }
+
+    private int read() throws IOException {
+        if (pos == len) {
+            len = in.read(buf, 0, buf.length);
+            pos = 0;
+            if (len <= 0) {
+                len = 0;
+                return -1;
+            }
+        }
+        return buf[pos++];
+    }
+
+    private int peek() throws IOException {
+        int c = read();
+        if (c != -1) pos--;
+        return c;
+    }
+
+    @Override
+    public void close() throws IOException { in.close(); }
+}
@@ -0,0 +1,68 @@
+package org.hms.doctor.importer;
+
+import org.hms.doctor.dto.ImportJobStatus;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Progress of one roster import; counters are updated by the reader and the chunk workers. */
+public class ImportJob {
+    public enum State { RUNNING, COMPLETED, FAILED }
+
+    private static final int MAX_ERRORS = 100;
+
+    private final String id;
+    private final String source;
+    final boolean mergeById;
+    private final OffsetDateTime startedAt = OffsetDateTime.now();
+    private volatile OffsetDateTime finishedAt;
+    private volatile State state = State.RUNNING;
+    final AtomicLong rowsRead = new AtomicLong();
+    final AtomicLong imported = new AtomicLong();
+    final AtomicLong duplicates = new AtomicLong();
+    final AtomicLong rejected = new AtomicLong();
+    private final List<String> errors = new ArrayList<>();
+
+    ImportJob(String id, String source, boolean mergeById) {
+        this.id = id;
+        this.source = source;
+        this.mergeById = mergeById;
+    }
+
+    public String getId() { return id; }
+    public State getState() { return state; }
+
+    /** Keeps the first MAX_ERRORS messages so a bad file cannot grow the job without bound. */
+    void error(long line, String message) {
+        synchronized (errors) {
+            if (errors.size() < MAX_ERRORS) errors.add("line " + line + ": " + message);
+        }
+    }
+
+    void finish(State state) {
+        this.finishedAt = OffsetDateTime.now();
+        this.state = state;
+    }
+
+    public ImportJobStatus snapshot() {
+        ImportJobStatus s = new ImportJobStatus();
+        s.jobId = id;
+        s.source = source;
+        s.state = state.name();
+        s.startedAt = startedAt;
+        s.finishedAt = finishedAt;
+        s.rowsRead = rowsRead.get();
+        s.imported = imported.get();
+        s.duplicates = duplicates.get();
+        s.rejected = rejected.get();
+        long millis = Duration.between(startedAt, finishedAt != null ? finishedAt : OffsetDateTime.now()).toMillis();
+        s.rowsPerSecond = s.rowsRead * 1000 / Math.max(millis, 1);
+        synchronized (errors) {
+            s.errors = List.copyOf(errors);
+        }
+        return s;
+    }
+}
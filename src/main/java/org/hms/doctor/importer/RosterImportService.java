@@ -0,0 +1,262 @@
+package org.hms.doctor.importer;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.hms.doctor.cache.DoctorCache;
+import org.hms.doctor.dto.ImportJobStatus;
+import org.hms.doctor.model.Doctor;
+import org.hms.doctor.repo.DoctorJdbcRepository;
+import org.hms.doctor.service.AdmissionRejectedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Streams a roster CSV into the doctors table. The calling thread only tokenizes and cuts the input
+ * into chunks; parsing, validation, de-duplication and the JDBC batch insert of each chunk run on a
+ * bounded worker pool. A per-job semaphore caps the chunks in flight, so a slow database pushes back
+ * on the reader (and through it on the upload) instead of buffering the file in memory.
+ */
+@Service
+public class RosterImportService {
+    private static final Logger log = LoggerFactory.getLogger(RosterImportService.class);
+
+    private static final int RETAINED_JOBS = 50;
+
+    private record Row(long line, List<String> cols) {}
+
+    private record Parsed(long line, Doctor doctor) {}
+
+    private final DoctorJdbcRepository bulk;
+    private final JdbcTemplate jdbc;
+    private final TransactionTemplate tx;
+    private final DoctorCache cache;
+    private final ThreadPoolExecutor workers;
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final Semaphore jobSlots;
+    private final Map<String, ImportJob> jobs = new LinkedHashMap<>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, ImportJob> eldest) { return size() > RETAINED_JOBS; }
+    };
+    private final Counter importedRows;
+    private final Counter duplicateRows;
+    private final Counter rejectedRows;
+
+    public RosterImportService(DoctorJdbcRepository bulk, JdbcTemplate jdbc, TransactionTemplate tx,
+                               DoctorCache cache, MeterRegistry meters,
+                               @Value("${hms.import.workers:4}") int workerCount,
+                               @Value("${hms.import.chunk-size:2000}") int chunkSize,
+                               @Value("${hms.import.max-in-flight-chunks:8}") int maxInFlight,
+                               @Value("${hms.import.max-concurrent-jobs:2}") int maxConcurrentJobs) {
+        if (workerCount < 1 || chunkSize < 1 || maxInFlight < 1 || maxConcurrentJobs < 1) {
+            throw new IllegalArgumentException("hms.import.* sizes must be >= 1");
+        }
+        this.bulk = bulk;
+        this.jdbc = jdbc;
+        this.tx = tx;
+        this.cache = cache;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+        this.jobSlots = new Semaphore(maxConcurrentJobs);
+        AtomicInteger threadSeq = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "roster-import-" + threadSeq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.workers.allowCoreThreadTimeOut(true);
+        this.importedRows = Counter.builder("roster.import.rows").tag("outcome", "imported").register(meters);
+        this.duplicateRows = Counter.builder("roster.import.rows").tag("outcome", "duplicate").register(meters);
+        this.rejectedRows = Counter.builder("roster.import.rows").tag("outcome", "rejected").register(meters);
+    }
+
+    @PreDestroy
+    public void shutdown() { workers.shutdownNow(); }
+
+    /**
+     * Imports the roster read from {@code in} and returns the final job state. Progress can be polled
+     * through {@link #find(String)} while this runs; pass a {@code jobId} to know the id up front.
+     */
+    public ImportJobStatus importRoster(String source, Reader in, String jobId) {
+        return importRoster(source, in, jobId, false);
+    }
+
+    /**
+     * With {@code mergeById}, rows carrying the id of an existing doctor overwrite it (insert ... on duplicate
+     * key update), so the boot-time seed can be loaded again over its own rows.
+     */
+    public ImportJobStatus importRoster(String source, Reader in, String jobId, boolean mergeById) {
+        if (!jobSlots.tryAcquire()) throw new AdmissionRejectedException("too many roster imports running", 30);
+        try {
+            ImportJob job = register(jobId == null || jobId.isBlank() ? UUID.randomUUID().toString() : jobId, source, mergeById);
+            run(job, in);
+            return job.snapshot();
+        } finally {
+            jobSlots.release();
+        }
+    }
+
+    public Optional<ImportJobStatus> find(String jobId) {
+        synchronized (jobs) {
+            return Optional.ofNullable(jobs.get(jobId)).map(ImportJob::snapshot);
+        }
+    }
+
+    public List<ImportJobStatus> list() {
+        synchronized (jobs) {
+            return jobs.values().stream().map(ImportJob::snapshot).toList();
+        }
+    }
+
+    private ImportJob register(String jobId, String source, boolean mergeById) {
+        synchronized (jobs) {
+            ImportJob existing = jobs.get(jobId);
+            if (existing != null && existing.getState() == ImportJob.State.RUNNING) {
+                throw new IllegalStateException("import " + jobId + " is already running");
+            }
+            ImportJob job = new ImportJob(jobId, source, mergeById);
+            jobs.remove(jobId);
+            jobs.put(jobId, job);
+            return job;
+        }
+    }
+
+    private void run(ImportJob job, Reader in) {
+        // one query up front; workers claim contacts in this shared set instead of querying per row
+        DoctorJdbcRepository.Contacts contacts = bulk.loadContacts();
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        AtomicBoolean explicitIds = new AtomicBoolean();
+        ImportJob.State outcome = ImportJob.State.COMPLETED;
+        try (CsvReader csv = new CsvReader(in)) {
+            List<Row> chunk = new ArrayList<>(chunkSize);
+            boolean first = true;
+            while (true) {
+                List<String> cols = csv.next();
+                if (cols == null) break;
+                if (first) {
+                    first = false;
+                    if (RosterRowParser.isHeader(cols)) continue;
+                }
+                job.rowsRead.incrementAndGet();
+                chunk.add(new Row(csv.getRecordLine(), cols));
+                if (chunk.size() == chunkSize) {
+                    submit(job, chunk, contacts, explicitIds, inFlight);
+                    chunk = new ArrayList<>(chunkSize);
+                }
+            }
+            if (!chunk.isEmpty()) submit(job, chunk, contacts, explicitIds, inFlight);
+        } catch (IOException e) {
+            job.error(0, "read failed: " + e.getMessage());
+            outcome = ImportJob.State.FAILED;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.error(0, "interrupted");
+            outcome = ImportJob.State.FAILED;
+        } finally {
+            // wait for the chunks still on the pool
+            inFlight.acquireUninterruptibly(maxInFlight);
+        }
+
+        if (explicitIds.get()) {
+            // keep AUTO_INCREMENT ahead of ids taken from the file
+            try {
+                jdbc.execute("ALTER TABLE doctors AUTO_INCREMENT = " + (bulk.maxId() + 1));
+            } catch (Exception e) {
+                log.warn("Failed to set AUTO_INCREMENT from max id: {}", e.getMessage());
+            }
+        }
+        if (job.imported.get() > 0) cache.invalidate(null);
+        job.finish(outcome);
+        ImportJobStatus s = job.snapshot();
+        log.info("Roster import {} ({}) {}: read {}, imported {}, duplicates {}, rejected {}, {} rows/s",
+                s.jobId, s.source, s.state, s.rowsRead, s.imported, s.duplicates, s.rejected, s.rowsPerSecond);
+    }
+
+    private void submit(ImportJob job, List<Row> chunk, DoctorJdbcRepository.Contacts contacts,
+                        AtomicBoolean explicitIds, Semaphore inFlight) throws InterruptedException {
+        inFlight.acquire();
+        try {
+            workers.execute(() -> {
+                try {
+                    processChunk(job, chunk, contacts, explicitIds);
+                } finally {
+                    inFlight.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+    }
+
+    private void processChunk(ImportJob job, List<Row> chunk, DoctorJdbcRepository.Contacts contacts, AtomicBoolean explicitIds) {
+        List<Parsed> accepted = new ArrayList<>(chunk.size());
+        for (Row row : chunk) {
+            Doctor d;
+            try {
+                d = RosterRowParser.parse(row.cols());
+            } catch (IllegalArgumentException e) {
+                job.rejected.incrementAndGet();
+                rejectedRows.increment();
+                job.error(row.line(), e.getMessage());
+                continue;
+            }
+            // dedupe by email or phone, against the database and every other row of this import
+            if (!contacts.claim(d.getEmail(), d.getPhone())) {
+                job.duplicates.incrementAndGet();
+                duplicateRows.increment();
+                continue;
+            }
+            if (d.getDoctorId() != null) explicitIds.set(true);
+            accepted.add(new Parsed(row.line(), d));
+        }
+        if (!accepted.isEmpty()) insert(job, accepted, contacts);
+    }
+
+    /**
+     * Inserts the rows as one batch; when the batch fails (a key or unique violation, a value the column
+     * rejects) the halves are retried on their own, down to single rows, so only the offending rows are
+     * rejected and their contacts are given back.
+     */
+    private void insert(ImportJob job, List<Parsed> rows, DoctorJdbcRepository.Contacts contacts) {
+        try {
+            tx.executeWithoutResult(status -> bulk.insertAll(rows.stream().map(Parsed::doctor).toList(), job.mergeById));
+            job.imported.addAndGet(rows.size());
+            importedRows.increment(rows.size());
+        } catch (DataAccessException e) {
+            if (rows.size() > 1) {
+                int half = rows.size() / 2;
+                insert(job, rows.subList(0, half), contacts);
+                insert(job, rows.subList(half, rows.size()), contacts);
+                return;
+            }
+            Parsed row = rows.get(0);
+            contacts.release(row.doctor().getEmail(), row.doctor().getPhone());
+            job.rejected.incrementAndGet();
+            rejectedRows.increment();
+            job.error(row.line(), "insert failed: " + e.getMostSpecificCause().getMessage());
+        }
+    }
+}
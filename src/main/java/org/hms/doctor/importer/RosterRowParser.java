@@ -0,0 +1,70 @@
+package org.hms.doctor.importer;
+
+import org.hms.doctor.model.Doctor;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+/**
+ * Turns one roster CSV record into a Doctor. Accepted layouts:
+ * {@code id,name,email,phone,department,specialization[,created_at]} or the same without the id.
+ */
+public final class RosterRowParser {
+    private RosterRowParser() {}
+
+    /** Header rows name the columns; they contain both "name" and "email". */
+    public static boolean isHeader(List<String> cols) {
+        String joined = String.join(",", cols).toLowerCase();
+        return joined.contains("name") && joined.contains("email");
+    }
+
+    /** @throws IllegalArgumentException when the record is malformed */
+    public static Doctor parse(List<String> cols) {
+        if (cols.size() < 5) throw new IllegalArgumentException("expected at least 5 columns, got " + cols.size());
+
+        // Detect whether first column is an ID
+        Long csvId = null;
+        try {
+            csvId = Long.parseLong(cols.get(0).trim());
+        } catch (NumberFormatException ignored) {
+        }
+        int o = csvId != null ? 1 : 0;
+        if (csvId != null && cols.size() < 6) throw new IllegalArgumentException("expected at least 6 columns when an id is present");
+
+        String name = blankToNull(cols.get(o));
+        String department = blankToNull(cols.get(o + 3));
+        if (name == null) throw new IllegalArgumentException("name is required");
+        if (department == null) throw new IllegalArgumentException("department is required");
+
+        Doctor d = new Doctor();
+        d.setDoctorId(csvId);
+        d.setName(name);
+        d.setEmail(blankToNull(cols.get(o + 1)));
+        d.setPhone(blankToNull(cols.get(o + 2)));
+        d.setDepartment(department);
+        d.setSpecialization(cols.size() > o + 4 ? blankToNull(cols.get(o + 4)) : null);
+        d.setCreatedAt(parseCreatedAt(cols.size() > o + 5 ? blankToNull(cols.get(o + 5)) : null));
+        d.setActive(true);
+        return d;
+    }
+
+    // ISO first, then "yyyy-MM-dd HH:mm:ss" as UTC, else now
+    private static OffsetDateTime parseCreatedAt(String s) {
+        if (s == null) return OffsetDateTime.now();
+        try {
+            return OffsetDateTime.parse(s);
+        } catch (Exception ex1) {
+            try {
+                return OffsetDateTime.parse(s.replace(" ", "T") + "Z");
+            } catch (Exception ex2) {
+                return OffsetDateTime.now();
+            }
+        }
+    }
+
+    private static String blankToNull(String s) {
+        if (s == null) return null;
+        s = s.trim();
+        return s.isEmpty() ? null : s;
+    }
+}
@@ -0,0 +1,27 @@
+package org.hms.doctor.model;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "doctor_cache_invalidation")
+public class CacheInvalidationEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private String origin;
+
+    private Long doctorId; // null = everything
+
+    private OffsetDateTime createdAt = OffsetDateTime.now();
+
+    public Long getId(){return id;}
+    public void setId(Long id){this.id=id;}
+    public String getOrigin(){return origin;}
+    public void setOrigin(String origin){this.origin=origin;}
+    public Long getDoctorId(){return doctorId;}
+    public void setDoctorId(Long doctorId){this.doctorId=doctorId;}
+    public OffsetDateTime getCreatedAt(){return createdAt;}
+    public void setCreatedAt(OffsetDateTime createdAt){this.createdAt=createdAt;}
+}
@@ -1,10 +1,12 @@
 package org.hms.doctor.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import java.time.OffsetDateTime;
+import java.util.Locale;
 
 @Entity
-@Table(name = "doctors")
+@Table(name = "doctors", indexes = {@Index(name = "idx_doctor_department_key", columnList = "department_key,doctor_id")})
 public class Doctor {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -22,6 +24,11 @@ public class Doctor {
     @Column(nullable = false)
     private String department;
 
+    // lower-cased, trimmed department for indexed filtering; maintained on every write
+    @JsonIgnore
+    @Column(name = "department_key", length = 100)
+    private String departmentKey;
+
     private String specialization;
 
     private Integer dailyCapacity = 20;
@@ -44,6 +51,7 @@ public class Doctor {
     public void setPhone(String phone){this.phone=phone;}
     public String getDepartment(){return department;}
     public void setDepartment(String department){this.department=department;}
+    public String getDepartmentKey(){return departmentKey;}
     public String getSpecialization(){return specialization;}
     public void setSpecialization(String specialization){this.specialization=specialization;}
     public Integer getDailyCapacity(){return dailyCapacity;}
@@ -52,4 +60,12 @@ public class Doctor {
     public void setActive(Boolean active){this.active=active;}
     public OffsetDateTime getCreatedAt(){return createdAt;}
     public void setCreatedAt(OffsetDateTime createdAt){this.createdAt=createdAt;}
+
+    @PrePersist
+    @PreUpdate
+    void syncDepartmentKey(){departmentKey=normalizeDepartment(department);}
+
+    public static String normalizeDepartment(String department){
+        return department == null ? null : department.trim().toLowerCase(Locale.ROOT);
+    }
 }
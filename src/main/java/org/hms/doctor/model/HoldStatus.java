@@ -0,0 +1,14 @@
+package org.hms.doctor.model;
+
+/** Hold states with the numeric code stored in status_code; the name is what the API and hold_status carry. */
+public enum HoldStatus {
+    HELD(1), CONFIRMED(2), RELEASED(3);
+
+    public final short code;
+
+    HoldStatus(int code) { this.code = (short) code; }
+
+    public static short codeOf(String name) {
+        return valueOf(name).code;
+    }
+}
@@ -0,0 +1,37 @@
+package org.hms.doctor.model;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "idempotency_keys", indexes = {@Index(name = "idx_idempotency_expires", columnList = "expiresAt")})
+public class IdempotencyRecord {
+    @Id
+    @Column(length = 300)
+    private String idempotencyKey; // principal + key
+
+    @Column(length = 64)
+    private String fingerprint;
+
+    private Integer responseStatus; // null while the first request is still running
+
+    @Lob
+    private byte[] responseBody;
+
+    private OffsetDateTime claimedAt;
+
+    private OffsetDateTime expiresAt;
+
+    public String getIdempotencyKey(){return idempotencyKey;}
+    public void setIdempotencyKey(String idempotencyKey){this.idempotencyKey=idempotencyKey;}
+    public String getFingerprint(){return fingerprint;}
+    public void setFingerprint(String fingerprint){this.fingerprint=fingerprint;}
+    public Integer getResponseStatus(){return responseStatus;}
+    public void setResponseStatus(Integer responseStatus){this.responseStatus=responseStatus;}
+    public byte[] getResponseBody(){return responseBody;}
+    public void setResponseBody(byte[] responseBody){this.responseBody=responseBody;}
+    public OffsetDateTime getClaimedAt(){return claimedAt;}
+    public void setClaimedAt(OffsetDateTime claimedAt){this.claimedAt=claimedAt;}
+    public OffsetDateTime getExpiresAt(){return expiresAt;}
+    public void setExpiresAt(OffsetDateTime expiresAt){this.expiresAt=expiresAt;}
+}
@@ -0,0 +1,50 @@
+package org.hms.doctor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * One line of a doctor's recurring schedule template, in the hospital's local time:
+ * SHIFT and BREAK repeat weekly on dayOfWeek (1 = Monday) from startTime to endTime (an endTime at or
+ * before startTime runs past midnight), optionally only between fromDate and toDate; LEAVE blocks
+ * fromDate to toDate, whole days or, with startTime/endTime, those hours of each day.
+ */
+@Entity
+@Table(name = "doctor_schedule_rules", indexes = {@Index(name = "idx_schedule_doctor", columnList = "doctorId")})
+public class ScheduleRule {
+    public enum Kind { SHIFT, BREAK, LEAVE }
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    private Long doctorId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 10)
+    private Kind kind;
+
+    private Integer dayOfWeek;
+    private LocalTime startTime;
+    private LocalTime endTime;
+    private LocalDate fromDate;
+    private LocalDate toDate;
+
+    public Long getId(){return id;}
+    public void setId(Long id){this.id=id;}
+    public Long getDoctorId(){return doctorId;}
+    public void setDoctorId(Long doctorId){this.doctorId=doctorId;}
+    public Kind getKind(){return kind;}
+    public void setKind(Kind kind){this.kind=kind;}
+    public Integer getDayOfWeek(){return dayOfWeek;}
+    public void setDayOfWeek(Integer dayOfWeek){this.dayOfWeek=dayOfWeek;}
+    public LocalTime getStartTime(){return startTime;}
+    public void setStartTime(LocalTime startTime){this.startTime=startTime;}
+    public LocalTime getEndTime(){return endTime;}
+    public void setEndTime(LocalTime endTime){this.endTime=endTime;}
+    public LocalDate getFromDate(){return fromDate;}
+    public void setFromDate(LocalDate fromDate){this.fromDate=fromDate;}
+    public LocalDate getToDate(){return toDate;}
+    public void setToDate(LocalDate toDate){this.toDate=toDate;}
+}
@@ -0,0 +1,28 @@
+package org.hms.doctor.model;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+@Entity
+@Table(name = "scheduling_members", indexes = {@Index(name = "idx_member_lease", columnList = "leaseExpiresAt")})
+public class ShardMember {
+    @Id
+    @Column(length = 64)
+    private String memberId;
+
+    @Column(length = 255)
+    private String baseUrl; // where other replicas forward this member's doctors
+
+    private OffsetDateTime joinedAt;
+
+    private OffsetDateTime leaseExpiresAt; // renewed by every heartbeat; expired rows are not members
+
+    public String getMemberId(){return memberId;}
+    public void setMemberId(String memberId){this.memberId=memberId;}
+    public String getBaseUrl(){return baseUrl;}
+    public void setBaseUrl(String baseUrl){this.baseUrl=baseUrl;}
+    public OffsetDateTime getJoinedAt(){return joinedAt;}
+    public void setJoinedAt(OffsetDateTime joinedAt){this.joinedAt=joinedAt;}
+    public OffsetDateTime getLeaseExpiresAt(){return leaseExpiresAt;}
+    public void setLeaseExpiresAt(OffsetDateTime leaseExpiresAt){this.leaseExpiresAt=leaseExpiresAt;}
+}
@@ -0,0 +1,55 @@
+package org.hms.doctor.model;
+
+import jakarta.persistence.*;
+import java.time.OffsetDateTime;
+
+/** Outbox row for a slot-hold state change; written in the same transaction as the change itself. */
+@Entity
+@Table(name = "slot_events", indexes = {@Index(name = "idx_slot_event_doctor", columnList = "doctorId,id"),
+        @Index(name = "idx_slot_event_created", columnList = "createdAt")})
+public class SlotEvent {
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id; // stream offset, sent as the SSE event id
+
+    private Long doctorId;
+
+    private Long holdId;
+
+    private String eventType; // HELD, CONFIRMED, RELEASED, EXPIRED
+
+    private OffsetDateTime slotStart;
+    private OffsetDateTime slotEnd;
+
+    private Integer bookedDelta; // change to the day's booked count: +1 on confirm, -1 when a confirmed hold is released
+
+    private OffsetDateTime createdAt = OffsetDateTime.now();
+
+    public static SlotEvent of(SlotHold hold, String eventType, int bookedDelta) {
+        SlotEvent e = new SlotEvent();
+        e.setDoctorId(hold.getDoctorId());
+        e.setHoldId(hold.getHoldId());
+        e.setEventType(eventType);
+        e.setSlotStart(hold.getSlotStart());
+        e.setSlotEnd(hold.getSlotEnd());
+        e.setBookedDelta(bookedDelta);
+        return e;
+    }
+
+    public Long getId(){return id;}
+    public void setId(Long id){this.id=id;}
+    public Long getDoctorId(){return doctorId;}
+    public void setDoctorId(Long doctorId){this.doctorId=doctorId;}
+    public Long getHoldId(){return holdId;}
+    public void setHoldId(Long holdId){this.holdId=holdId;}
+    public String getEventType(){return eventType;}
+    public void setEventType(String eventType){this.eventType=eventType;}
+    public OffsetDateTime getSlotStart(){return slotStart;}
+    public void setSlotStart(OffsetDateTime slotStart){this.slotStart=slotStart;}
+    public OffsetDateTime getSlotEnd(){return slotEnd;}
+    public void setSlotEnd(OffsetDateTime slotEnd){this.slotEnd=slotEnd;}
+    public Integer getBookedDelta(){return bookedDelta;}
+    public void setBookedDelta(Integer bookedDelta){this.bookedDelta=bookedDelta;}
+    public OffsetDateTime getCreatedAt(){return createdAt;}
+    public void setCreatedAt(OffsetDateTime createdAt){this.createdAt=createdAt;}
+}
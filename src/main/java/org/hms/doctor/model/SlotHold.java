@@ -1,10 +1,21 @@
 package org.hms.doctor.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
+import org.hms.doctor.service.SlotGrid;
+
+import java.time.LocalDate;
 import java.time.OffsetDateTime;
 
 @Entity
-@Table(name = "doctor_slots_hold", indexes = {@Index(name = "idx_doctor_slot", columnList = "doctorId,slotStart,slotEnd")})
+// Queries and indexes use the integer columns: slot numbers on the SlotGrid and the HoldStatus code.
+// idx_hold_slots matches the overlap predicate: equality on doctor and status, range on slotTo, and
+// slotFrom to filter in the index, so RELEASED and past rows are never visited or locked. Holds in
+// offsets off the UTC half-hour are rounded outwards; queries re-check the timestamps for those.
+// idx_hold_status_slot serves the archiver, the expiry recovery and the occupancy rebuild.
+@Table(name = "doctor_slots_hold", indexes = {
+        @Index(name = "idx_hold_slots", columnList = "doctorId,statusCode,slotTo,slotFrom"),
+        @Index(name = "idx_hold_status_slot", columnList = "statusCode,slotTo")})
 public class SlotHold {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -15,10 +26,23 @@ public class SlotHold {
     private OffsetDateTime slotStart;
     private OffsetDateTime slotEnd;
 
+    // first slot (inclusive) and end slot (exclusive) on the UTC 30-minute grid, kept in step with slotStart/slotEnd
+    @JsonIgnore
+    private Long slotFrom;
+    @JsonIgnore
+    private Long slotTo;
+
+    // date of slotStart in the offset the client sent; daily capacity is counted against it
+    @JsonIgnore
+    private LocalDate slotDay;
+
     private Long appointmentId;
 
     private String holdStatus; // HELD, CONFIRMED, RELEASED
 
+    @JsonIgnore
+    private Short statusCode; // HoldStatus code, kept in step with holdStatus
+
     private OffsetDateTime expiresAt;
 
     private OffsetDateTime createdAt = OffsetDateTime.now();
@@ -32,13 +56,17 @@ public class SlotHold {
     public Long getDoctorId(){return doctorId;}
     public void setDoctorId(Long doctorId){this.doctorId=doctorId;}
     public OffsetDateTime getSlotStart(){return slotStart;}
-    public void setSlotStart(OffsetDateTime slotStart){this.slotStart=slotStart;}
+    public void setSlotStart(OffsetDateTime slotStart){this.slotStart=slotStart; this.slotFrom=slotStart==null?null:SlotGrid.slotOf(slotStart); this.slotDay=slotStart==null?null:slotStart.toLocalDate();}
     public OffsetDateTime getSlotEnd(){return slotEnd;}
-    public void setSlotEnd(OffsetDateTime slotEnd){this.slotEnd=slotEnd;}
+    public void setSlotEnd(OffsetDateTime slotEnd){this.slotEnd=slotEnd; this.slotTo=slotEnd==null?null:SlotGrid.slotCeil(slotEnd);}
+    public Long getSlotFrom(){return slotFrom;}
+    public Long getSlotTo(){return slotTo;}
+    public LocalDate getSlotDay(){return slotDay;}
     public Long getAppointmentId(){return appointmentId;}
     public void setAppointmentId(Long appointmentId){this.appointmentId=appointmentId;}
     public String getHoldStatus(){return holdStatus;}
-    public void setHoldStatus(String holdStatus){this.holdStatus=holdStatus;}
+    public void setHoldStatus(String holdStatus){this.holdStatus=holdStatus; this.statusCode=holdStatus==null?null:HoldStatus.codeOf(holdStatus);}
+    public Short getStatusCode(){return statusCode;}
     public OffsetDateTime getExpiresAt(){return expiresAt;}
     public void setExpiresAt(OffsetDateTime expiresAt){this.expiresAt=expiresAt;}
     public OffsetDateTime getCreatedAt(){return createdAt;}
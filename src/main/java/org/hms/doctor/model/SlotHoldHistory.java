@@ -0,0 +1,65 @@
+package org.hms.doctor.model;
+
+import jakarta.persistence.*;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+
+/** A finished hold moved out of doctor_slots_hold by the archiver; the hold's columns plus archivedAt. */
+@Entity
+@Table(name = "doctor_slots_hold_history", indexes = {@Index(name = "idx_hold_history_doctor", columnList = "doctorId,slotStart")})
+public class SlotHoldHistory {
+    @Id
+    private Long holdId; // kept from doctor_slots_hold
+
+    private Long doctorId;
+
+    private OffsetDateTime slotStart;
+    private OffsetDateTime slotEnd;
+
+    private Long slotFrom;
+    private Long slotTo;
+    private LocalDate slotDay;
+
+    private Long appointmentId;
+
+    private String holdStatus; // RELEASED or CONFIRMED
+
+    private Short statusCode;
+
+    private OffsetDateTime expiresAt;
+
+    private OffsetDateTime createdAt;
+
+    private Long version;
+
+    private OffsetDateTime archivedAt;
+
+    public Long getHoldId(){return holdId;}
+    public void setHoldId(Long holdId){this.holdId=holdId;}
+    public Long getDoctorId(){return doctorId;}
+    public void setDoctorId(Long doctorId){this.doctorId=doctorId;}
+    public OffsetDateTime getSlotStart(){return slotStart;}
+    public void setSlotStart(OffsetDateTime slotStart){this.slotStart=slotStart;}
+    public OffsetDateTime getSlotEnd(){return slotEnd;}
+    public void setSlotEnd(OffsetDateTime slotEnd){this.slotEnd=slotEnd;}
+    public Long getSlotFrom(){return slotFrom;}
+    public void setSlotFrom(Long slotFrom){this.slotFrom=slotFrom;}
+    public Long getSlotTo(){return slotTo;}
+    public void setSlotTo(Long slotTo){this.slotTo=slotTo;}
+    public LocalDate getSlotDay(){return slotDay;}
+    public void setSlotDay(LocalDate slotDay){this.slotDay=slotDay;}
+    public Long getAppointmentId(){return appointmentId;}
+    public void setAppointmentId(Long appointmentId){this.appointmentId=appointmentId;}
+    public String getHoldStatus(){return holdStatus;}
+    public void setHoldStatus(String holdStatus){this.holdStatus=holdStatus;}
+    public Short getStatusCode(){return statusCode;}
+    public void setStatusCode(Short statusCode){this.statusCode=statusCode;}
+    public OffsetDateTime getExpiresAt(){return expiresAt;}
+    public void setExpiresAt(OffsetDateTime expiresAt){this.expiresAt=expiresAt;}
+    public OffsetDateTime getCreatedAt(){return createdAt;}
+    public void setCreatedAt(OffsetDateTime createdAt){this.createdAt=createdAt;}
+    public Long getVersion(){return version;}
+    public void setVersion(Long version){this.version=version;}
+    public OffsetDateTime getArchivedAt(){return archivedAt;}
+    public void setArchivedAt(OffsetDateTime archivedAt){this.archivedAt=archivedAt;}
+}
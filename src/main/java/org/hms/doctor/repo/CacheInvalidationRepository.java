@@ -0,0 +1,23 @@
+package org.hms.doctor.repo;
+
+import org.hms.doctor.model.CacheInvalidationEvent;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.util.List;
+
+public interface CacheInvalidationRepository extends JpaRepository<CacheInvalidationEvent, Long> {
+    List<CacheInvalidationEvent> findTop500ByIdGreaterThanOrderById(Long id);
+
+    @Query("select coalesce(max(e.id), 0) from CacheInvalidationEvent e")
+    Long findMaxId();
+
+    @Transactional
+    @Modifying
+    @Query("delete from CacheInvalidationEvent e where e.createdAt < :before")
+    int deleteOlderThan(@Param("before") OffsetDateTime before);
+}
@@ -3,16 +3,68 @@ package org.hms.doctor.repo;
 import org.hms.doctor.model.DailyCapacity;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 public interface DailyCapacityRepository extends JpaRepository<DailyCapacity, Long> {
 
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("select d from DailyCapacity d where d.doctorId = :doctorId and d.docDate = :docDate")
     Optional<DailyCapacity> findByDoctorIdAndDocDateForUpdate(@Param("doctorId") Long doctorId, @Param("docDate") LocalDate docDate);
+
+    Optional<DailyCapacity> findByDoctorIdAndDocDate(Long doctorId, LocalDate docDate);
+
+    // affected-row count is the answer: 1 = booked, 0 = full or no row yet
+    @Modifying
+    @Query(value = """
+      update doctor_daily_capacity
+      set booked_count = booked_count + 1, version = coalesce(version, 0) + 1
+      where doctor_id = :doctorId and doc_date = :docDate and booked_count < capacity
+    """, nativeQuery = true)
+    int incrementIfBelowCapacity(@Param("doctorId") Long doctorId, @Param("docDate") LocalDate docDate);
+
+    @Modifying
+    @Query(value = """
+      update doctor_daily_capacity
+      set booked_count = booked_count - 1, version = coalesce(version, 0) + 1
+      where doctor_id = :doctorId and doc_date = :docDate and booked_count > 0
+    """, nativeQuery = true)
+    int decrementIfPositive(@Param("doctorId") Long doctorId, @Param("docDate") LocalDate docDate);
+
+    // grouped confirm: one capacity update for a doctor-day's whole batch, under the caller's row lock
+    @Modifying
+    @Query(value = """
+      update doctor_daily_capacity
+      set booked_count = booked_count + :count, version = coalesce(version, 0) + 1
+      where doctor_id = :doctorId and doc_date = :docDate
+    """, nativeQuery = true)
+    int addBooked(@Param("doctorId") Long doctorId, @Param("docDate") LocalDate docDate, @Param("count") int count);
+
+    // no-op when the (doc_date, doctor_id) row already exists
+    @Modifying
+    @Query(value = """
+      insert into doctor_daily_capacity (doc_date, doctor_id, booked_count, capacity, version)
+      values (:docDate, :doctorId, 0, :capacity, 0)
+      on duplicate key update doctor_id = doctor_id
+    """, nativeQuery = true)
+    int insertIfMissing(@Param("doctorId") Long doctorId, @Param("docDate") LocalDate docDate, @Param("capacity") int capacity);
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+      select d.doctorId, d.docDate, d.bookedCount, d.capacity from DailyCapacity d
+      where d.doctorId in :doctorIds and d.docDate between :from and :to
+      order by d.doctorId, d.docDate
+    """)
+    Stream<Object[]> streamInRange(@Param("doctorIds") Collection<Long> doctorIds,
+                                   @Param("from") LocalDate from,
+                                   @Param("to") LocalDate to);
 }
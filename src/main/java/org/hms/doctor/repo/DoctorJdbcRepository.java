@@ -0,0 +1,105 @@
+package org.hms.doctor.repo;
+
+import org.hms.doctor.model.Doctor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * JDBC bulk access to the doctors table for roster imports. Hibernate cannot batch IDENTITY inserts,
+ * so rows go out as JDBC batches (rewritten into multi-row INSERTs by Connector/J when
+ * rewriteBatchedStatements=true).
+ */
+@Repository
+public class DoctorJdbcRepository {
+    private static final String COLUMNS = "name, email, phone, department, department_key, specialization, daily_capacity, active, created_at";
+    private static final String INSERT = "insert into doctors (" + COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String INSERT_WITH_ID = "insert into doctors (doctor_id, " + COLUMNS + ") values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String UPSERT_WITH_ID = INSERT_WITH_ID + " on duplicate key update name = values(name), email = values(email),"
+            + " phone = values(phone), department = values(department), department_key = values(department_key),"
+            + " specialization = values(specialization), daily_capacity = values(daily_capacity), active = values(active),"
+            + " created_at = values(created_at)";
+
+    /** Known contacts; safe to share between import workers. */
+    public record Contacts(Set<String> emails, Set<String> phones) {
+        /** Records the email/phone pair unless either is already taken; returns false for a duplicate. */
+        public boolean claim(String email, String phone) {
+            if (email != null && !emails.add(email)) return false;
+            if (phone != null && !phones.add(phone)) {
+                if (email != null) emails.remove(email);
+                return false;
+            }
+            return true;
+        }
+
+        /** Gives back a claim whose row was not inserted, so later rows with these contacts are not duplicates. */
+        public void release(String email, String phone) {
+            if (email != null) emails.remove(email);
+            if (phone != null) phones.remove(phone);
+        }
+    }
+
+    private final JdbcTemplate jdbc;
+
+    public DoctorJdbcRepository(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+
+    /** Every email and phone already on file, read with a single query. */
+    public Contacts loadContacts() {
+        Set<String> emails = ConcurrentHashMap.newKeySet(), phones = ConcurrentHashMap.newKeySet();
+        jdbc.query("select email, phone from doctors", rs -> {
+            String e = rs.getString(1), p = rs.getString(2);
+            if (e != null) emails.add(e);
+            if (p != null) phones.add(p);
+        });
+        return new Contacts(emails, phones);
+    }
+
+    public long maxId() {
+        Long max = jdbc.queryForObject("select max(doctor_id) from doctors", Long.class);
+        return max == null ? 0L : max;
+    }
+
+    /** Inserts the doctors in at most two batches: rows that carry an id and rows that do not. */
+    public int insertAll(List<Doctor> doctors) {
+        return insertAll(doctors, false);
+    }
+
+    /** Same, but with {@code mergeById} a row whose id already exists overwrites that doctor instead of failing. */
+    public int insertAll(List<Doctor> doctors, boolean mergeById) {
+        List<Doctor> withId = new ArrayList<>(), withoutId = new ArrayList<>();
+        for (Doctor d : doctors) (d.getDoctorId() != null ? withId : withoutId).add(d);
+        int written = 0;
+        if (!withId.isEmpty()) {
+            jdbc.batchUpdate(mergeById ? UPSERT_WITH_ID : INSERT_WITH_ID, withId, withId.size(), (ps, d) -> {
+                ps.setLong(1, d.getDoctorId());
+                bind(ps, d, 2);
+            });
+            written += withId.size();
+        }
+        if (!withoutId.isEmpty()) {
+            jdbc.batchUpdate(INSERT, withoutId, withoutId.size(), (ps, d) -> bind(ps, d, 1));
+            written += withoutId.size();
+        }
+        return written;
+    }
+
+    private static void bind(java.sql.PreparedStatement ps, Doctor d, int i) throws java.sql.SQLException {
+        ps.setString(i, d.getName());
+        ps.setString(i + 1, d.getEmail());
+        ps.setString(i + 2, d.getPhone());
+        ps.setString(i + 3, d.getDepartment());
+        ps.setString(i + 4, Doctor.normalizeDepartment(d.getDepartment()));
+        ps.setString(i + 5, d.getSpecialization());
+        if (d.getDailyCapacity() == null) ps.setNull(i + 6, Types.INTEGER); else ps.setInt(i + 6, d.getDailyCapacity());
+        ps.setBoolean(i + 7, d.getActive() == null || d.getActive());
+        OffsetDateTime created = d.getCreatedAt() == null ? OffsetDateTime.now() : d.getCreatedAt();
+        ps.setObject(i + 8, created.withOffsetSameInstant(ZoneOffset.UTC));
+    }
+}
@@ -1,13 +1,41 @@
 package org.hms.doctor.repo;
 
 import org.hms.doctor.model.Doctor;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+// declared queries are reads and run read-only, so replica routing can serve them; writes come from
+// SimpleJpaRepository or carry their own @Transactional
+@Transactional(readOnly = true)
 public interface DoctorRepository extends JpaRepository<Doctor, Long> {
-    Page<Doctor> findByDepartmentIgnoreCase(String department, Pageable pageable);
+    Page<Doctor> findByDepartmentKey(String departmentKey, Pageable pageable);
     boolean existsByEmail(String email);
     boolean existsByPhone(String phone);
+    List<Doctor> findByDepartmentKeyAndActiveTrueOrderByDoctorId(String departmentKey);
+    List<Doctor> findByDoctorIdInAndActiveTrueOrderByDoctorId(Collection<Long> doctorIds);
+
+    // keyset pagination: seek past the last id instead of OFFSET, no count query
+    List<Doctor> findByDoctorIdGreaterThanOrderByDoctorId(Long after, Limit limit);
+    List<Doctor> findByDepartmentKeyAndDoctorIdGreaterThanOrderByDoctorId(String departmentKey, Long after, Limit limit);
+
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("select d from Doctor d where (:departmentKey is null or d.departmentKey = :departmentKey) order by d.doctorId")
+    Stream<Doctor> streamAll(@Param("departmentKey") String departmentKey);
 
+    @Transactional
+    @Modifying
+    @Query(value = "update doctors set department_key = lower(trim(department)) where department_key is null", nativeQuery = true)
+    int backfillDepartmentKeys();
 }
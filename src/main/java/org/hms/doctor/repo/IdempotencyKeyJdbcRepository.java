@@ -0,0 +1,75 @@
+package org.hms.doctor.repo;
+
+import org.hms.doctor.model.IdempotencyRecord;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Optional;
+
+/**
+ * JDBC access to idempotency_keys. Each call is its own short autocommit statement, run outside the
+ * scheduling transaction, so a key is claimed before the locking work starts and its response is
+ * recorded after that work has committed.
+ */
+@Repository
+public class IdempotencyKeyJdbcRepository {
+    private final JdbcTemplate jdbc;
+
+    public IdempotencyKeyJdbcRepository(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+
+    /** Inserts a pending row; false if the key already exists. */
+    public boolean claim(String key, String fingerprint, OffsetDateTime now, OffsetDateTime expiresAt) {
+        try {
+            jdbc.update("insert into idempotency_keys (idempotency_key, fingerprint, claimed_at, expires_at) values (?, ?, ?, ?)",
+                    key, fingerprint, utc(now), utc(expiresAt));
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    /** Re-claims a key whose row has expired or whose pending owner stopped before staleBefore. */
+    public boolean takeOver(String key, String fingerprint, OffsetDateTime now, OffsetDateTime staleBefore, OffsetDateTime expiresAt) {
+        return jdbc.update("""
+                update idempotency_keys
+                   set fingerprint = ?, response_status = null, response_body = null, claimed_at = ?, expires_at = ?
+                 where idempotency_key = ?
+                   and (expires_at < ? or (response_status is null and claimed_at < ?))
+                """, fingerprint, utc(now), utc(expiresAt), key, utc(now), utc(staleBefore)) == 1;
+    }
+
+    public Optional<IdempotencyRecord> find(String key) {
+        return jdbc.query("select fingerprint, response_status, response_body, claimed_at, expires_at from idempotency_keys where idempotency_key = ?",
+                (rs, i) -> {
+                    IdempotencyRecord r = new IdempotencyRecord();
+                    r.setIdempotencyKey(key);
+                    r.setFingerprint(rs.getString(1));
+                    int status = rs.getInt(2);
+                    r.setResponseStatus(rs.wasNull() ? null : status);
+                    r.setResponseBody(rs.getBytes(3));
+                    r.setClaimedAt(rs.getObject(4, OffsetDateTime.class));
+                    r.setExpiresAt(rs.getObject(5, OffsetDateTime.class));
+                    return r;
+                }, key).stream().findFirst();
+    }
+
+    public void complete(String key, int status, byte[] body) {
+        jdbc.update("update idempotency_keys set response_status = ?, response_body = ? where idempotency_key = ?", status, body, key);
+    }
+
+    /** Drops a claim that produced no storable response, so the next retry runs again. */
+    public void deletePending(String key) {
+        jdbc.update("delete from idempotency_keys where idempotency_key = ? and response_status is null", key);
+    }
+
+    public int deleteExpired(OffsetDateTime now) {
+        return jdbc.update("delete from idempotency_keys where expires_at < ?", utc(now));
+    }
+
+    private static OffsetDateTime utc(OffsetDateTime t) {
+        return t.withOffsetSameInstant(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,18 @@
+package org.hms.doctor.repo;
+
+import org.hms.doctor.model.ScheduleRule;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ScheduleRuleRepository extends JpaRepository<ScheduleRule, Long> {
+
+    List<ScheduleRule> findByDoctorIdOrderById(Long doctorId);
+
+    @Modifying
+    @Query("delete from ScheduleRule r where r.doctorId = :doctorId")
+    int deleteByDoctorId(@Param("doctorId") Long doctorId);
+}
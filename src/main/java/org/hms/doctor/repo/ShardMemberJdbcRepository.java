@@ -0,0 +1,58 @@
+package org.hms.doctor.repo;
+
+import org.hms.doctor.model.ShardMember;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * JDBC access to scheduling_members, the lease table behind doctor ownership. Every call is a short
+ * autocommit statement; a member is live while its lease_expires_at is in the future.
+ */
+@Repository
+public class ShardMemberJdbcRepository {
+    private final JdbcTemplate jdbc;
+
+    public ShardMemberJdbcRepository(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+
+    /** Extends this member's lease, inserting its row on the first heartbeat or after it was purged. */
+    public void renew(String memberId, String baseUrl, OffsetDateTime now, OffsetDateTime leaseExpiresAt) {
+        int updated = jdbc.update("update scheduling_members set base_url = ?, lease_expires_at = ? where member_id = ?",
+                baseUrl, utc(leaseExpiresAt), memberId);
+        if (updated > 0) return;
+        try {
+            jdbc.update("insert into scheduling_members (member_id, base_url, joined_at, lease_expires_at) values (?, ?, ?, ?)",
+                    memberId, baseUrl, utc(now), utc(leaseExpiresAt));
+        } catch (DuplicateKeyException e) {
+            renew(memberId, baseUrl, now, leaseExpiresAt);
+        }
+    }
+
+    public List<ShardMember> findLive(OffsetDateTime now) {
+        return jdbc.query("select member_id, base_url, joined_at, lease_expires_at from scheduling_members"
+                + " where lease_expires_at > ? order by member_id", (rs, i) -> {
+            ShardMember m = new ShardMember();
+            m.setMemberId(rs.getString(1));
+            m.setBaseUrl(rs.getString(2));
+            m.setJoinedAt(rs.getObject(3, OffsetDateTime.class));
+            m.setLeaseExpiresAt(rs.getObject(4, OffsetDateTime.class));
+            return m;
+        }, utc(now));
+    }
+
+    public void delete(String memberId) {
+        jdbc.update("delete from scheduling_members where member_id = ?", memberId);
+    }
+
+    public int deleteExpired(OffsetDateTime before) {
+        return jdbc.update("delete from scheduling_members where lease_expires_at < ?", utc(before));
+    }
+
+    private static OffsetDateTime utc(OffsetDateTime t) {
+        return t.withOffsetSameInstant(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,102 @@
+package org.hms.doctor.repo;
+
+import org.hms.doctor.model.SlotEvent;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * JDBC access to the slot_events outbox. Appends participate in the caller's transaction, so an
+ * event exists exactly when the hold change it describes has committed. Reads page by id.
+ */
+@Repository
+public class SlotEventJdbcRepository {
+    private static final String COLUMNS = "e.id, e.doctor_id, e.hold_id, e.event_type, e.slot_start, e.slot_end, e.booked_delta, e.created_at";
+
+    private static final RowMapper<SlotEvent> ROW = (rs, i) -> {
+        SlotEvent e = new SlotEvent();
+        e.setId(rs.getLong(1));
+        e.setDoctorId(rs.getLong(2));
+        e.setHoldId(rs.getLong(3));
+        e.setEventType(rs.getString(4));
+        e.setSlotStart(rs.getObject(5, OffsetDateTime.class));
+        e.setSlotEnd(rs.getObject(6, OffsetDateTime.class));
+        e.setBookedDelta(rs.getInt(7));
+        e.setCreatedAt(rs.getObject(8, OffsetDateTime.class));
+        return e;
+    };
+
+    private final JdbcTemplate jdbc;
+
+    public SlotEventJdbcRepository(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+
+    public void appendAll(List<SlotEvent> events) {
+        if (events.isEmpty()) return;
+        jdbc.batchUpdate("""
+                insert into slot_events (doctor_id, hold_id, event_type, slot_start, slot_end, booked_delta, created_at)
+                values (?, ?, ?, ?, ?, ?, ?)
+                """, events, events.size(), (ps, e) -> {
+            ps.setLong(1, e.getDoctorId());
+            ps.setLong(2, e.getHoldId());
+            ps.setString(3, e.getEventType());
+            ps.setObject(4, utc(e.getSlotStart()));
+            ps.setObject(5, utc(e.getSlotEnd()));
+            ps.setInt(6, e.getBookedDelta());
+            ps.setObject(7, utc(e.getCreatedAt()));
+        });
+    }
+
+    public List<SlotEvent> findAfter(long afterId, int limit) {
+        return jdbc.query("select " + COLUMNS + " from slot_events e where e.id > ? order by e.id limit ?", ROW, afterId, limit);
+    }
+
+    /** The events among the given ids that exist (have committed), in id order. */
+    public List<SlotEvent> findByIds(Collection<Long> ids) {
+        if (ids.isEmpty()) return List.of();
+        String in = String.join(",", Collections.nCopies(ids.size(), "?"));
+        return jdbc.query("select " + COLUMNS + " from slot_events e where e.id in (" + in + ") order by e.id", ROW, ids.toArray());
+    }
+
+    /** Events in (afterId, upToId] for one doctor, for resuming a subscriber older than the in-memory buffer. */
+    public List<SlotEvent> findForDoctor(long doctorId, long afterId, long upToId, int limit) {
+        return jdbc.query("select " + COLUMNS + " from slot_events e where e.doctor_id = ? and e.id > ? and e.id <= ? order by e.id limit ?",
+                ROW, doctorId, afterId, upToId, limit);
+    }
+
+    /** Same for every doctor of a department (normalized key). */
+    public List<SlotEvent> findForDepartment(String departmentKey, long afterId, long upToId, int limit) {
+        return jdbc.query("select " + COLUMNS + " from slot_events e join doctors d on d.doctor_id = e.doctor_id"
+                        + " where d.department_key = ? and e.id > ? and e.id <= ? order by e.id limit ?",
+                ROW, departmentKey, afterId, upToId, limit);
+    }
+
+    public long findMaxId() {
+        Long max = jdbc.queryForObject("select coalesce(max(id), 0) from slot_events", Long.class);
+        return max == null ? 0 : max;
+    }
+
+    public long findMinId() {
+        Long min = jdbc.queryForObject("select coalesce(min(id), 0) from slot_events", Long.class);
+        return min == null ? 0 : min;
+    }
+
+    /** Lowest id created at or after {@code since}, 0 when there is none. */
+    public long findMinIdCreatedSince(OffsetDateTime since) {
+        Long min = jdbc.queryForObject("select coalesce(min(id), 0) from slot_events where created_at >= ?", Long.class, utc(since));
+        return min == null ? 0 : min;
+    }
+
+    public int deleteOlderThan(OffsetDateTime before) {
+        return jdbc.update("delete from slot_events where created_at < ?", utc(before));
+    }
+
+    private static OffsetDateTime utc(OffsetDateTime t) {
+        return t == null ? null : t.withOffsetSameInstant(ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,179 @@
+package org.hms.doctor.repo;
+
+import org.hms.doctor.model.HoldStatus;
+import org.hms.doctor.model.SlotHold;
+import org.hms.doctor.service.SlotGrid;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JDBC access to doctor_slots_hold for bulk paths. Hibernate cannot batch inserts of IDENTITY
+ * entities, so multi-hold writes go through a single JDBC batch here instead of repeated save().
+ * Archiving moves finished holds to doctor_slots_hold_history in id batches, and grouped confirms
+ * update a doctor-day's holds in one batch.
+ * Participates in the surrounding JPA transaction.
+ */
+@Repository
+public class SlotHoldJdbcRepository {
+    private static final String INSERT = """
+        insert into doctor_slots_hold
+          (doctor_id, slot_start, slot_end, slot_from, slot_to, slot_day, appointment_id, hold_status, status_code, expires_at, created_at, version)
+        values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, 0)
+        """;
+
+    private final JdbcTemplate jdbc;
+
+    public SlotHoldJdbcRepository(JdbcTemplate jdbc) { this.jdbc = jdbc; }
+
+    /** Inserts all holds in one batch and sets their generated ids. */
+    public void insertAll(List<SlotHold> holds) {
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbc.batchUpdate(con -> con.prepareStatement(INSERT, Statement.RETURN_GENERATED_KEYS), new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                SlotHold h = holds.get(i);
+                ps.setLong(1, h.getDoctorId());
+                ps.setObject(2, utc(h.getSlotStart()));
+                ps.setObject(3, utc(h.getSlotEnd()));
+                ps.setLong(4, h.getSlotFrom());
+                ps.setLong(5, h.getSlotTo());
+                ps.setObject(6, h.getSlotDay());
+                if (h.getAppointmentId() == null) ps.setNull(7, Types.BIGINT); else ps.setLong(7, h.getAppointmentId());
+                ps.setString(8, h.getHoldStatus());
+                ps.setShort(9, h.getStatusCode());
+                ps.setObject(10, utc(h.getExpiresAt()));
+                ps.setObject(11, utc(h.getCreatedAt()));
+            }
+
+            @Override
+            public int getBatchSize() { return holds.size(); }
+        }, keys);
+        List<java.util.Map<String, Object>> generated = keys.getKeyList();
+        if (generated.size() != holds.size()) throw new IllegalStateException("expected " + holds.size() + " generated hold ids, got " + generated.size());
+        for (int i = 0; i < holds.size(); i++) {
+            holds.get(i).setHoldId(((Number) generated.get(i).values().iterator().next()).longValue());
+            holds.get(i).setVersion(0L);
+        }
+    }
+
+    /** Locks up to {@code limit} RELEASED holds created before {@code before}; returns their ids. */
+    public List<Long> lockReleasedCreatedBefore(OffsetDateTime before, int limit) {
+        return jdbc.queryForList("select hold_id from doctor_slots_hold where status_code = ? and created_at < ? limit ? for update",
+                Long.class, HoldStatus.RELEASED.code, utc(before), limit);
+    }
+
+    /** Locks up to {@code limit} CONFIRMED holds whose slot ended at or before {@code beforeSlot}; returns their ids. */
+    public List<Long> lockConfirmedEndedBefore(long beforeSlot, int limit) {
+        return jdbc.queryForList("select hold_id from doctor_slots_hold where status_code = ? and slot_to <= ? limit ? for update",
+                Long.class, HoldStatus.CONFIRMED.code, beforeSlot, limit);
+    }
+
+    /** Locks the given holds and returns their status codes by hold id; missing holds are absent. */
+    public Map<Long, Short> lockStatuses(Collection<Long> holdIds) {
+        Map<Long, Short> status = new HashMap<>();
+        if (holdIds.isEmpty()) return status;
+        String in = String.join(",", Collections.nCopies(holdIds.size(), "?"));
+        jdbc.query("select hold_id, status_code from doctor_slots_hold where hold_id in (" + in + ") order by hold_id for update",
+                rs -> { status.put(rs.getLong(1), rs.getShort(2)); }, holdIds.toArray());
+        return status;
+    }
+
+    /** Marks HELD holds CONFIRMED with the paired appointment ids in one JDBC batch; returns the rows changed. */
+    public int confirmAll(List<Long> holdIds, List<Long> appointmentIds) {
+        List<Object[]> rows = new ArrayList<>(holdIds.size());
+        for (int i = 0; i < holdIds.size(); i++) rows.add(new Object[]{appointmentIds.get(i), holdIds.get(i)});
+        int changed = 0;
+        for (int n : jdbc.batchUpdate("""
+                update doctor_slots_hold
+                   set hold_status = 'CONFIRMED', status_code = 2, appointment_id = ?, version = version + 1
+                 where hold_id = ? and status_code = 1
+                """, rows)) {
+            changed += Math.max(n, 0);
+        }
+        return changed;
+    }
+
+    /** Copies the given (locked) holds to the history table and deletes them; returns the number moved. */
+    public int moveToHistory(List<Long> holdIds, OffsetDateTime archivedAt) {
+        if (holdIds.isEmpty()) return 0;
+        String in = String.join(",", Collections.nCopies(holdIds.size(), "?"));
+        Object[] args = new Object[holdIds.size() + 1];
+        args[0] = utc(archivedAt);
+        for (int i = 0; i < holdIds.size(); i++) args[i + 1] = holdIds.get(i);
+        jdbc.update("""
+                insert into doctor_slots_hold_history
+                  (hold_id, doctor_id, slot_start, slot_end, slot_from, slot_to, slot_day, appointment_id, hold_status, status_code,
+                   expires_at, created_at, version, archived_at)
+                select hold_id, doctor_id, slot_start, slot_end, slot_from, slot_to, slot_day, appointment_id, hold_status, status_code,
+                       expires_at, created_at, version, ?
+                  from doctor_slots_hold where hold_id in (""" + in + ")", args);
+        return jdbc.update("delete from doctor_slots_hold where hold_id in (" + in + ")", holdIds.toArray());
+    }
+
+    /** Status of an archived hold of this doctor, or null if the hold was never archived. */
+    public String findArchivedStatus(Long holdId, Long doctorId) {
+        List<String> status = jdbc.queryForList("select hold_status from doctor_slots_hold_history where hold_id = ? and doctor_id = ?",
+                String.class, holdId, doctorId);
+        return status.isEmpty() ? null : status.get(0);
+    }
+
+    /**
+     * Fills slot_from, slot_to, slot_day and status_code of up to {@code limit} rows of doctor_slots_hold or
+     * doctor_slots_hold_history written before those columns existed; returns the number of rows filled.
+     * The client's offset of those rows is lost, so their day is the date of slot_start as stored.
+     */
+    public int backfillSlotColumns(String table, int limit) {
+        if (!table.equals("doctor_slots_hold") && !table.equals("doctor_slots_hold_history")) throw new IllegalArgumentException(table);
+        List<Object[]> rows = jdbc.query("select hold_id, slot_start, slot_end, hold_status from " + table
+                        + " where slot_from is null or slot_to is null or slot_day is null or status_code is null limit ?",
+                (rs, i) -> new Object[]{
+                        SlotGrid.slotOf(rs.getObject(2, OffsetDateTime.class)),
+                        SlotGrid.slotCeil(rs.getObject(3, OffsetDateTime.class)),
+                        rs.getObject(2, OffsetDateTime.class).toLocalDate(),
+                        HoldStatus.codeOf(rs.getString(4)),
+                        rs.getLong(1)},
+                limit);
+        if (rows.isEmpty()) return 0;
+        jdbc.batchUpdate("update " + table + " set slot_from = ?, slot_to = ?, slot_day = ?, status_code = ? where hold_id = ?", rows);
+        return rows.size();
+    }
+
+    /**
+     * Drops an index that ddl-auto left behind after the entity stopped declaring it (ddl-auto adds
+     * indexes but never removes them); false when the index does not exist.
+     */
+    public boolean dropIndexIfPresent(String table, String index) {
+        Boolean present = jdbc.execute((ConnectionCallback<Boolean>) con -> {
+            try (ResultSet rs = con.getMetaData().getIndexInfo(con.getCatalog(), null, table, false, false)) {
+                while (rs.next()) if (index.equalsIgnoreCase(rs.getString("INDEX_NAME"))) return true;
+                return false;
+            }
+        });
+        if (!Boolean.TRUE.equals(present)) return false;
+        jdbc.execute("drop index " + index + " on " + table);
+        return true;
+    }
+
+    // timestamps are stored normalized to UTC, matching how Hibernate writes OffsetDateTime
+    private static OffsetDateTime utc(OffsetDateTime t) {
+        return t == null ? null : t.withOffsetSameInstant(ZoneOffset.UTC);
+    }
+}
@@ -1,27 +1,109 @@
 package org.hms.doctor.repo;
 
+import org.hms.doctor.model.HoldStatus;
 import org.hms.doctor.model.SlotHold;
+import org.hms.doctor.service.SlotGrid;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
 import jakarta.persistence.LockModeType;
+import jakarta.persistence.QueryHint;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.stream.Stream;
 
 public interface SlotHoldRepository extends JpaRepository<SlotHold, Long> {
 
+    // Predicates use the integer columns: slotFrom/slotTo are SlotGrid slot numbers (end exclusive) and
+    // statusCode the HoldStatus code (1 HELD, 2 CONFIRMED, 3 RELEASED). Slot numbers are rounded outwards,
+    // so the integer range finds every overlapping hold; for slots aligned in an offset off the UTC
+    // half-hour (+05:45) it may also find a neighbour, which the timestamp comparison then drops.
+    // One query per live status: with equality on doctorId and statusCode, idx_hold_slots turns the
+    // slotTo bound into an index range on every engine (H2 cannot combine an IN list with a range), so
+    // RELEASED and past holds are neither visited nor locked however many of them pile up.
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("""
       select s from SlotHold s
       where s.doctorId = :doctorId
-        and s.holdStatus in ('HELD','CONFIRMED')
-        and not (s.slotEnd <= :slotStart or s.slotStart >= :slotEnd)
+        and s.statusCode = :status
+        and s.slotTo > :slotFrom and s.slotFrom < :slotTo
+        and s.slotEnd > :slotStart and s.slotStart < :slotEnd
     """)
-    List<SlotHold> findOverlappingForUpdate(@Param("doctorId") Long doctorId,
-                                            @Param("slotStart") OffsetDateTime slotStart,
-                                            @Param("slotEnd") OffsetDateTime slotEnd);
+    List<SlotHold> findOverlappingInStatusForUpdate(@Param("doctorId") Long doctorId,
+                                                    @Param("status") short status,
+                                                    @Param("slotFrom") long slotFrom,
+                                                    @Param("slotTo") long slotTo,
+                                                    @Param("slotStart") OffsetDateTime slotStart,
+                                                    @Param("slotEnd") OffsetDateTime slotEnd);
+
+    @Query("""
+      select s from SlotHold s
+      where s.doctorId = :doctorId
+        and s.statusCode = :status
+        and s.slotTo > :slotFrom and s.slotFrom < :slotTo
+        and s.slotEnd > :slotStart and s.slotStart < :slotEnd
+    """)
+    List<SlotHold> findOverlappingInStatus(@Param("doctorId") Long doctorId,
+                                           @Param("status") short status,
+                                           @Param("slotFrom") long slotFrom,
+                                           @Param("slotTo") long slotTo,
+                                           @Param("slotStart") OffsetDateTime slotStart,
+                                           @Param("slotEnd") OffsetDateTime slotEnd);
+
+    /** HELD and CONFIRMED holds overlapping [slotStart, slotEnd), locked. */
+    default List<SlotHold> findOverlappingForUpdate(Long doctorId, OffsetDateTime slotStart, OffsetDateTime slotEnd) {
+        long from = SlotGrid.slotOf(slotStart), to = SlotGrid.slotCeil(slotEnd);
+        List<SlotHold> found = new ArrayList<>(findOverlappingInStatusForUpdate(doctorId, HoldStatus.HELD.code, from, to, slotStart, slotEnd));
+        found.addAll(findOverlappingInStatusForUpdate(doctorId, HoldStatus.CONFIRMED.code, from, to, slotStart, slotEnd));
+        return found;
+    }
+
+    /** Availability pre-check; read-only so it can be served by a read replica. */
+    @Transactional(readOnly = true)
+    default List<SlotHold> findOverlapping(Long doctorId, OffsetDateTime slotStart, OffsetDateTime slotEnd) {
+        long from = SlotGrid.slotOf(slotStart), to = SlotGrid.slotCeil(slotEnd);
+        List<SlotHold> found = new ArrayList<>(findOverlappingInStatus(doctorId, HoldStatus.HELD.code, from, to, slotStart, slotEnd));
+        found.addAll(findOverlappingInStatus(doctorId, HoldStatus.CONFIRMED.code, from, to, slotStart, slotEnd));
+        return found;
+    }
+
+    @Query("select s.doctorId, s.slotStart, s.slotEnd from SlotHold s where s.statusCode in (1, 2) and s.slotTo > :afterSlot")
+    Stream<Object[]> streamActiveEndingAfter(@Param("afterSlot") long afterSlot);
+
+    // one range scan for the free-slot grid; rows arrive ordered so callers can merge per doctor
+    @QueryHints(@QueryHint(name = org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("""
+      select s.doctorId, s.slotStart, s.slotEnd from SlotHold s
+      where s.doctorId in :doctorIds
+        and s.statusCode in (1, 2)
+        and s.slotTo > :fromSlot and s.slotFrom < :toSlot
+      order by s.doctorId, s.slotFrom
+    """)
+    Stream<Object[]> streamActiveInRange(@Param("doctorIds") Collection<Long> doctorIds,
+                                         @Param("fromSlot") long fromSlot,
+                                         @Param("toSlot") long toSlot);
+
+    @Query("select s.holdId, s.doctorId, s.expiresAt from SlotHold s where s.statusCode = 1 and s.expiresAt is not null")
+    Stream<Object[]> streamHeldDeadlines();
+
+    @Query("select s.holdId, s.doctorId, s.expiresAt from SlotHold s where s.statusCode = 1 and s.expiresAt <= :before order by s.expiresAt")
+    List<Object[]> findHeldExpiredBefore(@Param("before") OffsetDateTime before, Limit limit);
+
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select s from SlotHold s where s.holdId in :holdIds and s.statusCode = 1 and s.expiresAt <= :now")
+    List<SlotHold> findExpiredHeldForUpdate(@Param("holdIds") Collection<Long> holdIds, @Param("now") OffsetDateTime now);
+
+    @Modifying
+    @Query("update SlotHold s set s.holdStatus = 'RELEASED', s.statusCode = 3, s.version = s.version + 1 where s.holdId in :holdIds and s.statusCode = 1")
+    int markReleased(@Param("holdIds") Collection<Long> holdIds);
 
     List<SlotHold> findByDoctorIdAndHoldStatusAndExpiresAtBefore(Long doctorId, String status, OffsetDateTime before);
 }
@@ -0,0 +1,187 @@
+package org.hms.doctor.security;
+
+import java.util.Arrays;
+
+/**
+ * Role x method x route decisions compiled from route templates. Templates are stored in a segment
+ * trie whose nodes carry, per HTTP method, a bitmask of the allowed roles. A lookup walks the request
+ * path in place (no substrings, regexes or case conversion), so deciding a request does not allocate.
+ * <p>
+ * Template segments are literals, {@code {name}} (any segment), {@code {name:\d+}} (digits only) or a
+ * trailing {@code **} (zero or more segments). Literals win over variables, variables over {@code **}.
+ * Requests whose route or method is not in the table are decided by the per-method fallback.
+ */
+public final class AuthorizationTable {
+
+    public enum Role {
+        ADMIN, DOCTOR, RECEPTION, ANONYMOUS;
+
+        final int bit = 1 << ordinal();
+
+        /** Maps "admin", "ROLE_ADMIN" and case variants to a role; null for anything else. */
+        public static Role of(String name) {
+            if (name == null) return null;
+            int offset = name.regionMatches(true, 0, "ROLE_", 0, 5) ? 5 : 0;
+            int len = name.length() - offset;
+            for (Role r : VALUES) {
+                if (r.name().length() == len && name.regionMatches(true, offset, r.name(), 0, len)) return r;
+            }
+            return null;
+        }
+
+        private static final Role[] VALUES = values();
+    }
+
+    public enum Decision { PUBLIC, ALLOW, DENY }
+
+    static final String[] METHODS = {"GET", "HEAD", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"};
+    private static final int OTHER = METHODS.length;
+    private static final int PUBLIC_BIT = 1 << 30;
+    private static final int ALL_ROLES = (1 << Role.values().length) - 1;
+
+    private final Node root;
+    private final int[] fallback;
+
+    private AuthorizationTable(Node root, int[] fallback) {
+        this.root = root;
+        this.fallback = fallback;
+    }
+
+    public static Builder builder() { return new Builder(); }
+
+    /** PUBLIC for routes opened with permitAll, whatever the role; otherwise ALLOW or DENY for the role. */
+    public Decision decide(Role role, String method, String path) {
+        int m = methodIndex(method);
+        int[] allowed = lookup(path);
+        int mask = allowed != null && allowed[m] != 0 ? allowed[m] : fallback[m];
+        if ((mask & PUBLIC_BIT) != 0) return Decision.PUBLIC;
+        return role != null && (mask & role.bit) != 0 ? Decision.ALLOW : Decision.DENY;
+    }
+
+    static int methodIndex(String method) {
+        switch (method) {
+            case "GET": return 0;
+            case "HEAD": return 1;
+            case "POST": return 2;
+            case "PUT": return 3;
+            case "PATCH": return 4;
+            case "DELETE": return 5;
+            case "OPTIONS": return 6;
+            default: return OTHER;
+        }
+    }
+
+    private int[] lookup(String path) {
+        if (path == null || path.isEmpty() || path.charAt(0) != '/') return null;
+        return match(root, path, 1);
+    }
+
+    // pos is the start of the next segment; path.length() + 1 means the path is consumed
+    private static int[] match(Node node, String path, int pos) {
+        int len = path.length();
+        if (pos > len) {
+            if (node.allowed != null) return node.allowed;
+            return node.rest != null ? node.rest.allowed : null;
+        }
+        int end = path.indexOf('/', pos);
+        if (end < 0) end = len;
+        int segLen = end - pos;
+        if (segLen > 0) {
+            for (int i = 0; i < node.literals.length; i++) {
+                String lit = node.literals[i];
+                if (lit.length() == segLen && path.regionMatches(pos, lit, 0, segLen)) {
+                    int[] found = match(node.literalChildren[i], path, end + 1);
+                    if (found != null) return found;
+                }
+            }
+            if (node.numeric != null && isDigits(path, pos, end)) {
+                int[] found = match(node.numeric, path, end + 1);
+                if (found != null) return found;
+            }
+            if (node.variable != null) {
+                int[] found = match(node.variable, path, end + 1);
+                if (found != null) return found;
+            }
+        }
+        return node.rest != null ? node.rest.allowed : null;
+    }
+
+    private static boolean isDigits(String s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    private static final class Node {
+        String[] literals = new String[0];
+        Node[] literalChildren = new Node[0];
+        Node numeric;
+        Node variable;
+        Node rest;
+        int[] allowed;
+
+        Node child(String segment) {
+            if (segment.equals("**")) return rest != null ? rest : (rest = new Node());
+            if (segment.startsWith("{") && segment.endsWith("}")) {
+                if (segment.endsWith(":\\d+}")) return numeric != null ? numeric : (numeric = new Node());
+                if (segment.indexOf(':') >= 0) throw new IllegalArgumentException("unsupported template constraint: " + segment);
+                return variable != null ? variable : (variable = new Node());
+            }
+            for (int i = 0; i < literals.length; i++) if (literals[i].equals(segment)) return literalChildren[i];
+            literals = Arrays.copyOf(literals, literals.length + 1);
+            literalChildren = Arrays.copyOf(literalChildren, literalChildren.length + 1);
+            literals[literals.length - 1] = segment;
+            return literalChildren[literalChildren.length - 1] = new Node();
+        }
+    }
+
+    public static final class Builder {
+        private final Node root = new Node();
+        private final int[] fallback = new int[METHODS.length + 1];
+
+        private Builder() {}
+
+        /** Allows the roles on the route for the given comma-separated methods. */
+        public Builder allow(String methods, String template, Role... roles) {
+            int bits = 0;
+            for (Role r : roles) bits |= r.bit;
+            Node node = node(template);
+            if (node.allowed == null) node.allowed = new int[METHODS.length + 1];
+            for (String m : methods.split(",")) node.allowed[methodIndex(m.trim())] |= bits;
+            return this;
+        }
+
+        /** Opens the route to everyone, authenticated or not, for every method. */
+        public Builder permitAll(String template) {
+            Node node = node(template);
+            node.allowed = new int[METHODS.length + 1];
+            Arrays.fill(node.allowed, PUBLIC_BIT | ALL_ROLES);
+            return this;
+        }
+
+        /** Roles allowed for a method on routes the table does not list. */
+        public Builder fallback(String methods, Role... roles) {
+            for (String m : methods.split(",")) {
+                for (Role r : roles) fallback[methodIndex(m.trim())] |= r.bit;
+            }
+            return this;
+        }
+
+        public AuthorizationTable build() {
+            return new AuthorizationTable(root, fallback.clone());
+        }
+
+        private Node node(String template) {
+            if (!template.startsWith("/")) throw new IllegalArgumentException("template must start with '/': " + template);
+            Node node = root;
+            if (template.length() == 1) return node;
+            for (String segment : template.substring(1).split("/", -1)) {
+                if (segment.isEmpty()) throw new IllegalArgumentException("empty segment in " + template);
+                node = node.child(segment);
+            }
+            return node;
+        }
+    }
+}
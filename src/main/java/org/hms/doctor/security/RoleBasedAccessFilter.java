@@ -4,47 +4,77 @@ import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import org.hms.doctor.security.AuthorizationTable.Decision;
+import org.hms.doctor.security.AuthorizationTable.Role;
 import org.springframework.context.annotation.Profile;
-import org.springframework.http.HttpMethod;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
-import java.util.List;
-import java.util.Set;
+import java.nio.charset.StandardCharsets;
 
+import static org.hms.doctor.security.AuthorizationTable.Role.*;
+
+/**
+ * The single place where roles are checked. Every route's policy is listed in {@link #RULES};
+ * controllers do not repeat role checks.
+ */
 @Component
 @Profile("!dev")
 public class RoleBasedAccessFilter extends OncePerRequestFilter {
 
-    // Paths that should be publicly accessible (no RBAC)
-    private static final List<String> PUBLIC_PATHS = List.of(
-            "/v3/api-docs",           // OpenAPI json
-            "/v3/api-docs/",
-            "/swagger-ui.html",
-            "/swagger-ui",
-            "/swagger-ui/index.html",
-            "/swagger-ui/",
-            "/swagger-ui/**",
-            "/swagger-resources",
-            "/actuator/health",
-            "/actuator/info",
-            "/favicon.ico",
-            "/healthcheck/ready",
-            "/healthcheck/live"
-    );
-
-    private boolean isPublic(String path) {
-        if (path == null) return false;
-        // exact match or prefix match for swagger-ui and api-docs variants
-        if (path.startsWith("/v3/api-docs")) return true;
-        if (path.startsWith("/swagger-ui") || path.startsWith("/swagger-resources")) return true;
-        if (path.startsWith("/actuator")) return path.equals("/actuator/health") || path.equals("/actuator/info");
-        if (path.equals("/favicon.ico")) return true;
-        if (path.equals("/healthcheck/ready")) return path.equals("/healthcheck/ready");
-        if (path.equals("/healthcheck/live")) return path.equals("/healthcheck/live");
-        return false;
-    }
+    public static final AuthorizationTable RULES = AuthorizationTable.builder()
+            // Paths that should be publicly accessible (no RBAC)
+            .permitAll("/v3/api-docs/**")
+            .permitAll("/v3/api-docs.yaml")
+            .permitAll("/swagger-ui.html")
+            .permitAll("/swagger-ui/**")
+            .permitAll("/swagger-resources/**")
+            .permitAll("/actuator/health")
+            .permitAll("/actuator/info")
+            .permitAll("/favicon.ico")
+            .permitAll("/healthcheck/ready")
+            .permitAll("/healthcheck/live")
+
+            // doctor directory
+            .allow("GET", "/v1/doctors", ADMIN, DOCTOR, RECEPTION)
+            .allow("POST", "/v1/doctors", ADMIN, RECEPTION)
+            .allow("GET", "/v1/doctors/cursor", ADMIN, DOCTOR, RECEPTION)
+            .allow("GET", "/v1/doctors/export", ADMIN)
+            .allow("GET", "/v1/doctors/{id}", ADMIN, DOCTOR, RECEPTION)
+            .allow("PUT", "/v1/doctors/{id}", ADMIN)
+            .allow("DELETE", "/v1/doctors/{id}", ADMIN)
+            .allow("POST,GET", "/v1/admin/doctors/import", ADMIN)
+            .allow("GET", "/v1/admin/doctors/import/{jobId}", ADMIN)
+
+            // scheduling
+            .allow("GET", "/v1/doctors/free-slots", ADMIN, RECEPTION)
+            .allow("GET", "/v1/doctors/next-available", ADMIN, RECEPTION)
+            .allow("POST", "/v1/doctors/{id}/availability", ADMIN, RECEPTION)
+            .allow("GET", "/v1/doctors/{id}/schedule", ADMIN, DOCTOR, RECEPTION)
+            .allow("PUT", "/v1/doctors/{id}/schedule", ADMIN)
+            .allow("POST", "/v1/doctors/{id}/reserve", ADMIN, RECEPTION)
+            .allow("POST", "/v1/doctors/reserve/batch", ADMIN, RECEPTION)
+            .allow("POST", "/v1/doctors/{id}/reserve/{holdId}/confirm", ADMIN)
+            .allow("POST", "/v1/doctors/{id}/reserve/{holdId}/release", ADMIN, RECEPTION)
+            .allow("GET", "/v1/doctors/events", ADMIN, RECEPTION)
+            .allow("GET", "/v1/doctors/{id}/events", ADMIN, RECEPTION)
+
+            // anonymous: allow only safe GETs to /v1/patients/*/exists
+            .allow("GET", "/v1/patients/{id:\\d+}/exists", ADMIN, DOCTOR, RECEPTION, ANONYMOUS)
+
+            // anything else: admin everything, doctors read, reception everything but DELETE
+            .fallback("GET,HEAD,POST,PUT,PATCH,DELETE,OPTIONS", ADMIN)
+            .fallback("GET", DOCTOR)
+            .fallback("GET,POST,PUT", RECEPTION)
+            .build();
+
+    private static final byte[] FORBIDDEN = """
+            {"code":"FORBIDDEN","message":"access denied for role","correlationId":"-"}
+            """.getBytes(StandardCharsets.UTF_8);
 
     @Override
     protected void doFilterInternal(HttpServletRequest request,
@@ -52,74 +82,30 @@ public class RoleBasedAccessFilter extends OncePerRequestFilter {
                                     FilterChain filterChain)
             throws ServletException, IOException {
 
-        String path = request.getRequestURI();
-
-        // Allow Swagger / actuator / OPTIONS without checks
-        if ("OPTIONS".equalsIgnoreCase(request.getMethod()) || isPublic(path)) {
-            filterChain.doFilter(request, response);
-            return;
-        }
-
-        // 🔹 First try to get role from authenticated principal
-        String role = null;
-        var auth = org.springframework.security.core.context.SecurityContextHolder
-                .getContext().getAuthentication();
-
-        if (auth != null && auth.isAuthenticated() && auth.getAuthorities() != null) {
-            for (var ga : auth.getAuthorities()) {
-                String authority = ga.getAuthority();   // e.g. "ROLE_ADMIN"
-                if (authority.startsWith("ROLE_")) {
-                    role = authority.substring(5).toLowerCase(); // admin
-                } else {
-                    role = authority.toLowerCase();
-                }
-                break; // take first
-            }
-        }
-
-        // 🔹 If no authenticated role, fallback to header
-        if (role == null) {
-            role = request.getHeader("X-User-Role");
-        }
-        if (role == null) role = "anonymous";
-
         String method = request.getMethod();
-        boolean allowed = checkPermission(role, method, path);
+        String path = request.getRequestURI();
 
-        if (!allowed) {
+        // OPTIONS and public routes (Swagger, health) pass without checks
+        if (!"OPTIONS".equals(method) && RULES.decide(resolveRole(request), method, path) == Decision.DENY) {
             response.setStatus(HttpServletResponse.SC_FORBIDDEN);
             response.setContentType("application/json");
-            response.getWriter().write("""
-            {"code":"FORBIDDEN","message":"access denied for role","correlationId":"-"}
-        """);
+            response.setContentLength(FORBIDDEN.length);
+            response.getOutputStream().write(FORBIDDEN);
             return;
         }
 
         filterChain.doFilter(request, response);
     }
 
-
-    private boolean checkPermission(String role, String method, String path) {
-        if ("admin".equalsIgnoreCase(role)) return true;
-
-        if ("doctor".equalsIgnoreCase(role)) {
-            // doctors can only GET
-            return HttpMethod.GET.matches(method);
-        }
-
-        if ("reception".equalsIgnoreCase(role)) {
-            // reception allowed: GET, POST, PUT (not DELETE)
-            if (HttpMethod.DELETE.matches(method)) return false;
-            return Set.of("GET","POST","PUT").contains(method);
-        }
-
-        // anonymous: allow only safe GETs to /v1/patients/*/exists
-        if ("anonymous".equalsIgnoreCase(role)) {
-            if (HttpMethod.GET.matches(method) && path.matches("^/v1/patients/\\d+/exists$")) return true;
-            return false;
+    /** First authority of the authenticated principal, else the X-User-Role header, else anonymous. */
+    static Role resolveRole(HttpServletRequest request) {
+        Authentication auth = SecurityContextHolder.getContext().getAuthentication();
+        if (auth != null && auth.isAuthenticated() && auth.getAuthorities() != null) {
+            for (GrantedAuthority ga : auth.getAuthorities()) {
+                return Role.of(ga.getAuthority()); // take first
+            }
         }
-
-        // default deny
-        return false;
+        String header = request.getHeader("X-User-Role");
+        return header == null ? ANONYMOUS : Role.of(header);
     }
 }
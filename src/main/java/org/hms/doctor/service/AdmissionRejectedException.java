@@ -0,0 +1,13 @@
+package org.hms.doctor.service;
+
+/** Thrown when a doctor's admission lane is saturated; callers should back off and retry. */
+public class AdmissionRejectedException extends RuntimeException {
+    private final long retryAfterSeconds;
+
+    public AdmissionRejectedException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public long getRetryAfterSeconds() { return retryAfterSeconds; }
+}
@@ -0,0 +1,93 @@
+package org.hms.doctor.service;
+
+import org.hms.doctor.model.DailyCapacity;
+import org.hms.doctor.repo.DailyCapacityRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+
+/**
+ * Books and returns daily capacity for a doctor-day. ATOMIC mode answers with a single conditional
+ * UPDATE whose affected-row count is the decision, so no row lock is held between round trips;
+ * LOCKING mode is the original SELECT ... FOR UPDATE, modify, save sequence.
+ * Both must run inside the caller's transaction.
+ */
+@Component
+public class CapacityLedger {
+
+    public enum Mode { ATOMIC, LOCKING }
+
+    private final DailyCapacityRepository capacityRepo;
+    private final Mode mode;
+
+    public CapacityLedger(DailyCapacityRepository capacityRepo,
+                          @Value("${hms.scheduling.capacity.mode:ATOMIC}") Mode mode) {
+        this.capacityRepo = capacityRepo;
+        this.mode = mode;
+    }
+
+    public Mode getMode() { return mode; }
+
+    /** Takes one unit of the day's capacity; false when the day is full. */
+    public boolean book(Long doctorId, LocalDate day) {
+        return mode == Mode.ATOMIC ? bookAtomic(doctorId, day) : bookLocking(doctorId, day);
+    }
+
+    /** Gives back one unit of the day's capacity, never going below zero. */
+    public void unbook(Long doctorId, LocalDate day) {
+        if (mode == Mode.ATOMIC) unbookAtomic(doctorId, day);
+        else unbookLocking(doctorId, day);
+    }
+
+    /**
+     * Locks the day's capacity row, creating it if needed, and returns the units still free; grouped
+     * confirms then book what they need with {@link #bookLocked} so a whole batch costs one update.
+     */
+    public int lockFree(Long doctorId, LocalDate day) {
+        capacityRepo.insertIfMissing(doctorId, day, SchedulingService.DEFAULT_DAILY_CAPACITY);
+        DailyCapacity dc = capacityRepo.findByDoctorIdAndDocDateForUpdate(doctorId, day).orElseThrow();
+        return Math.max(0, dc.getCapacity() - dc.getBookedCount());
+    }
+
+    /** Books {@code count} units of a row this transaction locked with {@link #lockFree}. */
+    public void bookLocked(Long doctorId, LocalDate day, int count) {
+        if (count > 0) capacityRepo.addBooked(doctorId, day, count);
+    }
+
+    public boolean bookAtomic(Long doctorId, LocalDate day) {
+        if (capacityRepo.incrementIfBelowCapacity(doctorId, day) == 1) return true;
+        // either the day is full or its row does not exist yet
+        capacityRepo.insertIfMissing(doctorId, day, SchedulingService.DEFAULT_DAILY_CAPACITY);
+        return capacityRepo.incrementIfBelowCapacity(doctorId, day) == 1;
+    }
+
+    public void unbookAtomic(Long doctorId, LocalDate day) {
+        capacityRepo.decrementIfPositive(doctorId, day);
+    }
+
+    public boolean bookLocking(Long doctorId, LocalDate day) {
+        DailyCapacity dc = capacityRepo.findByDoctorIdAndDocDateForUpdate(doctorId, day)
+                .orElseGet(() -> {
+                    DailyCapacity n = new DailyCapacity();
+                    n.setDoctorId(doctorId);
+                    n.setDocDate(day);
+                    n.setCapacity(SchedulingService.DEFAULT_DAILY_CAPACITY);
+                    n.setBookedCount(0);
+                    return n;
+                });
+        if (dc.getBookedCount() >= dc.getCapacity()) return false;
+        dc.setBookedCount(dc.getBookedCount()+1);
+        capacityRepo.save(dc);
+        return true;
+    }
+
+    public void unbookLocking(Long doctorId, LocalDate day) {
+        DailyCapacity dc = capacityRepo.findByDoctorIdAndDocDateForUpdate(doctorId, day)
+                .orElse(null);
+        if (dc!=null && dc.getBookedCount()>0) {
+            dc.setBookedCount(dc.getBookedCount()-1);
+            capacityRepo.save(dc);
+        }
+    }
+}
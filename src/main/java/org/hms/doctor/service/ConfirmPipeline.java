@@ -0,0 +1,308 @@
+package org.hms.doctor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.hms.doctor.config.ReadWriteRoutingDataSource;
+import org.hms.doctor.dto.ConfirmRequest;
+import org.hms.doctor.model.HoldStatus;
+import org.hms.doctor.model.SlotEvent;
+import org.hms.doctor.model.SlotHold;
+import org.hms.doctor.repo.SlotEventJdbcRepository;
+import org.hms.doctor.repo.SlotHoldJdbcRepository;
+import org.hms.doctor.repo.SlotHoldRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Entry point for confirms. DIRECT runs each confirm in its own transaction behind the doctor's admission
+ * lane. GROUPED (for bulk appointment imports) queues confirms and has one flusher thread take up to
+ * batch-size of them, waiting at most flush-ms for the batch to fill, and group them by doctor and capacity day.
+ * Each group is one transaction: the capacity row and the group's holds are locked once, as many holds as
+ * the day has capacity for are confirmed with one JDBC batch and one capacity update, and every caller's
+ * future completes with its own hold or error after the commit.
+ * <p>
+ * Confirms that are not plain HELD-to-CONFIRMED transitions (unknown, archived or already confirmed holds,
+ * a hold confirmed twice in one batch), and every confirm of a group whose transaction failed, go through
+ * SchedulingService.confirm one by one, so they get exactly the answers of DIRECT mode.
+ * <p>
+ * Every queued confirm is timed once, from submit to its answer, as operation confirm_grouped.
+ */
+@Service
+public class ConfirmPipeline {
+    private static final Logger log = LoggerFactory.getLogger(ConfirmPipeline.class);
+
+    public enum Mode { DIRECT, GROUPED }
+
+    private final SchedulingService scheduling;
+    private final DoctorAdmissionLanes lanes;
+    private final SlotHoldRepository holdRepo;
+    private final SlotHoldJdbcRepository holdJdbc;
+    private final CapacityLedger ledger;
+    private final SlotEventJdbcRepository outbox;
+    private final SlotOccupancyIndex occupancy;
+    private final HoldExpiryService expiry;
+    private final SchedulingMetrics metrics;
+    private final TransactionTemplate tx;
+    private final Mode mode;
+    private final int batchSize;
+    private final long flushNanos;
+    private final long maxWaitMs;
+    private final BlockingQueue<Pending> queue;
+    private final Counter commits;
+    private final Counter confirmed;
+    private final DistributionSummary groupSize;
+    private volatile boolean running;
+    private Thread flusher;
+
+    private record Pending(Long doctorId, Long holdId, ConfirmRequest req, Timer.Sample sample, CompletableFuture<SlotHold> result) {}
+
+    public ConfirmPipeline(SchedulingService scheduling, DoctorAdmissionLanes lanes, SlotHoldRepository holdRepo,
+                           SlotHoldJdbcRepository holdJdbc, CapacityLedger ledger, SlotEventJdbcRepository outbox,
+                           SlotOccupancyIndex occupancy, HoldExpiryService expiry, SchedulingMetrics metrics,
+                           TransactionTemplate tx, MeterRegistry meters,
+                           @Value("${hms.scheduling.confirm.mode:DIRECT}") Mode mode,
+                           @Value("${hms.scheduling.confirm.batch-size:200}") int batchSize,
+                           @Value("${hms.scheduling.confirm.flush-ms:5}") long flushMs,
+                           @Value("${hms.scheduling.confirm.queue-capacity:10000}") int queueCapacity,
+                           @Value("${hms.scheduling.confirm.max-wait-ms:5000}") long maxWaitMs) {
+        if (batchSize < 1) throw new IllegalArgumentException("hms.scheduling.confirm.batch-size must be >= 1");
+        this.scheduling = scheduling;
+        this.lanes = lanes;
+        this.holdRepo = holdRepo;
+        this.holdJdbc = holdJdbc;
+        this.ledger = ledger;
+        this.outbox = outbox;
+        this.occupancy = occupancy;
+        this.expiry = expiry;
+        this.metrics = metrics;
+        this.tx = tx;
+        this.mode = mode;
+        this.batchSize = batchSize;
+        this.flushNanos = TimeUnit.MILLISECONDS.toNanos(flushMs);
+        this.maxWaitMs = maxWaitMs;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.commits = Counter.builder("scheduling.confirm.commits")
+                .description("Confirm transactions, one per hold in DIRECT mode and one per doctor-day group in GROUPED mode")
+                .tag("mode", mode.name().toLowerCase())
+                .register(meters);
+        this.confirmed = Counter.builder("scheduling.confirm.confirmed")
+                .description("Confirms answered with a confirmed hold")
+                .tag("mode", mode.name().toLowerCase())
+                .register(meters);
+        this.groupSize = DistributionSummary.builder("scheduling.confirm.group.size")
+                .description("Confirms applied per grouped transaction")
+                .register(meters);
+        Gauge.builder("scheduling.confirm.queued", queue, BlockingQueue::size)
+                .description("Confirms waiting for the group-commit flusher")
+                .register(meters);
+    }
+
+    public Mode getMode() { return mode; }
+
+    /** Confirms and waits for the result; in GROUPED mode a confirm still queued after max-wait-ms is rejected. */
+    public SlotHold confirm(Long doctorId, Long holdId, ConfirmRequest req) {
+        if (mode == Mode.DIRECT) return lanes.run(doctorId, () -> confirmDirect(doctorId, holdId, req));
+        try {
+            SlotHold h = submit(doctorId, holdId, req).get(maxWaitMs, TimeUnit.MILLISECONDS);
+            // committed on the flusher thread; the request thread still owes its caller read-your-writes
+            ReadWriteRoutingDataSource.markWrite();
+            return h;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            // the confirm may still commit; retrying with the same appointmentId is safe
+            throw new AdmissionRejectedException("confirm still queued, retry", 1);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AdmissionRejectedException("interrupted waiting for confirm", 1);
+        }
+    }
+
+    /** Queues a confirm (runs it right away in DIRECT mode); the future completes after its commit. */
+    public CompletableFuture<SlotHold> submit(Long doctorId, Long holdId, ConfirmRequest req) {
+        if (mode == Mode.DIRECT) {
+            try {
+                return CompletableFuture.completedFuture(confirmDirect(doctorId, holdId, req));
+            } catch (RuntimeException e) {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        Pending p = new Pending(doctorId, holdId, req, metrics.start(), new CompletableFuture<>());
+        if (!running || !queue.offer(p)) throw new AdmissionRejectedException("confirm queue full", 1);
+        return p.result();
+    }
+
+    private SlotHold confirmDirect(Long doctorId, Long holdId, ConfirmRequest req) {
+        SlotHold h = scheduling.confirm(doctorId, holdId, req);
+        commits.increment();
+        confirmed.increment();
+        return h;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public synchronized void start() {
+        if (mode != Mode.GROUPED || running) return;
+        running = true;
+        flusher = Thread.ofPlatform().name("confirm-flusher").daemon().start(this::loop);
+        log.info("Grouped confirm pipeline started: batch-size {}, flush {} ms", batchSize, TimeUnit.NANOSECONDS.toMillis(flushNanos));
+    }
+
+    @PreDestroy
+    public synchronized void stop() throws InterruptedException {
+        if (!running) return;
+        running = false;
+        flusher.join(TimeUnit.SECONDS.toMillis(10));
+    }
+
+    private void loop() {
+        List<Pending> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) continue;
+                batch.add(first);
+                long deadline = System.nanoTime() + flushNanos;
+                while (batch.size() < batchSize) {
+                    if (queue.drainTo(batch, batchSize - batch.size()) > 0) continue;
+                    long left = deadline - System.nanoTime();
+                    Pending next = left > 0 ? queue.poll(left, TimeUnit.NANOSECONDS) : null;
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Grouped confirm flush failed", e);
+                batch.forEach(p -> fail(p, e, SchedulingMetrics.ERROR));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        List<Long> ids = batch.stream().map(Pending::holdId).distinct().toList();
+        Map<Long, SlotHold> holds = new LinkedHashMap<>();
+        // the primary: a hold reserved a moment ago may not have reached a replica yet
+        ReadWriteRoutingDataSource.onPrimary(() -> holdRepo.findAllById(ids)).forEach(h -> holds.put(h.getHoldId(), h));
+
+        Map<String, List<Pending>> groups = new LinkedHashMap<>();
+        List<Pending> oneByOne = new ArrayList<>();
+        Set<Long> seen = new HashSet<>();
+        for (Pending p : batch) {
+            SlotHold h = holds.get(p.holdId());
+            if (h == null || !h.getDoctorId().equals(p.doctorId()) || !"HELD".equals(h.getHoldStatus()) || !seen.add(p.holdId())) {
+                oneByOne.add(p);
+            } else {
+                groups.computeIfAbsent(p.doctorId() + "/" + h.getSlotDay(), k -> new ArrayList<>()).add(p);
+            }
+        }
+        for (List<Pending> group : groups.values()) {
+            try {
+                oneByOne.addAll(applyGroup(group, holds));
+            } catch (RuntimeException e) {
+                log.warn("Grouped confirm of {} holds failed, confirming them one by one: {}", group.size(), e.getMessage());
+                oneByOne.addAll(group);
+            }
+        }
+        for (Pending p : oneByOne) {
+            SlotHold h;
+            try {
+                h = confirmDirect(p.doctorId(), p.holdId(), p.req());
+            } catch (RuntimeException e) {
+                // SchedulingService.confirm timed the call with its exact outcome; this one only tells errors apart
+                fail(p, e, e instanceof IllegalArgumentException ? SchedulingMetrics.INVALID
+                        : e instanceof IllegalStateException ? SchedulingMetrics.CONFLICT : SchedulingMetrics.ERROR);
+                continue;
+            }
+            succeed(p, h);
+        }
+    }
+
+    /**
+     * Confirms one doctor-day's holds in a single transaction and completes their futures; returns the
+     * confirms whose hold stopped being HELD before it was locked, for the one-by-one path.
+     */
+    private List<Pending> applyGroup(List<Pending> group, Map<Long, SlotHold> holds) {
+        Long doctorId = group.get(0).doctorId();
+        LocalDate day = holds.get(group.get(0).holdId()).getSlotDay();
+        List<Pending> accepted = new ArrayList<>(group.size());
+        List<Pending> full = new ArrayList<>();
+        List<Pending> changed = new ArrayList<>();
+        tx.executeWithoutResult(status -> {
+            // same lock order as a single confirm: the capacity row first, then the holds
+            int free = metrics.lockWait("capacity_update", () -> ledger.lockFree(doctorId, day));
+            Map<Long, Short> statuses = metrics.lockWait("confirm_group", () -> holdJdbc.lockStatuses(group.stream().map(Pending::holdId).toList()));
+            for (Pending p : group) {
+                if (!Short.valueOf(HoldStatus.HELD.code).equals(statuses.get(p.holdId()))) changed.add(p);
+                else if (accepted.size() < free) accepted.add(p);
+                else full.add(p);
+            }
+            if (accepted.isEmpty()) return;
+            ledger.bookLocked(doctorId, day, accepted.size());
+            holdJdbc.confirmAll(accepted.stream().map(Pending::holdId).toList(), accepted.stream().map(p -> p.req().appointmentId).toList());
+            outbox.appendAll(accepted.stream().map(p -> SlotEvent.of(holds.get(p.holdId()), "CONFIRMED", 1)).toList());
+            List<SlotHold> done = accepted.stream().map(p -> holds.get(p.holdId())).toList();
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    done.forEach(h -> {
+                        occupancy.occupy(doctorId, h.getSlotStart(), h.getSlotEnd());
+                        expiry.cancel(h.getHoldId());
+                    });
+                }
+            });
+        });
+        if (!accepted.isEmpty()) {
+            commits.increment();
+            confirmed.increment(accepted.size());
+            groupSize.record(accepted.size());
+        }
+        for (Pending p : accepted) {
+            SlotHold h = holds.get(p.holdId());
+            h.setHoldStatus("CONFIRMED");
+            h.setAppointmentId(p.req().appointmentId);
+            h.setVersion(h.getVersion() == null ? 1 : h.getVersion() + 1);
+            succeed(p, h);
+        }
+        for (Pending p : full) fail(p, new IllegalStateException("daily capacity reached at confirm"), SchedulingMetrics.CAPACITY_REACHED);
+        return changed;
+    }
+
+    // only the call that completes the future stops its sample, so each confirm is timed once
+    private void succeed(Pending p, SlotHold h) {
+        if (p.result().complete(h)) metrics.stop(p.sample(), "confirm_grouped", SchedulingMetrics.OK);
+    }
+
+    private void fail(Pending p, RuntimeException e, String outcome) {
+        if (p.result().completeExceptionally(e)) metrics.stop(p.sample(), "confirm_grouped", outcome);
+    }
+}
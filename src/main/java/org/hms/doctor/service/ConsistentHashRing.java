@@ -0,0 +1,53 @@
+package org.hms.doctor.service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable consistent-hash ring of member ids. Each member is placed at {@code virtualNodes} points on a
+ * 64-bit circle and a doctor belongs to the first point at or after its own hash, so adding or removing
+ * one member moves only about 1/n of the doctors, all of them to or from that member.
+ */
+public final class ConsistentHashRing {
+    private final TreeMap<Long, String> points = new TreeMap<>();
+
+    public ConsistentHashRing(Collection<String> memberIds, int virtualNodes) {
+        if (virtualNodes < 1) throw new IllegalArgumentException("virtualNodes must be >= 1");
+        for (String id : memberIds) {
+            for (int v = 0; v < virtualNodes; v++) {
+                // on the (astronomically unlikely) collision the smaller id wins, so every replica agrees
+                points.merge(hash(id + "#" + v), id, (a, b) -> a.compareTo(b) <= 0 ? a : b);
+            }
+        }
+    }
+
+    public boolean isEmpty() { return points.isEmpty(); }
+
+    /** The member owning the doctor, or null on an empty ring. */
+    public String ownerOf(long doctorId) {
+        if (points.isEmpty()) return null;
+        Map.Entry<Long, String> e = points.ceilingEntry(mix(doctorId));
+        return (e != null ? e : points.firstEntry()).getValue();
+    }
+
+    // FNV-1a over the UTF-8 bytes, then the murmur3 finalizer to spread neighbouring ids around the circle
+    private static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : s.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        return mix(h);
+    }
+
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
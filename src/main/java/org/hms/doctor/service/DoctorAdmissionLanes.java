@@ -0,0 +1,127 @@
+package org.hms.doctor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Serializes scheduling writes per doctor before they reach the database. Doctors are hashed onto
+ * a fixed set of lanes; a lane admits one writer at a time and lets at most {@code queueDepth}
+ * callers wait, so a burst on one popular doctor queues here instead of holding pooled connections
+ * on row locks, while doctors on other lanes proceed in parallel.
+ */
+@Component
+public class DoctorAdmissionLanes {
+
+    private final boolean enabled;
+    private final int queueDepth;
+    private final long maxWaitMs;
+    private final Lane[] lanes;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedTimeout;
+
+    public DoctorAdmissionLanes(MeterRegistry meters,
+                                @Value("${hms.scheduling.admission.enabled:true}") boolean enabled,
+                                @Value("${hms.scheduling.admission.lanes:64}") int laneCount,
+                                @Value("${hms.scheduling.admission.queue-depth:16}") int queueDepth,
+                                @Value("${hms.scheduling.admission.max-wait-ms:2000}") long maxWaitMs) {
+        if (laneCount < 1) throw new IllegalArgumentException("hms.scheduling.admission.lanes must be >= 1");
+        this.enabled = enabled;
+        this.queueDepth = queueDepth;
+        this.maxWaitMs = maxWaitMs;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(Timer.builder("scheduling.admission.wait")
+                    .description("Time spent waiting for a doctor's admission lane")
+                    .tag("lane", Integer.toString(i))
+                    .register(meters));
+        }
+        this.rejectedQueueFull = Counter.builder("scheduling.admission.rejected").tag("reason", "queue_full").register(meters);
+        this.rejectedTimeout = Counter.builder("scheduling.admission.rejected").tag("reason", "timeout").register(meters);
+        Gauge.builder("scheduling.admission.queued", this, l -> {
+            int sum = 0;
+            for (Lane lane : l.lanes) sum += lane.waiting.get();
+            return sum;
+        }).description("Callers waiting for an admission lane").register(meters);
+    }
+
+    public <T> T run(Long doctorId, Supplier<T> action) {
+        if (!enabled) return action.get();
+        Lane lane = lanes[laneOf(doctorId)];
+        lane.acquire();
+        try {
+            return action.get();
+        } finally {
+            lane.permit.release();
+        }
+    }
+
+    public void run(Long doctorId, Runnable action) {
+        run(doctorId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    /** Holds the lanes of every given doctor, taken in lane order so concurrent callers cannot deadlock. */
+    public <T> T runAll(Collection<Long> doctorIds, Supplier<T> action) {
+        if (!enabled) return action.get();
+        int[] order = doctorIds.stream().mapToInt(this::laneOf).distinct().sorted().toArray();
+        int held = 0;
+        try {
+            for (int idx : order) {
+                lanes[idx].acquire();
+                held++;
+            }
+            return action.get();
+        } finally {
+            for (int i = held - 1; i >= 0; i--) lanes[order[i]].permit.release();
+        }
+    }
+
+    private int laneOf(Long doctorId) {
+        return Math.floorMod(Long.hashCode(doctorId) * 0x9E3779B9, lanes.length);
+    }
+
+    private final class Lane {
+        final Semaphore permit = new Semaphore(1, true);
+        final AtomicInteger waiting = new AtomicInteger();
+        final Timer wait;
+
+        Lane(Timer wait) { this.wait = wait; }
+
+        void acquire() {
+            if (permit.tryAcquire()) {
+                wait.record(0, TimeUnit.NANOSECONDS);
+                return;
+            }
+            if (waiting.incrementAndGet() > queueDepth) {
+                waiting.decrementAndGet();
+                rejectedQueueFull.increment();
+                throw new AdmissionRejectedException("too many pending requests for this doctor", 1);
+            }
+            long started = System.nanoTime();
+            try {
+                if (!permit.tryAcquire(maxWaitMs, TimeUnit.MILLISECONDS)) {
+                    rejectedTimeout.increment();
+                    throw new AdmissionRejectedException("timed out waiting for this doctor's schedule", 1);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AdmissionRejectedException("interrupted waiting for this doctor's schedule", 1);
+            } finally {
+                waiting.decrementAndGet();
+                wait.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package org.hms.doctor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.hms.doctor.model.ShardMember;
+import org.hms.doctor.repo.ShardMemberJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Which replica owns which doctor (hms.sharding.enabled). Every replica keeps a lease row in
+ * scheduling_members, renewed each heartbeat, and places the live members on a consistent-hash ring;
+ * reserve, confirm, release and availability for a doctor are handled by its owner, where the admission
+ * lanes serialize them, so the row locks they still take are never contended across replicas.
+ * <p>
+ * A replica joins once it is ready to serve and leaves by deleting its row on shutdown; a crashed one
+ * drops out when its lease expires. Every member picks up a change on its next heartbeat. The previous
+ * owner may still finish a write for a moved doctor until then, which the row locks keep correct, and
+ * the occupancy index is rebuilt one heartbeat after a change so doctors gained from another replica
+ * reflect its writes. If the lease table cannot be reached this replica handles every doctor itself.
+ */
+@Component
+@ConditionalOnProperty(name = "hms.sharding.enabled", havingValue = "true")
+public class DoctorOwnership {
+    private static final Logger log = LoggerFactory.getLogger(DoctorOwnership.class);
+
+    private final ShardMemberJdbcRepository members;
+    private final SlotOccupancyIndex occupancy;
+    private final String memberId;
+    private final String baseUrl;
+    private final Duration leaseTtl;
+    private final int virtualNodes;
+    private final Counter rebalances;
+    private volatile View view = View.LOCAL;
+    private volatile boolean joined;
+    private boolean hadRing;
+    private boolean rebuildPending;
+
+    /** Live members (id to base URL) and the ring built from them; LOCAL when membership is unknown. */
+    private record View(Map<String, String> urls, ConsistentHashRing ring) {
+        static final View LOCAL = new View(Map.of(), null);
+    }
+
+    public DoctorOwnership(ShardMemberJdbcRepository members, SlotOccupancyIndex occupancy, MeterRegistry meters,
+                           @Value("${hms.sharding.member-id:}") String memberId,
+                           @Value("${hms.sharding.advertise-url:}") String advertiseUrl,
+                           @Value("${server.port:8080}") int port,
+                           @Value("${hms.sharding.lease-ttl:PT10S}") Duration leaseTtl,
+                           @Value("${hms.sharding.virtual-nodes:128}") int virtualNodes) {
+        this.members = members;
+        this.occupancy = occupancy;
+        InetAddress host = localHost();
+        this.memberId = memberId.isBlank() ? host.getHostName() + "-" + port + "-" + UUID.randomUUID().toString().substring(0, 8) : memberId;
+        this.baseUrl = advertiseUrl.isBlank() ? "http://" + host.getHostAddress() + ":" + port : advertiseUrl;
+        this.leaseTtl = leaseTtl;
+        this.virtualNodes = virtualNodes;
+        this.rebalances = Counter.builder("scheduling.shard.rebalances")
+                .description("Changes of the doctor ownership ring seen by this replica")
+                .register(meters);
+        Gauge.builder("scheduling.shard.members", this, o -> o.view.urls().size())
+                .description("Live replicas on the doctor ownership ring")
+                .register(meters);
+    }
+
+    public String getMemberId() { return memberId; }
+
+    /** Base URL of the replica that owns the doctor, or null when this replica should handle it. */
+    public String forwardTarget(long doctorId) {
+        View v = view;
+        if (v.ring() == null) return null;
+        String owner = v.ring().ownerOf(doctorId);
+        return owner == null || owner.equals(memberId) ? null : v.urls().get(owner);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void join() {
+        joined = true;
+        heartbeat();
+        log.info("Joined doctor ownership as {} at {}", memberId, baseUrl);
+    }
+
+    @Scheduled(fixedDelayString = "${hms.sharding.heartbeat-ms:3000}")
+    public synchronized void heartbeat() {
+        if (!joined) return;
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        List<ShardMember> live;
+        try {
+            members.renew(memberId, baseUrl, now, now.plus(leaseTtl));
+            live = members.findLive(now);
+            members.deleteExpired(now.minus(leaseTtl));
+        } catch (RuntimeException e) {
+            if (view != View.LOCAL) log.warn("Doctor ownership lease unavailable, handling all doctors locally: {}", e.getMessage());
+            view = View.LOCAL;
+            return;
+        }
+        if (rebuildPending) {
+            rebuildPending = false;
+            if (occupancy.getMode() != SlotOccupancyIndex.Mode.DATABASE) occupancy.rebuild();
+        }
+        Map<String, String> urls = new LinkedHashMap<>();
+        for (ShardMember m : live) urls.put(m.getMemberId(), m.getBaseUrl());
+        View current = view;
+        if (urls.equals(current.urls())) return;
+        view = new View(Map.copyOf(urls), new ConsistentHashRing(urls.keySet(), virtualNodes));
+        rebuildPending = hadRing;
+        hadRing = true;
+        rebalances.increment();
+        log.info("Doctor ownership ring now has {} members: {}", urls.size(), urls.keySet());
+    }
+
+    @PreDestroy
+    public void leave() {
+        if (!joined) return;
+        joined = false;
+        try {
+            members.delete(memberId);
+        } catch (RuntimeException e) {
+            log.warn("Could not remove ownership lease of {}, it expires in {}: {}", memberId, leaseTtl, e.getMessage());
+        }
+    }
+
+    private static InetAddress localHost() {
+        try {
+            return InetAddress.getLocalHost();
+        } catch (UnknownHostException e) {
+            return InetAddress.getLoopbackAddress();
+        }
+    }
+}
@@ -1,23 +1,75 @@
 package org.hms.doctor.service;
 
+import jakarta.persistence.EntityManager;
+import org.hms.doctor.cache.DoctorCache;
+import org.hms.doctor.dto.DoctorCursorPage;
 import org.hms.doctor.model.Doctor;
 import org.hms.doctor.repo.DoctorRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 public class DoctorService {
+    private static final Logger log = LoggerFactory.getLogger(DoctorService.class);
+    public static final int MAX_CURSOR_LIMIT = 500;
+
     private final DoctorRepository repo;
-    public DoctorService(DoctorRepository repo) { this.repo = repo; }
+    private final DoctorCache cache;
+    private final EntityManager em;
+    public DoctorService(DoctorRepository repo, DoctorCache cache, EntityManager em) { this.repo = repo; this.cache = cache; this.em = em; }
+
+    /** Fills department_key for rows written before the column existed. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillDepartmentKeys() {
+        int n = repo.backfillDepartmentKeys();
+        if (n > 0) log.info("Backfilled department_key for {} doctors", n);
+    }
 
-    public Doctor create(Doctor d) { return repo.save(d); }
-    public Optional<Doctor> get(Long id) { return repo.findById(id); }
+    public Doctor create(Doctor d) {
+        Doctor saved = repo.save(d);
+        cache.invalidate(saved.getDoctorId());
+        return saved;
+    }
+    public Optional<Doctor> get(Long id) { return cache.getDoctor(id, () -> repo.findById(id)); }
     public Page<Doctor> listByDepartment(String department, Pageable pageable) {
-        if (department == null) return repo.findAll(pageable);
-        return repo.findByDepartmentIgnoreCase(department, pageable);
+        return cache.getPage(department, pageable, () -> {
+            if (department == null) return repo.findAll(pageable);
+            return repo.findByDepartmentKey(Doctor.normalizeDepartment(department), pageable);
+        });
+    }
+
+    /** Keyset page of doctors with id greater than {@code after}. */
+    public DoctorCursorPage listAfter(String department, Long after, int limit) {
+        if (limit < 1 || limit > MAX_CURSOR_LIMIT) throw new IllegalArgumentException("limit must be between 1 and " + MAX_CURSOR_LIMIT);
+        long from = after == null ? 0L : after;
+        List<Doctor> items = department == null
+                ? repo.findByDoctorIdGreaterThanOrderByDoctorId(from, Limit.of(limit))
+                : repo.findByDepartmentKeyAndDoctorIdGreaterThanOrderByDoctorId(Doctor.normalizeDepartment(department), from, Limit.of(limit));
+        Long next = items.size() < limit ? null : items.get(items.size() - 1).getDoctorId();
+        return new DoctorCursorPage(items, next);
+    }
+
+    /** Streams every doctor in id order; entities are detached as they go so memory stays flat. */
+    @Transactional(readOnly = true)
+    public void exportAll(String department, Consumer<Doctor> sink) {
+        try (Stream<Doctor> rows = repo.streamAll(Doctor.normalizeDepartment(department))) {
+            rows.forEach(d -> {
+                sink.accept(d);
+                em.detach(d);
+            });
+        }
     }
     public Doctor update(Long id, Doctor update) {
         return repo.findById(id).map(existing -> {
@@ -28,10 +80,12 @@ public class DoctorService {
             existing.setSpecialization(update.getSpecialization());
             existing.setDailyCapacity(update.getDailyCapacity());
             existing.setActive(update.getActive());
-            return repo.save(existing);
+            Doctor saved = repo.save(existing);
+            cache.invalidate(id);
+            return saved;
         }).orElseThrow(() -> new RuntimeException("Doctor not found"));
     }
     public void deactivate(Long id) {
-        repo.findById(id).ifPresent(d -> { d.setActive(false); repo.save(d); });
+        repo.findById(id).ifPresent(d -> { d.setActive(false); repo.save(d); cache.invalidate(id); });
     }
 }
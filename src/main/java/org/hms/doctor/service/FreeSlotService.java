@@ -0,0 +1,156 @@
+package org.hms.doctor.service;
+
+import org.hms.doctor.dto.FreeSlotDay;
+import org.hms.doctor.model.Doctor;
+import org.hms.doctor.repo.DailyCapacityRepository;
+import org.hms.doctor.repo.DoctorRepository;
+import org.hms.doctor.repo.SlotHoldRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Builds the free-slot grid for many doctors over a date range from one ordered range scan of
+ * holds and one of daily capacities, merged doctor by doctor, keeping slots inside working hours. Only the current doctor's day
+ * masks are kept in memory; each finished doctor-day is handed to the sink straight away.
+ */
+@Service
+public class FreeSlotService {
+    public static final int MAX_DAYS = 31;
+    public static final int MAX_DOCTORS = 500;
+
+    private final DoctorRepository doctorRepo;
+    private final SlotHoldRepository holdRepo;
+    private final DailyCapacityRepository capacityRepo;
+    private final SchedulingService scheduling;
+    private final WorkingCalendar calendar;
+
+    public FreeSlotService(DoctorRepository doctorRepo, SlotHoldRepository holdRepo, DailyCapacityRepository capacityRepo,
+                           SchedulingService scheduling, WorkingCalendar calendar) {
+        this.doctorRepo = doctorRepo;
+        this.holdRepo = holdRepo;
+        this.capacityRepo = capacityRepo;
+        this.scheduling = scheduling;
+        this.calendar = calendar;
+    }
+
+    /** Validates the request and resolves the active doctors it covers, ordered by id. */
+    public List<Long> resolveDoctors(String department, List<Long> doctorIds, LocalDate from, LocalDate to) {
+        if (from == null || to == null) throw new IllegalArgumentException("from/to required");
+        if (to.isBefore(from)) throw new IllegalArgumentException("to must not be before from");
+        if (ChronoUnit.DAYS.between(from, to) + 1 > MAX_DAYS) throw new IllegalArgumentException("date range exceeds " + MAX_DAYS + " days");
+        return resolveActiveDoctors(department, doctorIds).stream().map(Doctor::getDoctorId).toList();
+    }
+
+    /** Active doctors of the department, or of the given ids when present, ordered by id. */
+    public List<Doctor> resolveActiveDoctors(String department, List<Long> doctorIds) {
+        List<Doctor> doctors;
+        if (doctorIds != null && !doctorIds.isEmpty()) {
+            doctors = doctorRepo.findByDoctorIdInAndActiveTrueOrderByDoctorId(doctorIds);
+        } else if (department != null && !department.isBlank()) {
+            doctors = doctorRepo.findByDepartmentKeyAndActiveTrueOrderByDoctorId(Doctor.normalizeDepartment(department));
+        } else {
+            throw new IllegalArgumentException("department or doctorIds required");
+        }
+        if (doctors.size() > MAX_DOCTORS) throw new IllegalArgumentException("more than " + MAX_DOCTORS + " doctors requested");
+        return doctors;
+    }
+
+    @Transactional(readOnly = true)
+    public void streamFreeSlots(List<Long> doctorIds, LocalDate from, LocalDate to, ZoneOffset offset, Consumer<FreeSlotDay> sink) {
+        if (doctorIds.isEmpty()) return;
+        int days = (int) ChronoUnit.DAYS.between(from, to) + 1;
+        OffsetDateTime windowStart = from.atStartOfDay().atOffset(offset);
+        OffsetDateTime windowEnd = windowStart.plusDays(days);
+        OffsetDateTime cutoff = scheduling.leadTimeCutoff();
+        Duration slot = Duration.ofMinutes(SlotGrid.SLOT_MINUTES);
+
+        try (Stream<Object[]> holdRows = holdRepo.streamActiveInRange(doctorIds, SlotGrid.slotOf(windowStart), SlotGrid.slotCeil(windowEnd));
+             Stream<Object[]> capacityRows = capacityRepo.streamInRange(doctorIds, from, to)) {
+            PeekingIterator holds = new PeekingIterator(holdRows.iterator());
+            PeekingIterator capacities = new PeekingIterator(capacityRows.iterator());
+
+            for (Long doctorId : doctorIds) {
+                long[] occupied = new long[days];
+                while (holds.hasNext() && (Long) holds.peek()[0] <= doctorId) {
+                    Object[] h = holds.next();
+                    if (!doctorId.equals(h[0])) continue;
+                    markOccupied(occupied, windowStart, (OffsetDateTime) h[1], (OffsetDateTime) h[2]);
+                }
+                int[] booked = new int[days];
+                int[] capacity = new int[days];
+                Arrays.fill(capacity, SchedulingService.DEFAULT_DAILY_CAPACITY);
+                while (capacities.hasNext() && (Long) capacities.peek()[0] <= doctorId) {
+                    Object[] c = capacities.next();
+                    if (!doctorId.equals(c[0])) continue;
+                    int d = (int) ChronoUnit.DAYS.between(from, (LocalDate) c[1]);
+                    booked[d] = c[2] == null ? 0 : (Integer) c[2];
+                    capacity[d] = c[3] == null ? SchedulingService.DEFAULT_DAILY_CAPACITY : (Integer) c[3];
+                }
+
+                for (int d = 0; d < days; d++) {
+                    FreeSlotDay day = new FreeSlotDay();
+                    day.doctorId = doctorId;
+                    day.date = from.plusDays(d);
+                    day.bookedCount = booked[d];
+                    day.capacity = capacity[d];
+                    day.freeSlots = new ArrayList<>();
+                    if (booked[d] < capacity[d]) {
+                        OffsetDateTime dayStart = windowStart.plusDays(d);
+                        for (int i = 0; i < SlotGrid.SLOTS_PER_DAY; i++) {
+                            if ((occupied[d] & (1L << i)) != 0) continue;
+                            OffsetDateTime start = dayStart.plus(slot.multipliedBy(i));
+                            if (start.isAfter(cutoff) && calendar.isWorking(doctorId, SlotGrid.slotOf(start), SlotGrid.slotCeil(start.plus(slot)))) {
+                                day.freeSlots.add(start);
+                            }
+                        }
+                    }
+                    sink.accept(day);
+                }
+            }
+        }
+    }
+
+    private static void markOccupied(long[] occupied, OffsetDateTime windowStart, OffsetDateTime start, OffsetDateTime end) {
+        long slotSeconds = SlotGrid.SLOT_MINUTES * 60L;
+        long from = Math.floorDiv(start.toEpochSecond() - windowStart.toEpochSecond(), slotSeconds);
+        long to = Math.floorDiv(end.toEpochSecond() - windowStart.toEpochSecond() + slotSeconds - 1, slotSeconds);
+        from = Math.max(from, 0);
+        to = Math.min(to, (long) occupied.length * SlotGrid.SLOTS_PER_DAY);
+        for (int d = (int) (from / SlotGrid.SLOTS_PER_DAY); d < occupied.length && (long) d * SlotGrid.SLOTS_PER_DAY < to; d++) {
+            long dayStart = (long) d * SlotGrid.SLOTS_PER_DAY;
+            occupied[d] |= SlotGrid.mask((int) Math.max(0, from - dayStart), (int) Math.min(SlotGrid.SLOTS_PER_DAY, to - dayStart));
+        }
+    }
+
+    private static final class PeekingIterator {
+        private final Iterator<Object[]> it;
+        private Object[] next;
+
+        PeekingIterator(Iterator<Object[]> it) { this.it = it; }
+
+        boolean hasNext() { return next != null || it.hasNext(); }
+
+        Object[] peek() {
+            if (next == null) next = it.next();
+            return next;
+        }
+
+        Object[] next() {
+            Object[] r = peek();
+            next = null;
+            return r;
+        }
+    }
+}
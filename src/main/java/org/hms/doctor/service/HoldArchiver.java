@@ -0,0 +1,82 @@
+package org.hms.doctor.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hms.doctor.repo.SlotHoldJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Keeps doctor_slots_hold down to live holds: RELEASED holds older than released-after and CONFIRMED
+ * holds whose slot ended more than keep-past ago move to doctor_slots_hold_history. Each batch locks,
+ * copies and deletes at most batch-size rows in its own short transaction, and one run stops after
+ * max-batches so a large backlog drains over several runs instead of one long burst.
+ */
+@Service
+public class HoldArchiver {
+    private static final Logger log = LoggerFactory.getLogger(HoldArchiver.class);
+
+    private final SlotHoldJdbcRepository holdJdbc;
+    private final TransactionTemplate tx;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatches;
+    private final Duration releasedAfter;
+    private final Duration keepPast;
+    private final Counter archived;
+
+    public HoldArchiver(SlotHoldJdbcRepository holdJdbc, TransactionTemplate tx, MeterRegistry meters,
+                        @Value("${hms.scheduling.archive.enabled:true}") boolean enabled,
+                        @Value("${hms.scheduling.archive.batch-size:500}") int batchSize,
+                        @Value("${hms.scheduling.archive.max-batches:200}") int maxBatches,
+                        @Value("${hms.scheduling.archive.released-after:PT1H}") Duration releasedAfter,
+                        @Value("${hms.scheduling.archive.keep-past:P1D}") Duration keepPast) {
+        this.holdJdbc = holdJdbc;
+        this.tx = tx;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.maxBatches = maxBatches;
+        this.releasedAfter = releasedAfter;
+        this.keepPast = keepPast;
+        this.archived = Counter.builder("scheduling.holds.archived")
+                .description("Holds moved to doctor_slots_hold_history")
+                .register(meters);
+    }
+
+    @Scheduled(fixedDelayString = "${hms.scheduling.archive.interval-ms:60000}", initialDelayString = "${hms.scheduling.archive.interval-ms:60000}")
+    public void run() {
+        if (!enabled) return;
+        int moved = archive();
+        if (moved > 0) log.info("Archived {} finished holds", moved);
+    }
+
+    /** Moves finished holds in batches until none are left or max-batches is reached; returns the count. */
+    public int archive() {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        OffsetDateTime releasedBefore = now.minus(releasedAfter);
+        long endedBefore = SlotGrid.slotOf(now.minus(keepPast));
+        int total = 0;
+        for (int batch = 0; batch < maxBatches; batch++) {
+            Integer moved = tx.execute(status -> {
+                List<Long> ids = new ArrayList<>(holdJdbc.lockReleasedCreatedBefore(releasedBefore, batchSize));
+                if (ids.size() < batchSize) ids.addAll(holdJdbc.lockConfirmedEndedBefore(endedBefore, batchSize - ids.size()));
+                return holdJdbc.moveToHistory(ids, now);
+            });
+            int n = moved == null ? 0 : moved;
+            total += n;
+            archived.increment(n);
+            if (n < batchSize) break;
+        }
+        return total;
+    }
+}
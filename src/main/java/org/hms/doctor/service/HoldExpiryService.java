@@ -0,0 +1,152 @@
+package org.hms.doctor.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.hms.doctor.model.SlotEvent;
+import org.hms.doctor.model.SlotHold;
+import org.hms.doctor.repo.SlotEventJdbcRepository;
+import org.hms.doctor.repo.SlotHoldRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Limit;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Releases HELD holds once their expiresAt has passed. Deadlines live in a {@link HoldTimingWheel};
+ * every tick the due holds are re-checked and released in batched UPDATEs, so the table is only
+ * touched for holds that actually expire.
+ * <p>
+ * A hold enters the wheel of the replica that reserved it. Every sweep-interval each replica also
+ * looks for HELD holds more than sweep-grace past their deadline and puts them on its own wheel, so the
+ * holds of a replica that went away are still released. The grace leaves holds to their own replica
+ * while it runs; the release re-checks under lock, so two replicas expiring one hold is harmless.
+ */
+@Service
+public class HoldExpiryService {
+    private static final Logger log = LoggerFactory.getLogger(HoldExpiryService.class);
+    private static final int MAX_SWEEP = 10_000;
+
+    private final SlotHoldRepository holdRepo;
+    private final TransactionTemplate tx;
+    private final SchedulingMetrics metrics;
+    private final SlotEventJdbcRepository outbox;
+    private final HoldTimingWheel wheel;
+    private final int batchSize;
+    private final boolean enabled;
+    private final Duration sweepGrace;
+    private final Timer lag;
+    private final DistributionSummary expiredPerTick;
+
+    public HoldExpiryService(SlotHoldRepository holdRepo, TransactionTemplate tx, MeterRegistry meters,
+                             SchedulingMetrics metrics, SlotEventJdbcRepository outbox,
+                             @Value("${hms.scheduling.expiry.enabled:true}") boolean enabled,
+                             @Value("${hms.scheduling.expiry.tick-ms:1000}") long tickMs,
+                             @Value("${hms.scheduling.expiry.wheel-size:64}") int wheelSize,
+                             @Value("${hms.scheduling.expiry.batch-size:500}") int batchSize,
+                             @Value("${hms.scheduling.expiry.sweep-grace:PT30S}") Duration sweepGrace) {
+        this.holdRepo = holdRepo;
+        this.tx = tx;
+        this.metrics = metrics;
+        this.outbox = outbox;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.sweepGrace = sweepGrace;
+        this.wheel = new HoldTimingWheel(tickMs, wheelSize, System.currentTimeMillis());
+        this.lag = Timer.builder("scheduling.holds.expiry.lag")
+                .description("Delay between a hold's expiresAt and its release")
+                .register(meters);
+        this.expiredPerTick = DistributionSummary.builder("scheduling.holds.expired.per.tick")
+                .description("Holds released by one expiry tick")
+                .register(meters);
+        Gauge.builder("scheduling.holds.expiry.pending", wheel, HoldTimingWheel::size)
+                .description("HELD holds waiting in the expiry wheel")
+                .register(meters);
+    }
+
+    /** Loads the deadlines of every HELD hold so restarts do not leave stale holds behind. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recover() {
+        if (!enabled) return;
+        long[] count = {0};
+        tx.executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = holdRepo.streamHeldDeadlines()) {
+                rows.forEach(r -> {
+                    schedule((Long) r[0], (Long) r[1], (OffsetDateTime) r[2]);
+                    count[0]++;
+                });
+            }
+        });
+        log.info("Hold expiry wheel recovered {} HELD holds", count[0]);
+    }
+
+    public void schedule(Long holdId, Long doctorId, OffsetDateTime expiresAt) {
+        if (!enabled || expiresAt == null) return;
+        wheel.schedule(holdId, doctorId, expiresAt.toInstant().toEpochMilli());
+    }
+
+    public void cancel(Long holdId) {
+        wheel.cancel(holdId);
+    }
+
+    /** Puts overdue HELD holds on this replica's wheel, whichever replica reserved them. */
+    @Scheduled(fixedDelayString = "${hms.scheduling.expiry.sweep-interval:PT1M}", initialDelayString = "${hms.scheduling.expiry.sweep-interval:PT1M}")
+    public void sweep() {
+        if (!enabled) return;
+        try {
+            List<Object[]> overdue = holdRepo.findHeldExpiredBefore(OffsetDateTime.now(ZoneOffset.UTC).minus(sweepGrace), Limit.of(MAX_SWEEP));
+            overdue.forEach(r -> schedule((Long) r[0], (Long) r[1], (OffsetDateTime) r[2]));
+            if (!overdue.isEmpty()) log.info("Expiry sweep found {} overdue HELD holds", overdue.size());
+        } catch (RuntimeException e) {
+            log.warn("Sweeping overdue holds failed: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${hms.scheduling.expiry.tick-ms:1000}")
+    public void tick() {
+        if (!enabled) return;
+        List<HoldTimingWheel.Entry> due = wheel.advance(System.currentTimeMillis());
+        if (due.isEmpty()) return;
+        int expired = 0;
+        for (int i = 0; i < due.size(); i += batchSize) {
+            List<Long> ids = due.subList(i, Math.min(due.size(), i + batchSize)).stream().map(HoldTimingWheel.Entry::holdId).toList();
+            try {
+                expired += expireBatch(ids);
+            } catch (RuntimeException e) {
+                // put the batch back so the next tick retries it
+                log.warn("Failed to expire {} holds, retrying next tick: {}", ids.size(), e.getMessage());
+                due.subList(i, Math.min(due.size(), i + batchSize))
+                        .forEach(en -> wheel.schedule(en.holdId(), en.doctorId(), en.deadlineMs()));
+            }
+        }
+        expiredPerTick.record(expired);
+    }
+
+    private int expireBatch(List<Long> ids) {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        List<SlotHold> holds = tx.execute(status -> {
+            // re-check under lock: the hold may have been confirmed or released since it was scheduled
+            List<SlotHold> locked = metrics.lockWait("expiry_batch", () -> holdRepo.findExpiredHeldForUpdate(ids, now));
+            if (!locked.isEmpty()) {
+                holdRepo.markReleased(locked.stream().map(SlotHold::getHoldId).toList());
+                outbox.appendAll(locked.stream().map(h -> SlotEvent.of(h, "EXPIRED", 0)).toList());
+            }
+            return locked;
+        });
+        // the EXPIRED events vacate the slots, through SlotEventRelay
+        for (SlotHold h : holds) lag.record(Duration.between(h.getExpiresAt(), now));
+        return holds.size();
+    }
+}
@@ -0,0 +1,115 @@
+package org.hms.doctor.service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Hierarchical timing wheel of hold deadlines. Level 0 has {@code wheelSize} buckets of
+ * {@code tickMs}; every further level's tick is the span of the level below, and levels are
+ * added on demand, so insertion and expiry are O(1) regardless of how far out a deadline is.
+ * Entries in a higher-level bucket are redistributed downwards when time reaches the bucket.
+ */
+public class HoldTimingWheel {
+
+    public record Entry(long holdId, long doctorId, long deadlineMs) {}
+
+    private final long tickMs;
+    private final int wheelSize;
+    private final List<Level> levels = new ArrayList<>();
+    private final Map<Long, Entry> live = new ConcurrentHashMap<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private long currentTime;
+
+    public HoldTimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize < 2) throw new IllegalArgumentException("tickMs > 0 and wheelSize >= 2 required");
+        this.tickMs = tickMs;
+        this.wheelSize = wheelSize;
+        this.currentTime = startMs - Math.floorMod(startMs, tickMs);
+        levels.add(new Level(tickMs));
+    }
+
+    /** Schedules (or reschedules) a hold; deadlines already in the past fire on the next advance. */
+    public void schedule(long holdId, long doctorId, long deadlineMs) {
+        Entry e = new Entry(holdId, doctorId, deadlineMs);
+        lock.lock();
+        try {
+            live.put(holdId, e);
+            place(e);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Forgets a hold that was confirmed or released before its deadline. */
+    public void cancel(long holdId) {
+        live.remove(holdId);
+    }
+
+    public int size() { return live.size(); }
+
+    /** Moves the wheel forward to {@code nowMs} and returns every live entry whose deadline has passed. */
+    public List<Entry> advance(long nowMs) {
+        List<Entry> due = new ArrayList<>();
+        lock.lock();
+        try {
+            while (currentTime + tickMs <= nowMs) {
+                drain(levels.get(0), currentTime, due);
+                currentTime += tickMs;
+                for (int l = levels.size() - 1; l >= 1; l--) {
+                    Level level = levels.get(l);
+                    if (currentTime % level.tickMs == 0) {
+                        List<Entry> moved = level.take(currentTime);
+                        for (Entry e : moved) place(e);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (Entry e : due) live.remove(e.holdId(), e);
+        return due;
+    }
+
+    private void drain(Level level0, long at, List<Entry> due) {
+        for (Entry e : level0.take(at)) {
+            if (live.get(e.holdId()) == e) due.add(e);
+        }
+    }
+
+    private void place(Entry e) {
+        long deadline = Math.max(e.deadlineMs(), currentTime);
+        for (int l = 0; ; l++) {
+            if (l == levels.size()) levels.add(new Level(levels.get(l - 1).tickMs * wheelSize));
+            Level level = levels.get(l);
+            long base = currentTime - Math.floorMod(currentTime, level.tickMs);
+            if (deadline < base + level.tickMs * wheelSize) {
+                level.add(deadline, e);
+                return;
+            }
+        }
+    }
+
+    private final class Level {
+        final long tickMs;
+        @SuppressWarnings("unchecked")
+        final List<Entry>[] buckets = new List[wheelSize];
+
+        Level(long tickMs) { this.tickMs = tickMs; }
+
+        void add(long deadline, Entry e) {
+            int idx = (int) Math.floorMod(Math.floorDiv(deadline, tickMs), (long) wheelSize);
+            if (buckets[idx] == null) buckets[idx] = new ArrayList<>();
+            buckets[idx].add(e);
+        }
+
+        List<Entry> take(long at) {
+            int idx = (int) Math.floorMod(Math.floorDiv(at, tickMs), (long) wheelSize);
+            List<Entry> b = buckets[idx];
+            buckets[idx] = null;
+            return b == null ? List.of() : b;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package org.hms.doctor.service;
+
+/** Thrown when an Idempotency-Key is sent again with a different request than the one it first answered. */
+public class IdempotencyKeyReusedException extends RuntimeException {
+    public IdempotencyKeyReusedException(String message) {
+        super(message);
+    }
+}
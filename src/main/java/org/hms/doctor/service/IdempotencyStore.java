@@ -0,0 +1,178 @@
+package org.hms.doctor.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.hms.doctor.model.IdempotencyRecord;
+import org.hms.doctor.repo.IdempotencyKeyJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the response to each Idempotency-Key so a retried reserve/confirm/release gets the original
+ * answer without re-entering the locking transaction. Keys live in a bounded in-memory cache with a
+ * TTL; with {@code hms.idempotency.durable} they are also written to idempotency_keys, which survives
+ * restarts and is shared by replicas. Only final answers are kept (status below 500, except 429);
+ * anything else releases the key so the next retry runs again.
+ * <p>
+ * Lookups are counted as {@code scheduling.idempotency{operation,result}} with result executed,
+ * replayed, in_progress or mismatch.
+ */
+@Component
+public class IdempotencyStore {
+    private static final Logger log = LoggerFactory.getLogger(IdempotencyStore.class);
+
+    public static final int MAX_KEY_LENGTH = 200;
+
+    /** A stored response; status 0 marks a key whose first request is still running. */
+    public record Replay(String fingerprint, int status, byte[] body) {
+        boolean pending() { return status == 0; }
+    }
+
+    private final IdempotencyKeyJdbcRepository keys;
+    private final MeterRegistry meters;
+    private final boolean durable;
+    private final Duration ttl;
+    private final Duration pendingLease;
+    private final Cache<String, Replay> local;
+    private final Map<String, Map<String, Counter>> counters = new ConcurrentHashMap<>();
+
+    public IdempotencyStore(IdempotencyKeyJdbcRepository keys, MeterRegistry meters,
+                            @Value("${hms.idempotency.durable:false}") boolean durable,
+                            @Value("${hms.idempotency.ttl:PT24H}") Duration ttl,
+                            @Value("${hms.idempotency.max-size:20000}") long maxSize,
+                            @Value("${hms.idempotency.pending-lease:PT30S}") Duration pendingLease) {
+        this.keys = keys;
+        this.meters = meters;
+        this.durable = durable;
+        this.ttl = ttl;
+        this.pendingLease = pendingLease;
+        this.local = Caffeine.newBuilder().maximumSize(maxSize).expireAfterWrite(ttl).build();
+        Gauge.builder("scheduling.idempotency.keys", local, Cache::estimatedSize)
+                .description("Idempotency keys held in memory")
+                .register(meters);
+    }
+
+    /**
+     * Claims the key for this request. Returns null when the caller now owns the key and must call
+     * {@link #complete} or {@link #abandon}; otherwise the response recorded for the key.
+     *
+     * @throws IllegalStateException          the first request with this key is still running
+     * @throws IdempotencyKeyReusedException  the key was used for a different request
+     */
+    public Replay begin(String operation, String scope, String request) {
+        String fingerprint = fingerprint(request);
+        Replay pending = new Replay(fingerprint, 0, null);
+        Replay existing = local.asMap().putIfAbsent(scope, pending);
+        if (existing != null) return resolve(operation, existing, fingerprint);
+        if (!durable) return executed(operation);
+        try {
+            OffsetDateTime now = OffsetDateTime.now();
+            if (keys.claim(scope, fingerprint, now, now.plus(ttl))
+                    || keys.takeOver(scope, fingerprint, now, now.minus(pendingLease), now.plus(ttl))) {
+                return executed(operation);
+            }
+            IdempotencyRecord r = keys.find(scope).orElse(null);
+            if (r == null && keys.claim(scope, fingerprint, now, now.plus(ttl))) return executed(operation);
+            local.asMap().remove(scope, pending);
+            if (r == null) return resolve(operation, pending, fingerprint);
+            Replay stored = new Replay(r.getFingerprint(), r.getResponseStatus() == null ? 0 : r.getResponseStatus(), r.getResponseBody());
+            if (!stored.pending()) local.put(scope, stored);
+            return resolve(operation, stored, fingerprint);
+        } catch (RuntimeException e) {
+            local.asMap().remove(scope, pending);
+            throw e;
+        }
+    }
+
+    /** Records the response of a request that owns its key. */
+    public void complete(String scope, int status, byte[] body) {
+        if (status >= 500 || status == 429) {
+            abandon(scope);
+            return;
+        }
+        Replay pending = local.getIfPresent(scope);
+        if (pending != null && pending.pending()) local.put(scope, new Replay(pending.fingerprint(), status, body));
+        if (durable) {
+            try {
+                keys.complete(scope, status, body);
+            } catch (RuntimeException e) {
+                log.warn("Recording idempotent response failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    /** Releases a key whose request failed without a final answer. */
+    public void abandon(String scope) {
+        Replay current = local.getIfPresent(scope);
+        if (current != null && current.pending()) local.asMap().remove(scope, current);
+        if (durable) {
+            try {
+                keys.deletePending(scope);
+            } catch (RuntimeException e) {
+                log.warn("Releasing idempotency key failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "PT10M")
+    public void purge() {
+        if (!durable) return;
+        try {
+            keys.deleteExpired(OffsetDateTime.now());
+        } catch (RuntimeException e) {
+            log.warn("Purging idempotency keys failed: {}", e.getMessage());
+        }
+    }
+
+    private Replay resolve(String operation, Replay existing, String fingerprint) {
+        if (!existing.fingerprint().equals(fingerprint)) {
+            count(operation, "mismatch");
+            throw new IdempotencyKeyReusedException("Idempotency-Key was already used for a different request");
+        }
+        if (existing.pending()) {
+            count(operation, "in_progress");
+            throw new IllegalStateException("a request with this Idempotency-Key is still in progress");
+        }
+        count(operation, "replayed");
+        return existing;
+    }
+
+    private Replay executed(String operation) {
+        count(operation, "executed");
+        return null;
+    }
+
+    private void count(String operation, String result) {
+        counters.computeIfAbsent(operation, o -> new ConcurrentHashMap<>())
+                .computeIfAbsent(result, r -> Counter.builder("scheduling.idempotency")
+                        .description("Requests carrying an Idempotency-Key, by what the store did with them")
+                        .tags("operation", operation, "result", result)
+                        .register(meters))
+                .increment();
+    }
+
+    // SHA-256 of method, route and body; fits the 64-character column
+    private static String fingerprint(String request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(request.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.hms.doctor.service;
+
+import org.hms.doctor.dto.NextAvailableSlot;
+import org.hms.doctor.model.Doctor;
+import org.hms.doctor.repo.DailyCapacityRepository;
+import org.hms.doctor.repo.SlotHoldRepository;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.stream.Stream;
+
+/**
+ * Earliest bookable slots across a set of doctors ("next available cardiologist"). Each doctor's free
+ * slots form an ascending sequence (within working hours, not occupied by a HELD or CONFIRMED hold, after
+ * the lead time, on a UTC day with capacity left); a priority queue keyed by each sequence's next slot merges them, so the
+ * first k slots popped are the answer. Holds and capacities are loaded a window of days at a time, starting
+ * with one day and doubling up to a week, and the search stops as soon as k slots are found, so a busy
+ * department only reads its next few days instead of every doctor's calendar over the horizon.
+ */
+@Service
+public class NextAvailableService {
+    public static final int MAX_RESULTS = 50;
+    public static final int MAX_HORIZON_DAYS = 62;
+    private static final int MAX_WINDOW_DAYS = 7;
+
+    private final FreeSlotService freeSlots;
+    private final SlotHoldRepository holdRepo;
+    private final DailyCapacityRepository capacityRepo;
+    private final SchedulingService scheduling;
+    private final WorkingCalendar calendar;
+
+    public NextAvailableService(FreeSlotService freeSlots, SlotHoldRepository holdRepo, DailyCapacityRepository capacityRepo,
+                                SchedulingService scheduling, WorkingCalendar calendar) {
+        this.freeSlots = freeSlots;
+        this.holdRepo = holdRepo;
+        this.capacityRepo = capacityRepo;
+        this.scheduling = scheduling;
+        this.calendar = calendar;
+    }
+
+    /**
+     * Up to k earliest free slots starting at or after {@code after} (default now) within horizonDays UTC
+     * days, at most perDoctor of them per doctor, ordered by start and then doctor id.
+     */
+    @Transactional(readOnly = true)
+    public List<NextAvailableSlot> nextAvailable(String department, List<Long> doctorIds, int k, Integer perDoctor,
+                                                 OffsetDateTime after, int horizonDays) {
+        if (k < 1 || k > MAX_RESULTS) throw new IllegalArgumentException("k must be 1-" + MAX_RESULTS);
+        if (perDoctor != null && perDoctor < 1) throw new IllegalArgumentException("perDoctor must be >= 1");
+        if (horizonDays < 1 || horizonDays > MAX_HORIZON_DAYS) throw new IllegalArgumentException("days must be 1-" + MAX_HORIZON_DAYS);
+        List<Doctor> doctors = freeSlots.resolveActiveDoctors(department, doctorIds);
+        int limit = perDoctor == null ? k : perDoctor;
+
+        // slots must start strictly after the lead-time cutoff
+        long first = SlotGrid.slotOf(scheduling.leadTimeCutoff()) + 1;
+        if (after != null) first = Math.max(first, SlotGrid.slotCeil(after));
+        long end = (SlotGrid.epochDay(first) + horizonDays) * SlotGrid.SLOTS_PER_DAY;
+
+        List<NextAvailableSlot> found = new ArrayList<>(k);
+        if (doctors.isEmpty()) return found;
+        int[] taken = new int[doctors.size()];
+        int windowDays = 1;
+        for (long from = first; from < end && found.size() < k; windowDays = Math.min(windowDays * 2, MAX_WINDOW_DAYS)) {
+            long to = Math.min(end, (SlotGrid.epochDay(from) + windowDays) * SlotGrid.SLOTS_PER_DAY);
+            Window w = load(doctors, from, to);
+            PriorityQueue<long[]> queue = new PriorityQueue<>(Comparator.<long[]>comparingLong(c -> c[0]).thenComparingLong(c -> c[1]));
+            for (int i = 0; i < doctors.size(); i++) {
+                long slot = taken[i] < limit ? w.nextFree(i, from) : -1;
+                if (slot >= 0) queue.add(new long[]{slot, i});
+            }
+            while (!queue.isEmpty() && found.size() < k) {
+                long[] head = queue.poll();
+                int i = (int) head[1];
+                found.add(option(doctors.get(i), head[0], w.remaining(i, head[0])));
+                long slot = ++taken[i] < limit ? w.nextFree(i, head[0] + 1) : -1;
+                if (slot >= 0) queue.add(new long[]{slot, i});
+            }
+            from = to;
+        }
+        return found;
+    }
+
+    // occupancy and remaining capacity of every doctor for the slots [from, to), to on a UTC day boundary
+    private Window load(List<Doctor> doctors, long from, long to) {
+        List<Long> ids = doctors.stream().map(Doctor::getDoctorId).toList();
+        Map<Long, Integer> index = new HashMap<>();
+        for (int i = 0; i < ids.size(); i++) index.put(ids.get(i), i);
+        Window w = new Window(from, to, doctors.size());
+        for (int i = 0; i < ids.size(); i++) {
+            for (int d = 0; d < w.working[i].length; d++) w.working[i][d] = calendar.workingMask(ids.get(i), w.firstDay + d);
+        }
+        try (Stream<Object[]> rows = holdRepo.streamActiveInRange(ids, from, to)) {
+            rows.forEach(r -> w.occupy(index.get((Long) r[0]), SlotGrid.slotOf((OffsetDateTime) r[1]), SlotGrid.slotCeil((OffsetDateTime) r[2])));
+        }
+        try (Stream<Object[]> rows = capacityRepo.streamInRange(ids, SlotGrid.dayOf(from), SlotGrid.dayOf(to - 1))) {
+            rows.forEach(r -> {
+                int booked = r[2] == null ? 0 : (Integer) r[2];
+                int capacity = r[3] == null ? SchedulingService.DEFAULT_DAILY_CAPACITY : (Integer) r[3];
+                w.remaining[index.get((Long) r[0])][(int) (((LocalDate) r[1]).toEpochDay() - w.firstDay)] = capacity - booked;
+            });
+        }
+        return w;
+    }
+
+    private static NextAvailableSlot option(Doctor doctor, long slot, int remaining) {
+        NextAvailableSlot o = new NextAvailableSlot();
+        o.doctorId = doctor.getDoctorId();
+        o.name = doctor.getName();
+        o.slotStart = SlotGrid.startOf(slot);
+        o.slotEnd = SlotGrid.startOf(slot + 1);
+        o.remainingCapacity = remaining;
+        return o;
+    }
+
+    /** Per doctor and UTC day of the window: masks of working and occupied slots, and the capacity left. */
+    private static final class Window {
+        final long firstDay;
+        final long to;
+        final long[][] working;
+        final long[][] occupied;
+        final int[][] remaining;
+
+        Window(long from, long to, int doctors) {
+            this.firstDay = SlotGrid.epochDay(from);
+            this.to = to;
+            int days = (int) (SlotGrid.epochDay(to - 1) - firstDay + 1);
+            this.working = new long[doctors][days];
+            this.occupied = new long[doctors][days];
+            this.remaining = new int[doctors][days];
+            for (int[] r : remaining) Arrays.fill(r, SchedulingService.DEFAULT_DAILY_CAPACITY);
+        }
+
+        void occupy(int doctor, long fromSlot, long toSlot) {
+            long[] days = occupied[doctor];
+            for (long s = Math.max(fromSlot, firstDay * SlotGrid.SLOTS_PER_DAY); s < Math.min(toSlot, to); ) {
+                int d = (int) (SlotGrid.epochDay(s) - firstDay);
+                long dayEnd = (firstDay + d + 1) * SlotGrid.SLOTS_PER_DAY;
+                long stop = Math.min(toSlot, dayEnd);
+                days[d] |= SlotGrid.mask(SlotGrid.slotInDay(s), stop == dayEnd ? SlotGrid.SLOTS_PER_DAY : SlotGrid.slotInDay(stop));
+                s = stop;
+            }
+        }
+
+        int remaining(int doctor, long slot) {
+            return remaining[doctor][(int) (SlotGrid.epochDay(slot) - firstDay)];
+        }
+
+        /** First free slot of the doctor at or after from and before the window's end, or -1. */
+        long nextFree(int doctor, long from) {
+            for (long s = from; s < to; ) {
+                int d = (int) (SlotGrid.epochDay(s) - firstDay);
+                long dayStart = (firstDay + d) * SlotGrid.SLOTS_PER_DAY;
+                if (remaining[doctor][d] > 0) {
+                    long free = working[doctor][d] & ~occupied[doctor][d] & SlotGrid.mask(SlotGrid.slotInDay(s), SlotGrid.SLOTS_PER_DAY);
+                    if (free != 0) return dayStart + Long.numberOfTrailingZeros(free);
+                }
+                s = dayStart + SlotGrid.SLOTS_PER_DAY;
+            }
+            return -1;
+        }
+    }
+}
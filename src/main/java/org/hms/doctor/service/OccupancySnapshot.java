@@ -0,0 +1,250 @@
+package org.hms.doctor.service;
+
+import jakarta.annotation.PreDestroy;
+import org.hms.doctor.config.ReadWriteRoutingDataSource;
+import org.hms.doctor.model.HoldStatus;
+import org.hms.doctor.model.SlotEvent;
+import org.hms.doctor.model.SlotHold;
+import org.hms.doctor.repo.SlotEventJdbcRepository;
+import org.hms.doctor.repo.SlotHoldRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * Warm start for the slot occupancy index. Every interval-ms, and at shutdown, the index is written
+ * to a memory-mapped file together with the slot_events high-water mark it covers. On boot the file
+ * is mapped and loaded, and only the holds named by outbox events after that mark (plus replay-overlap,
+ * for transactions that were still open at the snapshot) are read back from doctor_slots_hold, instead
+ * of streaming every active hold. A missing, corrupt or older than max-age snapshot (outbox rows are
+ * only kept for hms.events.retention) falls back to the full rebuild.
+ * <p>
+ * Layout, big-endian: magic, version, high-water mark, capture time (epoch ms), CRC32 of the body,
+ * doctor count; then per doctor its id, day count and (epoch day, slot bits) pairs.
+ */
+@Component
+public class OccupancySnapshot {
+    private static final Logger log = LoggerFactory.getLogger(OccupancySnapshot.class);
+    private static final int MAGIC = 0x484D534F; // "HMSO"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8 + 8 + 4;
+    private static final int REPLAY_PAGE = 5000;
+    private static final int LOAD_CHUNK = 1000;
+
+    private final SlotOccupancyIndex index;
+    private final SlotEventJdbcRepository events;
+    private final SlotHoldRepository holdRepo;
+    private final boolean enabled;
+    private final Path path;
+    private final Duration maxAge;
+    private final Duration replayOverlap;
+    private volatile boolean started;
+    private long writtenMark = -1;
+
+    private record Snapshot(long highWaterMark, Instant capturedAt, Map<Long, Map<Long, Long>> days) {}
+
+    public OccupancySnapshot(SlotOccupancyIndex index, SlotEventJdbcRepository events, SlotHoldRepository holdRepo,
+                             @Value("${hms.scheduling.snapshot.enabled:false}") boolean enabled,
+                             @Value("${hms.scheduling.snapshot.path:${java.io.tmpdir}/hms-occupancy-${server.port:8082}.snap}") Path path,
+                             @Value("${hms.scheduling.snapshot.max-age:PT12H}") Duration maxAge,
+                             @Value("${hms.scheduling.snapshot.replay-overlap:PT1M}") Duration replayOverlap) {
+        this.index = index;
+        this.events = events;
+        this.holdRepo = holdRepo;
+        this.enabled = enabled && index.getMode() != SlotOccupancyIndex.Mode.DATABASE;
+        this.path = path;
+        this.maxAge = maxAge;
+        this.replayOverlap = replayOverlap;
+    }
+
+    /** True once the index has been loaded at start-up, from the snapshot or the table. */
+    public boolean isStarted() { return started || index.getMode() == SlotOccupancyIndex.Mode.DATABASE; }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmStart() {
+        if (index.getMode() == SlotOccupancyIndex.Mode.DATABASE) return;
+        if (!enabled || !restore()) index.rebuild();
+        started = true;
+    }
+
+    @Scheduled(fixedDelayString = "${hms.scheduling.snapshot.interval-ms:60000}", initialDelayString = "${hms.scheduling.snapshot.interval-ms:60000}")
+    public void run() {
+        if (enabled && started) write();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (enabled && started) write();
+    }
+
+    /** Writes the index to a temporary file and renames it over the snapshot; skipped when no event was added. */
+    public synchronized void write() {
+        try {
+            // read before copying: anything committed after this mark is replayed on the next boot
+            long mark = events.findMaxId();
+            if (mark == writtenMark && Files.exists(path)) return;
+            Instant capturedAt = Instant.now();
+            long t0 = System.nanoTime();
+            Map<Long, Map<Long, Long>> days = new TreeMap<>();
+            index.forEachDay((doctorId, day, bits) -> days.computeIfAbsent(doctorId, k -> new TreeMap<>()).put(day, bits));
+            long size = HEADER_BYTES;
+            for (Map<Long, Long> d : days.values()) size += 8 + 4 + 12L * d.size();
+
+            Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+            if (path.getParent() != null) Files.createDirectories(path.getParent());
+            try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buf.position(HEADER_BYTES);
+                days.forEach((doctorId, d) -> {
+                    buf.putLong(doctorId).putInt(d.size());
+                    d.forEach((day, bits) -> buf.putInt((int) (long) day).putLong(bits));
+                });
+                CRC32 crc = new CRC32();
+                crc.update(buf.slice(HEADER_BYTES, (int) (size - HEADER_BYTES)));
+                buf.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, mark).putLong(16, capturedAt.toEpochMilli())
+                        .putLong(24, crc.getValue()).putInt(32, days.size());
+                buf.force();
+            }
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            writtenMark = mark;
+            log.debug("Occupancy snapshot of {} doctors ({} bytes) at event {} written in {} ms",
+                    days.size(), size, mark, (System.nanoTime() - t0) / 1_000_000);
+        } catch (IOException | RuntimeException e) {
+            log.warn("Could not write occupancy snapshot {}: {}", path, e.toString());
+        }
+    }
+
+    /** Loads the snapshot and replays what changed since; false when the full rebuild is needed instead. */
+    boolean restore() {
+        long startedAt = System.nanoTime();
+        Snapshot snap;
+        try {
+            snap = read();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Ignoring unreadable occupancy snapshot {}: {}", path, e.toString());
+            return false;
+        }
+        if (snap == null) return false;
+        if (snap.capturedAt().isBefore(Instant.now().minus(maxAge))) {
+            log.info("Occupancy snapshot from {} is older than {}, rebuilding", snap.capturedAt(), maxAge);
+            return false;
+        }
+        if (snap.highWaterMark() > events.findMaxId()) {
+            log.info("Occupancy snapshot is ahead of slot_events (another database?), rebuilding");
+            return false;
+        }
+        // loaded off to the side: changes the relay applies meanwhile are replayed onto it before the swap
+        int[] replayed = {0};
+        try {
+            index.load(days -> {
+                snap.days().forEach((doctorId, d) -> d.forEach((day, bits) -> days.put(doctorId, day, bits)));
+                replayed[0] = replay(snap, days);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Replaying slot events onto the occupancy snapshot failed, rebuilding: {}", e.toString());
+            return false;
+        }
+        writtenMark = -1;
+        log.info("Slot occupancy index restored from snapshot of {} doctors at event {}, {} changed holds replayed in {} ms",
+                snap.days().size(), snap.highWaterMark(), replayed[0], (System.nanoTime() - startedAt) / 1_000_000);
+        return true;
+    }
+
+    private Snapshot read() throws IOException {
+        if (!Files.exists(path)) return null;
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < HEADER_BYTES || size > Integer.MAX_VALUE) throw new IOException("bad size " + size);
+            ByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION) throw new IOException("not a version " + VERSION + " snapshot");
+            CRC32 crc = new CRC32();
+            crc.update(buf.slice(HEADER_BYTES, (int) size - HEADER_BYTES));
+            if (crc.getValue() != buf.getLong(24)) throw new IOException("checksum mismatch");
+
+            long today = SlotGrid.epochDay(SlotGrid.slotOf(OffsetDateTime.now(ZoneOffset.UTC)));
+            int doctors = buf.getInt(32);
+            Map<Long, Map<Long, Long>> days = new HashMap<>(doctors * 2);
+            buf.position(HEADER_BYTES);
+            for (int i = 0; i < doctors; i++) {
+                long doctorId = buf.getLong();
+                int count = buf.getInt();
+                Map<Long, Long> d = new HashMap<>(count * 2);
+                for (int j = 0; j < count; j++) {
+                    long day = buf.getInt();
+                    long bits = buf.getLong();
+                    if (day >= today) d.put(day, bits);
+                }
+                if (!d.isEmpty()) days.put(doctorId, d);
+            }
+            return new Snapshot(buf.getLong(8), Instant.ofEpochMilli(buf.getLong(16)), days);
+        }
+    }
+
+    /**
+     * Re-reads every hold named by an event after the snapshot and applies its current state: holds
+     * that are no longer active are vacated first, then active ones are occupied, so a slot released
+     * and taken again after the snapshot ends up taken.
+     */
+    private int replay(Snapshot snap, SlotOccupancyIndex.Days days) {
+        long fromId = snap.highWaterMark();
+        // ids are handed out before commit: an event below the mark may have committed after the capture
+        long overlapId = events.findMinIdCreatedSince(OffsetDateTime.ofInstant(snap.capturedAt().minus(replayOverlap), ZoneOffset.UTC));
+        if (overlapId > 0) fromId = Math.min(fromId, overlapId - 1);
+
+        Map<Long, SlotEvent> latest = new LinkedHashMap<>();
+        for (List<SlotEvent> page = events.findAfter(fromId, REPLAY_PAGE); !page.isEmpty();
+             page = page.size() < REPLAY_PAGE ? List.of() : events.findAfter(page.get(page.size() - 1).getId(), REPLAY_PAGE)) {
+            page.forEach(e -> latest.put(e.getHoldId(), e));
+        }
+        if (latest.isEmpty()) return 0;
+
+        Map<Long, SlotHold> holds = new HashMap<>(latest.size() * 2);
+        List<Long> ids = new ArrayList<>(latest.keySet());
+        for (int i = 0; i < ids.size(); i += LOAD_CHUNK) {
+            List<Long> chunk = ids.subList(i, Math.min(ids.size(), i + LOAD_CHUNK));
+            // the primary: the replica may not have the most recent changes yet
+            ReadWriteRoutingDataSource.onPrimary(() -> holdRepo.findAllById(chunk)).forEach(h -> holds.put(h.getHoldId(), h));
+        }
+        long now = SlotGrid.slotOf(OffsetDateTime.now(ZoneOffset.UTC));
+        List<SlotHold> active = new ArrayList<>();
+        latest.forEach((holdId, e) -> {
+            SlotHold h = holds.get(holdId);
+            // archived rows are gone from the table; the event still has their slots
+            if (h != null && isActive(h, now)) active.add(h);
+            else days.vacate(e.getDoctorId(), e.getSlotStart(), e.getSlotEnd());
+        });
+        active.forEach(h -> days.occupy(h.getDoctorId(), h.getSlotStart(), h.getSlotEnd()));
+        return latest.size();
+    }
+
+    private static boolean isActive(SlotHold h, long nowSlot) {
+        Short code = h.getStatusCode();
+        boolean live = code != null && (code == HoldStatus.HELD.code || code == HoldStatus.CONFIRMED.code);
+        return live && h.getSlotTo() != null && h.getSlotTo() > nowSlot;
+    }
+}
@@ -0,0 +1,107 @@
+package org.hms.doctor.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MultiGauge;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.hms.doctor.model.HoldStatus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Scheduling meters. Operation timers are tagged by outcome and looked up from a local map, so the
+ * hot path only reads the clock twice. The HELD and utilization gauges come from two aggregate
+ * queries run on a fixed delay rather than on every scrape.
+ */
+@Component
+public class SchedulingMetrics {
+    private static final Logger log = LoggerFactory.getLogger(SchedulingMetrics.class);
+
+    public static final String OK = "ok";
+    public static final String NOT_ALIGNED = "not_aligned";
+    public static final String TOO_SOON = "too_soon";
+    public static final String OFF_SCHEDULE = "off_schedule";
+    public static final String CONFLICT = "conflict";
+    public static final String CAPACITY_REACHED = "capacity_reached";
+    public static final String INVALID = "invalid";
+    public static final String ERROR = "error";
+
+    private final MeterRegistry meters;
+    private final JdbcTemplate jdbc;
+    private final Map<String, Map<String, Timer>> operations = new ConcurrentHashMap<>();
+    private final Map<String, Timer> lockWaits = new ConcurrentHashMap<>();
+    private final AtomicLong heldHolds = new AtomicLong();
+    private final MultiGauge utilization;
+
+    public SchedulingMetrics(MeterRegistry meters, JdbcTemplate jdbc) {
+        this.meters = meters;
+        this.jdbc = jdbc;
+        Gauge.builder("scheduling.holds.held", heldHolds, AtomicLong::get)
+                .description("Holds currently in HELD state")
+                .register(meters);
+        this.utilization = MultiGauge.builder("scheduling.utilization.daily")
+                .description("Booked share of today's capacity (UTC) per department")
+                .register(meters);
+    }
+
+    public Timer.Sample start() { return Timer.start(meters); }
+
+    public void stop(Timer.Sample sample, String operation, String outcome) {
+        sample.stop(operations.computeIfAbsent(operation, o -> new ConcurrentHashMap<>())
+                .computeIfAbsent(outcome, r -> Timer.builder("scheduling.operation")
+                        .description("Scheduling calls by operation and outcome, excluding commit")
+                        .tags("operation", operation, "outcome", outcome)
+                        .publishPercentileHistogram()
+                        .register(meters)));
+    }
+
+    /** Times a locking statement; under contention its duration is almost entirely lock wait. */
+    public <T> T lockWait(String lock, Supplier<T> statement) {
+        Timer timer = lockWaits.computeIfAbsent(lock, l -> Timer.builder("scheduling.lock.wait")
+                .description("Duration of row-locking statements")
+                .tag("lock", l)
+                .publishPercentileHistogram()
+                .register(meters));
+        long started = System.nanoTime();
+        try {
+            return statement.get();
+        } finally {
+            timer.record(System.nanoTime() - started, java.util.concurrent.TimeUnit.NANOSECONDS);
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${hms.metrics.refresh-ms:30000}", initialDelayString = "${hms.metrics.refresh-ms:30000}")
+    public void refresh() {
+        try {
+            Long held = jdbc.queryForObject("select count(*) from doctor_slots_hold where status_code = ?", Long.class, HoldStatus.HELD.code);
+            heldHolds.set(held == null ? 0 : held);
+
+            List<MultiGauge.Row<?>> rows = jdbc.query("""
+                    select max(d.department), coalesce(sum(c.booked_count), 0), sum(coalesce(c.capacity, ?))
+                    from doctors d
+                    left join doctor_daily_capacity c on c.doctor_id = d.doctor_id and c.doc_date = ?
+                    where d.active = true
+                    group by d.department_key
+                    """, (rs, i) -> {
+                long capacity = rs.getLong(3);
+                double used = capacity == 0 ? 0 : rs.getLong(2) / (double) capacity;
+                return MultiGauge.Row.of(Tags.of("department", String.valueOf(rs.getString(1))), used);
+            }, SchedulingService.DEFAULT_DAILY_CAPACITY, LocalDate.now(ZoneOffset.UTC));
+            utilization.register(rows, true);
+        } catch (RuntimeException e) {
+            log.warn("Refreshing scheduling gauges failed: {}", e.getMessage());
+        }
+    }
+}
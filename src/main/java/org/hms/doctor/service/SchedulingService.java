@@ -1,135 +1,417 @@
 package org.hms.doctor.service;
 
+import io.micrometer.core.instrument.Timer;
 import org.hms.doctor.dto.AvailabilityRequest;
+import org.hms.doctor.dto.BatchReserveRequest;
+import org.hms.doctor.dto.BatchReserveResponse;
 import org.hms.doctor.dto.ConfirmRequest;
 import org.hms.doctor.dto.ReserveRequest;
 import org.hms.doctor.dto.ReserveResponse;
 import org.hms.doctor.model.DailyCapacity;
+import org.hms.doctor.model.SlotEvent;
 import org.hms.doctor.model.SlotHold;
 import org.hms.doctor.repo.DailyCapacityRepository;
+import org.hms.doctor.repo.SlotEventJdbcRepository;
+import org.hms.doctor.repo.SlotHoldJdbcRepository;
 import org.hms.doctor.repo.SlotHoldRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 public class SchedulingService {
+    private static final Logger log = LoggerFactory.getLogger(SchedulingService.class);
 
     private final SlotHoldRepository holdRepo;
+    private final SlotHoldJdbcRepository holdJdbc;
     private final DailyCapacityRepository capacityRepo;
+    private final SlotOccupancyIndex occupancy;
+    private final HoldExpiryService expiry;
+    private final CapacityLedger ledger;
+    private final SchedulingMetrics metrics;
+    private final SlotEventJdbcRepository outbox;
+    private final WorkingCalendar calendar;
 
-    private final int SLOT_MINUTES = 30;
-    private final Duration LEAD_TIME = Duration.ofHours(2);
+    public static final int DEFAULT_DAILY_CAPACITY = 20;
+    public static final int MAX_BATCH_ITEMS = 50;
 
-    public SchedulingService(SlotHoldRepository holdRepo, DailyCapacityRepository capacityRepo) {
+    public SchedulingService(SlotHoldRepository holdRepo, SlotHoldJdbcRepository holdJdbc, DailyCapacityRepository capacityRepo,
+                             SlotOccupancyIndex occupancy, HoldExpiryService expiry, CapacityLedger ledger,
+                             SchedulingMetrics metrics, SlotEventJdbcRepository outbox, WorkingCalendar calendar) {
         this.holdRepo = holdRepo;
+        this.holdJdbc = holdJdbc;
         this.capacityRepo = capacityRepo;
+        this.occupancy = occupancy;
+        this.expiry = expiry;
+        this.ledger = ledger;
+        this.metrics = metrics;
+        this.outbox = outbox;
+        this.calendar = calendar;
+    }
+
+    /**
+     * The hold table migration; ddl-auto adds columns and indexes, this fills slot_from, slot_to,
+     * slot_day and status_code of holds written before those columns existed and drops the indexes they replaced.
+     * Runs ahead of the occupancy rebuild and expiry recovery, which query those columns.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void backfillSlotColumns() {
+        for (String table : List.of("doctor_slots_hold", "doctor_slots_hold_history")) {
+            int total = 0;
+            for (int n; (n = holdJdbc.backfillSlotColumns(table, 1000)) > 0; ) total += n;
+            if (total > 0) log.info("Backfilled slot numbers, days and status codes for {} rows of {}", total, table);
+        }
+        // timestamp-based overlap indexes, superseded by idx_hold_slots and idx_hold_status_slot
+        for (String index : List.of("idx_doctor_slot", "idx_hold_overlap", "idx_hold_status_end")) {
+            if (holdJdbc.dropIndexIfPresent("doctor_slots_hold", index)) log.info("Dropped superseded index {}", index);
+        }
     }
 
     public boolean checkAlignment(OffsetDateTime start, OffsetDateTime end) {
-        Duration dur = Duration.between(start, end);
-        if (dur.toMinutes() % SLOT_MINUTES != 0) return false;
-        return (start.getMinute() % SLOT_MINUTES) == 0;
+        return SlotRules.isAligned(start, end);
     }
 
     public boolean isWithinLeadTime(OffsetDateTime start) {
-        return start.isAfter(OffsetDateTime.now(ZoneOffset.UTC).plus(LEAD_TIME));
+        return SlotRules.isWithinLeadTime(start);
     }
 
-    @Transactional
+    /** True when the doctor's working hours cover every slot of [start, end). */
+    public boolean isOnSchedule(Long doctorId, OffsetDateTime start, OffsetDateTime end) {
+        return calendar.isWorking(doctorId, SlotGrid.slotOf(start), SlotGrid.slotCeil(end));
+    }
+
+    /** Slots must start strictly after this instant to be bookable. */
+    public OffsetDateTime leadTimeCutoff() {
+        return SlotRules.leadTimeCutoff();
+    }
+
+    // not transactional: the index answers without a connection, the fallback is a plain read
     public boolean isAvailable(Long doctorId, AvailabilityRequest req) {
         if (req.slotStart == null || req.slotEnd == null) throw new IllegalArgumentException("slotStart/slotEnd required");
-        if (!checkAlignment(req.slotStart, req.slotEnd)) return false;
-        if (!isWithinLeadTime(req.slotStart)) return false;
-        List<SlotHold> overlaps = holdRepo.findOverlappingForUpdate(doctorId, req.slotStart, req.slotEnd);
-        return overlaps.isEmpty();
+        Timer.Sample sample = metrics.start();
+        String outcome = SchedulingMetrics.ERROR;
+        try {
+            if (!checkAlignment(req.slotStart, req.slotEnd)) {
+                outcome = SchedulingMetrics.NOT_ALIGNED;
+                return false;
+            }
+            if (!isWithinLeadTime(req.slotStart)) {
+                outcome = SchedulingMetrics.TOO_SOON;
+                return false;
+            }
+            if (!isOnSchedule(doctorId, req.slotStart, req.slotEnd)) {
+                outcome = SchedulingMetrics.OFF_SCHEDULE;
+                return false;
+            }
+            boolean free = isFree(doctorId, req);
+            outcome = free ? SchedulingMetrics.OK : SchedulingMetrics.CONFLICT;
+            return free;
+        } finally {
+            metrics.stop(sample, "availability", outcome);
+        }
+    }
+
+    private boolean isFree(Long doctorId, AvailabilityRequest req) {
+        boolean indexed = occupancy.covers(doctorId, req.slotStart, req.slotEnd);
+        if (occupancy.getMode() == SlotOccupancyIndex.Mode.INDEX && indexed) {
+            return occupancy.isFree(doctorId, req.slotStart, req.slotEnd);
+        }
+        boolean dbFree = holdRepo.findOverlapping(doctorId, req.slotStart, req.slotEnd).isEmpty();
+        if (occupancy.getMode() == SlotOccupancyIndex.Mode.VERIFY && indexed) {
+            boolean indexFree = occupancy.isFree(doctorId, req.slotStart, req.slotEnd);
+            if (indexFree != dbFree) occupancy.reportMismatch(doctorId, req.slotStart, req.slotEnd, indexFree, dbFree);
+        }
+        return dbFree;
     }
 
     @Transactional
     public ReserveResponse reserve(Long doctorId, ReserveRequest req) {
-        if (req.slotStart == null || req.slotEnd == null) throw new IllegalArgumentException("slotStart/slotEnd required");
-        if (!checkAlignment(req.slotStart, req.slotEnd)) throw new IllegalArgumentException("slot not aligned to grid");
-        if (!isWithinLeadTime(req.slotStart)) throw new IllegalArgumentException("slot too soon");
-
-        // lock overlapping holds
-        List<SlotHold> overlaps = holdRepo.findOverlappingForUpdate(doctorId, req.slotStart, req.slotEnd);
-        if (!overlaps.isEmpty()) throw new IllegalStateException("slot not available");
-
-        // check capacity for day
-        LocalDate day = req.slotStart.toLocalDate();
-        Optional<DailyCapacity> dcOpt = capacityRepo.findByDoctorIdAndDocDateForUpdate(doctorId, day);
-        DailyCapacity dc = dcOpt.orElseGet(() -> {
-            DailyCapacity n = new DailyCapacity();
-            n.setDoctorId(doctorId);
-            n.setDocDate(day);
-            n.setCapacity(20);
-            n.setBookedCount(0);
-            return n;
-        });
-        if (dc.getBookedCount() >= dc.getCapacity()) throw new IllegalStateException("daily capacity reached");
-
-        // create hold
-        SlotHold hold = new SlotHold();
-        hold.setDoctorId(doctorId);
-        hold.setSlotStart(req.slotStart);
-        hold.setSlotEnd(req.slotEnd);
-        hold.setHoldStatus("HELD");
-        int ttl = (req.ttlMinutes == null) ? 10 : req.ttlMinutes;
-        hold.setExpiresAt(OffsetDateTime.now().plusMinutes(ttl));
-        SlotHold saved = holdRepo.save(hold);
-
-        return new ReserveResponse(saved.getHoldId(), saved.getExpiresAt());
+        Timer.Sample sample = metrics.start();
+        String outcome = SchedulingMetrics.ERROR;
+        try {
+            if (req.slotStart == null || req.slotEnd == null) {
+                outcome = SchedulingMetrics.INVALID;
+                throw new IllegalArgumentException("slotStart/slotEnd required");
+            }
+            if (!checkAlignment(req.slotStart, req.slotEnd)) {
+                outcome = SchedulingMetrics.NOT_ALIGNED;
+                throw new IllegalArgumentException("slot not aligned to grid");
+            }
+            if (!isWithinLeadTime(req.slotStart)) {
+                outcome = SchedulingMetrics.TOO_SOON;
+                throw new IllegalArgumentException("slot too soon");
+            }
+            if (!isOnSchedule(doctorId, req.slotStart, req.slotEnd)) {
+                outcome = SchedulingMetrics.OFF_SCHEDULE;
+                throw new IllegalStateException("doctor not working at that time");
+            }
+
+            // lock overlapping holds
+            List<SlotHold> overlaps = metrics.lockWait("slot_overlap",
+                    () -> holdRepo.findOverlappingForUpdate(doctorId, req.slotStart, req.slotEnd));
+            if (!overlaps.isEmpty()) {
+                outcome = SchedulingMetrics.CONFLICT;
+                throw new IllegalStateException("slot not available");
+            }
+
+            // check capacity for day
+            LocalDate day = req.slotStart.toLocalDate();
+            // in ATOMIC mode confirm enforces the limit itself, so a plain read is enough here
+            Optional<DailyCapacity> dcOpt = ledger.getMode() == CapacityLedger.Mode.ATOMIC
+                    ? capacityRepo.findByDoctorIdAndDocDate(doctorId, day)
+                    : metrics.lockWait("capacity_row", () -> capacityRepo.findByDoctorIdAndDocDateForUpdate(doctorId, day));
+            DailyCapacity dc = dcOpt.orElseGet(() -> {
+                DailyCapacity n = new DailyCapacity();
+                n.setDoctorId(doctorId);
+                n.setDocDate(day);
+                n.setCapacity(DEFAULT_DAILY_CAPACITY);
+                n.setBookedCount(0);
+                return n;
+            });
+            if (dc.getBookedCount() >= dc.getCapacity()) {
+                outcome = SchedulingMetrics.CAPACITY_REACHED;
+                throw new IllegalStateException("daily capacity reached");
+            }
+
+            // create hold
+            SlotHold hold = new SlotHold();
+            hold.setDoctorId(doctorId);
+            hold.setSlotStart(req.slotStart);
+            hold.setSlotEnd(req.slotEnd);
+            hold.setHoldStatus("HELD");
+            int ttl = (req.ttlMinutes == null) ? 10 : req.ttlMinutes;
+            hold.setExpiresAt(OffsetDateTime.now().plusMinutes(ttl));
+            SlotHold saved = holdRepo.save(hold);
+            outbox.appendAll(List.of(SlotEvent.of(saved, "HELD", 0)));
+            afterCommit(() -> {
+                occupancy.occupy(doctorId, req.slotStart, req.slotEnd);
+                expiry.schedule(saved.getHoldId(), doctorId, saved.getExpiresAt());
+            });
+
+            outcome = SchedulingMetrics.OK;
+            return new ReserveResponse(saved.getHoldId(), saved.getExpiresAt());
+        } finally {
+            metrics.stop(sample, "reserve", outcome);
+        }
+    }
+
+    /**
+     * Reserves several slots, possibly across doctors, all or nothing. Items are locked in
+     * (doctorId, slotStart) order so concurrent batches cannot deadlock, and all holds are
+     * written with one JDBC batch.
+     */
+    @Transactional
+    public BatchReserveResponse reserveBatch(BatchReserveRequest req) {
+        Timer.Sample sample = metrics.start();
+        String outcome = SchedulingMetrics.ERROR;
+        try {
+            if (req.items == null || req.items.isEmpty()) {
+                outcome = SchedulingMetrics.INVALID;
+                throw new IllegalArgumentException("items required");
+            }
+            if (req.items.size() > MAX_BATCH_ITEMS) {
+                outcome = SchedulingMetrics.INVALID;
+                throw new IllegalArgumentException("at most " + MAX_BATCH_ITEMS + " items per batch");
+            }
+            for (BatchReserveRequest.Item item : req.items) {
+                if (item.doctorId == null || item.slotStart == null || item.slotEnd == null) {
+                    outcome = SchedulingMetrics.INVALID;
+                    throw new IllegalArgumentException("doctorId/slotStart/slotEnd required");
+                }
+                if (!checkAlignment(item.slotStart, item.slotEnd)) {
+                    outcome = SchedulingMetrics.NOT_ALIGNED;
+                    throw new IllegalArgumentException("slot not aligned to grid");
+                }
+                if (!isWithinLeadTime(item.slotStart)) {
+                    outcome = SchedulingMetrics.TOO_SOON;
+                    throw new IllegalArgumentException("slot too soon");
+                }
+                if (!isOnSchedule(item.doctorId, item.slotStart, item.slotEnd)) {
+                    outcome = SchedulingMetrics.OFF_SCHEDULE;
+                    throw new IllegalStateException("doctor " + item.doctorId + " not working at " + item.slotStart);
+                }
+            }
+            List<BatchReserveRequest.Item> items = new ArrayList<>(req.items);
+            items.sort(Comparator.comparing((BatchReserveRequest.Item i) -> i.doctorId).thenComparing(i -> i.slotStart.toInstant()));
+            for (int i = 1; i < items.size(); i++) {
+                BatchReserveRequest.Item prev = items.get(i - 1), cur = items.get(i);
+                if (prev.doctorId.equals(cur.doctorId) && cur.slotStart.isBefore(prev.slotEnd)) {
+                    outcome = SchedulingMetrics.INVALID;
+                    throw new IllegalArgumentException("batch contains overlapping slots for doctor " + cur.doctorId);
+                }
+            }
+
+            // lock overlapping holds in a deterministic order
+            for (BatchReserveRequest.Item item : items) {
+                if (!metrics.lockWait("slot_overlap", () -> holdRepo.findOverlappingForUpdate(item.doctorId, item.slotStart, item.slotEnd)).isEmpty()) {
+                    outcome = SchedulingMetrics.CONFLICT;
+                    throw new IllegalStateException("slot not available for doctor " + item.doctorId + " at " + item.slotStart);
+                }
+            }
+
+            // check capacity once per doctor-day
+            Map<Long, Map<LocalDate, Boolean>> checked = new HashMap<>();
+            for (BatchReserveRequest.Item item : items) {
+                LocalDate day = item.slotStart.toLocalDate();
+                Map<LocalDate, Boolean> days = checked.computeIfAbsent(item.doctorId, k -> new HashMap<>());
+                if (days.containsKey(day)) continue;
+                Optional<DailyCapacity> dc = ledger.getMode() == CapacityLedger.Mode.ATOMIC
+                        ? capacityRepo.findByDoctorIdAndDocDate(item.doctorId, day)
+                        : metrics.lockWait("capacity_row", () -> capacityRepo.findByDoctorIdAndDocDateForUpdate(item.doctorId, day));
+                if (dc.isPresent() && dc.get().getBookedCount() >= dc.get().getCapacity()) {
+                    outcome = SchedulingMetrics.CAPACITY_REACHED;
+                    throw new IllegalStateException("daily capacity reached for doctor " + item.doctorId + " on " + day);
+                }
+                days.put(day, Boolean.TRUE);
+            }
+
+            int ttl = (req.ttlMinutes == null) ? 10 : req.ttlMinutes;
+            OffsetDateTime expiresAt = OffsetDateTime.now().plusMinutes(ttl);
+            List<SlotHold> holds = new ArrayList<>(items.size());
+            for (BatchReserveRequest.Item item : items) {
+                SlotHold hold = new SlotHold();
+                hold.setDoctorId(item.doctorId);
+                hold.setSlotStart(item.slotStart);
+                hold.setSlotEnd(item.slotEnd);
+                hold.setAppointmentId(req.appointmentId);
+                hold.setHoldStatus("HELD");
+                hold.setExpiresAt(expiresAt);
+                holds.add(hold);
+            }
+            holdJdbc.insertAll(holds);
+            outbox.appendAll(holds.stream().map(h -> SlotEvent.of(h, "HELD", 0)).toList());
+
+            BatchReserveResponse resp = new BatchReserveResponse();
+            for (SlotHold h : holds) {
+                resp.holds.add(new BatchReserveResponse.Hold(h.getHoldId(), h.getDoctorId(), h.getSlotStart(), h.getSlotEnd(), h.getExpiresAt()));
+            }
+            afterCommit(() -> holds.forEach(h -> {
+                occupancy.occupy(h.getDoctorId(), h.getSlotStart(), h.getSlotEnd());
+                expiry.schedule(h.getHoldId(), h.getDoctorId(), h.getExpiresAt());
+            }));
+            outcome = SchedulingMetrics.OK;
+            return resp;
+        } finally {
+            metrics.stop(sample, "reserve_batch", outcome);
+        }
     }
 
     @Transactional
     public SlotHold confirm(Long doctorId, Long holdId, ConfirmRequest req) {
-        SlotHold hold = holdRepo.findById(holdId).orElseThrow(() -> new IllegalArgumentException("hold not found"));
-        if (!hold.getDoctorId().equals(doctorId)) throw new IllegalArgumentException("doctor mismatch");
-        if (!"HELD".equals(hold.getHoldStatus())) {
-            if ("CONFIRMED".equals(hold.getHoldStatus())) {
-                if (hold.getAppointmentId()!=null && hold.getAppointmentId().equals(req.appointmentId)) return hold;
-                throw new IllegalStateException("hold already confirmed for another appointment");
+        Timer.Sample sample = metrics.start();
+        String outcome = SchedulingMetrics.ERROR;
+        try {
+            Optional<SlotHold> found = holdRepo.findById(holdId);
+            if (found.isEmpty() && holdJdbc.findArchivedStatus(holdId, doctorId) != null) {
+                outcome = SchedulingMetrics.CONFLICT;
+                throw new IllegalStateException("hold archived");
+            }
+            if (found.isEmpty() || !found.get().getDoctorId().equals(doctorId)) {
+                outcome = SchedulingMetrics.INVALID;
+                throw new IllegalArgumentException(found.isEmpty() ? "hold not found" : "doctor mismatch");
+            }
+            SlotHold hold = found.get();
+            if (!"HELD".equals(hold.getHoldStatus())) {
+                if ("CONFIRMED".equals(hold.getHoldStatus())) {
+                    if (hold.getAppointmentId()!=null && hold.getAppointmentId().equals(req.appointmentId)) {
+                        outcome = SchedulingMetrics.OK;
+                        return hold;
+                    }
+                    outcome = SchedulingMetrics.CONFLICT;
+                    throw new IllegalStateException("hold already confirmed for another appointment");
+                }
+                outcome = SchedulingMetrics.CONFLICT;
+                throw new IllegalStateException("hold not in held state");
             }
-            throw new IllegalStateException("hold not in held state");
+            // capacity check & increment
+            LocalDate day = hold.getSlotDay();
+            if (!metrics.lockWait("capacity_update", () -> ledger.book(doctorId, day))) {
+                outcome = SchedulingMetrics.CAPACITY_REACHED;
+                throw new IllegalStateException("daily capacity reached at confirm");
+            }
+
+            hold.setHoldStatus("CONFIRMED");
+            hold.setAppointmentId(req.appointmentId);
+            SlotHold saved = holdRepo.save(hold);
+            outbox.appendAll(List.of(SlotEvent.of(saved, "CONFIRMED", 1)));
+            afterCommit(() -> {
+                occupancy.occupy(doctorId, saved.getSlotStart(), saved.getSlotEnd());
+                expiry.cancel(holdId);
+            });
+            outcome = SchedulingMetrics.OK;
+            return saved;
+        } finally {
+            metrics.stop(sample, "confirm", outcome);
         }
-        // capacity check & increment
-        LocalDate day = hold.getSlotStart().toLocalDate();
-        DailyCapacity dc = capacityRepo.findByDoctorIdAndDocDateForUpdate(doctorId, day)
-                .orElseGet(() -> {
-                    DailyCapacity n = new DailyCapacity();
-                    n.setDoctorId(doctorId);
-                    n.setDocDate(day);
-                    n.setCapacity(20);
-                    n.setBookedCount(0);
-                    return n;
-                });
-        if (dc.getBookedCount() >= dc.getCapacity()) throw new IllegalStateException("daily capacity reached at confirm");
-        dc.setBookedCount(dc.getBookedCount()+1);
-        capacityRepo.save(dc);
-
-        hold.setHoldStatus("CONFIRMED");
-        hold.setAppointmentId(req.appointmentId);
-        SlotHold saved = holdRepo.save(hold);
-        return saved;
     }
 
     @Transactional
     public void release(Long doctorId, Long holdId) {
-        SlotHold hold = holdRepo.findById(holdId).orElseThrow(() -> new IllegalArgumentException("hold not found"));
-        if (!hold.getDoctorId().equals(doctorId)) throw new IllegalArgumentException("doctor mismatch");
-        if ("CONFIRMED".equals(hold.getHoldStatus())) {
-            LocalDate day = hold.getSlotStart().toLocalDate();
-            DailyCapacity dc = capacityRepo.findByDoctorIdAndDocDateForUpdate(doctorId, day)
-                    .orElse(null);
-            if (dc!=null && dc.getBookedCount()>0) {
-                dc.setBookedCount(dc.getBookedCount()-1);
-                capacityRepo.save(dc);
+        Timer.Sample sample = metrics.start();
+        String outcome = SchedulingMetrics.ERROR;
+        try {
+            Optional<SlotHold> found = holdRepo.findById(holdId);
+            if (found.isEmpty()) {
+                // archived holds: releasing a released one stays a no-op, a past appointment cannot be released
+                String archived = holdJdbc.findArchivedStatus(holdId, doctorId);
+                if ("RELEASED".equals(archived)) {
+                    outcome = SchedulingMetrics.OK;
+                    return;
+                }
+                if (archived != null) {
+                    outcome = SchedulingMetrics.CONFLICT;
+                    throw new IllegalStateException("hold archived");
+                }
+            }
+            if (found.isEmpty() || !found.get().getDoctorId().equals(doctorId)) {
+                outcome = SchedulingMetrics.INVALID;
+                throw new IllegalArgumentException(found.isEmpty() ? "hold not found" : "doctor mismatch");
             }
+            SlotHold hold = found.get();
+            if ("CONFIRMED".equals(hold.getHoldStatus())) {
+                metrics.lockWait("capacity_update", () -> {
+                    ledger.unbook(doctorId, hold.getSlotDay());
+                    return null;
+                });
+            }
+            boolean wasActive = "HELD".equals(hold.getHoldStatus()) || "CONFIRMED".equals(hold.getHoldStatus());
+            int bookedDelta = "CONFIRMED".equals(hold.getHoldStatus()) ? -1 : 0;
+            hold.setHoldStatus("RELEASED");
+            holdRepo.save(hold);
+            if (wasActive) outbox.appendAll(List.of(SlotEvent.of(hold, "RELEASED", bookedDelta)));
+            // the slot is vacated by the outbox event, in order with whoever takes it next
+            afterCommit(() -> expiry.cancel(holdId));
+            outcome = SchedulingMetrics.OK;
+        } finally {
+            metrics.stop(sample, "release", outcome);
         }
-        hold.setHoldStatus("RELEASED");
-        holdRepo.save(hold);
+    }
+
+    // index updates must only become visible once the row change is committed
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() { action.run(); }
+        });
     }
 }
@@ -0,0 +1,461 @@
+package org.hms.doctor.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.hms.doctor.model.Doctor;
+import org.hms.doctor.model.SlotEvent;
+import org.hms.doctor.repo.SlotEventJdbcRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Streams the slot_events outbox to SSE subscribers. One poller per replica reads new outbox rows in
+ * id order, serializes each event once, keeps the most recent ones in a ring buffer and hands them
+ * to the subscribers of the event's doctor and department, so subscribers add no database load.
+ * <p>
+ * Each subscriber has a bounded queue drained by a small sender pool; a subscriber that falls
+ * {@code subscriber-queue} events behind is disconnected and resumes with Last-Event-ID, from the
+ * ring buffer or, when older, from the table. Ids are handed out before commit, so a gap in the ids
+ * is waited on for {@code gap-grace} before the poller moves past it. The ids it moved past are
+ * re-read on every poll for {@code late-commit-window}, so an event whose transaction commits late (a
+ * lock wait, a grouped confirm, a pause) is still delivered, after newer ones; an id that never appears
+ * was a rolled-back insert. Resuming from the ring replays what was delivered after Last-Event-ID, late
+ * events with lower ids included.
+ * <p>
+ * The poller also applies every event to this replica's {@link SlotOccupancyIndex}, so the index
+ * follows holds changed through any replica, in outbox order.
+ */
+@Component
+public class SlotEventRelay {
+    private static final Logger log = LoggerFactory.getLogger(SlotEventRelay.class);
+    private static final int POLL_BATCH = 500;
+    private static final int RECHECK_BATCH = 1000;
+    private static final int MAX_SKIPPED = 10_000;
+    private static final Object HEARTBEAT = new Object();
+    private static final Object RESET = new Object();
+
+    /** An outbox row with its JSON payload, serialized once for every subscriber. */
+    private record Published(SlotEvent event, String json) {}
+
+    private final SlotEventJdbcRepository events;
+    private final DoctorService doctors;
+    private final SlotOccupancyIndex occupancy;
+    private final ObjectMapper mapper;
+    private final Duration gapGrace;
+    private final Duration lateCommitWindow;
+    private final Duration retention;
+    private final int subscriberQueue;
+    private final int maxReplay;
+    private final long emitterTimeoutMs;
+    private final ExecutorService senders;
+
+    // guards the ring and the hand-off to subscribers; a lock rather than synchronized because
+    // resolving a department may load a doctor, which must not pin a virtual thread
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Published[] ring;
+    private int ringStart;
+    private int ringCount;
+    // ids up to this one may have left the ring, or never been in it
+    private long ringFloor;
+    private volatile long lastId = -1;
+    // ids moved past while missing, to when they are given up on; poller thread only, oldest first
+    private final Map<Long, Long> skipped = new LinkedHashMap<>();
+
+    private final Map<Long, Set<Subscriber>> byDoctor = new ConcurrentHashMap<>();
+    private final Map<String, Set<Subscriber>> byDepartment = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final Counter published;
+    private final Counter late;
+    private final Counter droppedSlow;
+    private final Counter droppedClosed;
+
+    public SlotEventRelay(SlotEventJdbcRepository events, DoctorService doctors, SlotOccupancyIndex occupancy,
+                          ObjectMapper mapper, MeterRegistry meters,
+                          @Value("${hms.events.buffer-size:8192}") int bufferSize,
+                          @Value("${hms.events.gap-grace:PT2S}") Duration gapGrace,
+                          @Value("${hms.events.late-commit-window:PT2M}") Duration lateCommitWindow,
+                          @Value("${hms.events.retention:PT24H}") Duration retention,
+                          @Value("${hms.events.subscriber-queue:256}") int subscriberQueue,
+                          @Value("${hms.events.max-replay:2000}") int maxReplay,
+                          @Value("${hms.events.emitter-timeout:PT30M}") Duration emitterTimeout,
+                          @Value("${hms.events.sender-threads:4}") int senderThreads) {
+        this.events = events;
+        this.doctors = doctors;
+        this.occupancy = occupancy;
+        this.mapper = mapper;
+        this.gapGrace = gapGrace;
+        this.lateCommitWindow = lateCommitWindow;
+        this.retention = retention;
+        this.subscriberQueue = subscriberQueue;
+        this.maxReplay = maxReplay;
+        this.emitterTimeoutMs = emitterTimeout.toMillis();
+        this.ring = new Published[bufferSize];
+        // platform threads: SseEmitter.send is synchronized and would pin a virtual thread while it writes
+        AtomicInteger n = new AtomicInteger();
+        this.senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "slot-events-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.published = Counter.builder("scheduling.events.published").description("Outbox events handed to subscribers").register(meters);
+        this.late = Counter.builder("scheduling.events.late").description("Outbox events delivered after the poller had moved past their id").register(meters);
+        this.droppedSlow = Counter.builder("scheduling.events.disconnected").tag("reason", "slow").register(meters);
+        this.droppedClosed = Counter.builder("scheduling.events.disconnected").tag("reason", "closed").register(meters);
+        Gauge.builder("scheduling.events.subscribers", subscriberCount, AtomicInteger::get)
+                .description("Open slot event streams")
+                .register(meters);
+    }
+
+    // ahead of the occupancy warm start, so no event committed after its read is skipped
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE + 1)
+    public void start() {
+        long max = events.findMaxId();
+        lock.lock();
+        try {
+            ringFloor = max;
+        } finally {
+            lock.unlock();
+        }
+        lastId = max;
+    }
+
+    @PreDestroy
+    public void stop() {
+        senders.shutdownNow();
+    }
+
+    /**
+     * Opens a stream for one doctor or one department. With lastEventId the stream first replays what
+     * the subscriber missed; if that is no longer retained it starts with a "reset" event instead,
+     * telling the client to reload its view.
+     */
+    public SseEmitter subscribe(Long doctorId, String department, Long lastEventId) {
+        if ((doctorId == null) == (department == null || department.isBlank())) {
+            throw new IllegalArgumentException("exactly one of doctorId or department is required");
+        }
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        Subscriber sub = new Subscriber(emitter, doctorId, doctorId == null ? Doctor.normalizeDepartment(department) : null);
+        emitter.onCompletion(sub::close);
+        emitter.onTimeout(sub::close);
+        emitter.onError(e -> sub.close());
+
+        List<Published> backlog = new ArrayList<>();
+        boolean reset = false;
+        long upTo;
+        lock.lock();
+        try {
+            register(sub);
+            upTo = lastId;
+            int at = lastEventId == null ? -1 : ringIndexOf(lastEventId);
+            if (at >= 0) {
+                // everything delivered after it, late events with lower ids included
+                for (int i = at + 1; i < ringCount; i++) {
+                    Published p = ring[(ringStart + i) % ring.length];
+                    if (sub.matches(p.event(), sub.doctorId != null ? null : departmentOf(p.event()))) backlog.add(p);
+                }
+            } else if (lastEventId != null && lastEventId < upTo) {
+                if (ringCount > 0 && lastEventId >= ringFloor) {
+                    for (int i = 0; i < ringCount; i++) {
+                        Published p = ring[(ringStart + i) % ring.length];
+                        if (p.event().getId() <= lastEventId) continue;
+                        if (sub.matches(p.event(), sub.doctorId != null ? null : departmentOf(p.event()))) backlog.add(p);
+                    }
+                } else {
+                    backlog = null;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (backlog == null) {
+            // older than the ring buffer: read the gap from the table, outside the lock
+            backlog = new ArrayList<>();
+            List<SlotEvent> rows = sub.doctorId != null
+                    ? events.findForDoctor(sub.doctorId, lastEventId, upTo, maxReplay + 1)
+                    : events.findForDepartment(sub.departmentKey, lastEventId, upTo, maxReplay + 1);
+            if (rows.size() > maxReplay || lastEventId + 1 < events.findMinId()) {
+                reset = true;
+            } else {
+                for (SlotEvent e : rows) backlog.add(new Published(e, toJson(e)));
+            }
+        } else if (backlog.size() > maxReplay) {
+            reset = true;
+        }
+        sub.start(reset ? List.of() : backlog, reset);
+        return emitter;
+    }
+
+    @Scheduled(fixedDelayString = "${hms.events.poll-ms:200}")
+    public void poll() {
+        if (lastId < 0) return;
+        try {
+            List<SlotEvent> batch;
+            int handled;
+            do {
+                batch = events.findAfter(lastId, POLL_BATCH);
+                OffsetDateTime settled = OffsetDateTime.now().minus(gapGrace);
+                handled = 0;
+                for (SlotEvent e : batch) {
+                    // a lower id may belong to a transaction that has not committed yet
+                    if (e.getId() != lastId + 1 && e.getCreatedAt().isAfter(settled)) break;
+                    skip(lastId + 1, e.getId());
+                    deliver(e);
+                    handled++;
+                }
+            } while (handled == POLL_BATCH);
+            recheckSkipped();
+        } catch (RuntimeException e) {
+            log.warn("Polling slot events failed: {}", e.getMessage());
+        }
+    }
+
+    private void deliver(SlotEvent e) {
+        occupancy.onEvent(e);
+        publish(new Published(e, toJson(e)));
+    }
+
+    private void skip(long fromId, long toId) {
+        long until = System.currentTimeMillis() + lateCommitWindow.toMillis();
+        for (long id = Math.max(fromId, toId - MAX_SKIPPED); id < toId; id++) skipped.put(id, until);
+        if (skipped.size() > MAX_SKIPPED) {
+            Iterator<Long> it = skipped.keySet().iterator();
+            for (int n = skipped.size() - MAX_SKIPPED; n > 0; n--) {
+                it.next();
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Delivers skipped ids that have committed since. Such an event is late only behind events of other
+     * slots: a change to the same slot waits for its row locks, so its event commits after this one.
+     */
+    private void recheckSkipped() {
+        if (skipped.isEmpty()) return;
+        long now = System.currentTimeMillis();
+        skipped.values().removeIf(until -> until < now);
+        List<Long> ids = new ArrayList<>(skipped.keySet());
+        for (int i = 0; i < ids.size(); i += RECHECK_BATCH) {
+            for (SlotEvent e : events.findByIds(ids.subList(i, Math.min(ids.size(), i + RECHECK_BATCH)))) {
+                skipped.remove(e.getId());
+                log.debug("Slot event {} committed after the poller moved past it", e.getId());
+                deliver(e);
+                late.increment();
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${hms.events.heartbeat-ms:15000}")
+    public void heartbeat() {
+        byDoctor.values().forEach(subs -> subs.forEach(s -> s.offer(HEARTBEAT)));
+        byDepartment.values().forEach(subs -> subs.forEach(s -> s.offer(HEARTBEAT)));
+    }
+
+    @Scheduled(fixedDelayString = "PT10M")
+    public void purge() {
+        try {
+            events.deleteOlderThan(OffsetDateTime.now().minus(retention));
+        } catch (RuntimeException e) {
+            log.warn("Purging slot events failed: {}", e.getMessage());
+        }
+    }
+
+    private void publish(Published p) {
+        lock.lock();
+        try {
+            append(p);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ring position of the event, -1 when it is not in the ring
+    private int ringIndexOf(long id) {
+        for (int i = ringCount - 1; i >= 0; i--) {
+            if (ring[(ringStart + i) % ring.length].event().getId() == id) return i;
+        }
+        return -1;
+    }
+
+    private void append(Published p) {
+        if (ringCount == ring.length) {
+            ringFloor = Math.max(ringFloor, ring[ringStart].event().getId());
+            ringStart = (ringStart + 1) % ring.length;
+            ringCount--;
+        }
+        ring[(ringStart + ringCount) % ring.length] = p;
+        ringCount++;
+        lastId = Math.max(lastId, p.event().getId());
+        published.increment();
+
+        Set<Subscriber> doctorSubs = byDoctor.get(p.event().getDoctorId());
+        if (doctorSubs != null) doctorSubs.forEach(s -> s.offer(p));
+        if (!byDepartment.isEmpty()) {
+            String department = departmentOf(p.event());
+            Set<Subscriber> departmentSubs = department == null ? null : byDepartment.get(department);
+            if (departmentSubs != null) departmentSubs.forEach(s -> s.offer(p));
+        }
+    }
+
+    // doctor profiles are cached, so this is a map lookup on the poller thread
+    private String departmentOf(SlotEvent e) {
+        return doctors.get(e.getDoctorId()).map(Doctor::getDepartmentKey).orElse(null);
+    }
+
+    private String toJson(SlotEvent e) {
+        try {
+            return mapper.writeValueAsString(e);
+        } catch (JsonProcessingException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void register(Subscriber sub) {
+        if (sub.doctorId != null) byDoctor.computeIfAbsent(sub.doctorId, k -> ConcurrentHashMap.newKeySet()).add(sub);
+        else byDepartment.computeIfAbsent(sub.departmentKey, k -> ConcurrentHashMap.newKeySet()).add(sub);
+        subscriberCount.incrementAndGet();
+    }
+
+    private void unregister(Subscriber sub) {
+        Set<Subscriber> subs = sub.doctorId != null ? byDoctor.get(sub.doctorId) : byDepartment.get(sub.departmentKey);
+        if (subs != null && subs.remove(sub)) subscriberCount.decrementAndGet();
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final Long doctorId;
+        final String departmentKey;
+        private final ArrayDeque<Object> queue = new ArrayDeque<>();
+        private boolean started;
+        private boolean draining;
+        private boolean closed;
+
+        Subscriber(SseEmitter emitter, Long doctorId, String departmentKey) {
+            this.emitter = emitter;
+            this.doctorId = doctorId;
+            this.departmentKey = departmentKey;
+        }
+
+        boolean matches(SlotEvent e, String department) {
+            return doctorId != null ? doctorId.equals(e.getDoctorId()) : departmentKey.equals(department);
+        }
+
+        /** Queues the backlog ahead of whatever arrived while it was being read, then starts sending. */
+        void start(List<Published> backlog, boolean reset) {
+            synchronized (this) {
+                List<Object> live = new ArrayList<>(queue);
+                queue.clear();
+                if (reset) queue.add(RESET);
+                queue.addAll(backlog);
+                Set<Long> replayed = new HashSet<>();
+                backlog.forEach(p -> replayed.add(p.event().getId()));
+                for (Object o : live) {
+                    if (!(o instanceof Published p) || !replayed.contains(p.event().getId())) queue.add(o);
+                }
+                started = true;
+            }
+            schedule();
+        }
+
+        void offer(Object message) {
+            boolean overflow = false;
+            synchronized (this) {
+                if (closed) return;
+                if (message == HEARTBEAT && !queue.isEmpty()) return;
+                if (started && queue.size() >= subscriberQueue) overflow = true;
+                else queue.add(message);
+            }
+            if (overflow) {
+                droppedSlow.increment();
+                close();
+                // completing waits for a send in progress, so keep it off the poller thread
+                senders.execute(emitter::complete);
+                return;
+            }
+            schedule();
+        }
+
+        private void schedule() {
+            synchronized (this) {
+                if (!started || draining || closed || queue.isEmpty()) return;
+                draining = true;
+            }
+            senders.execute(this::drain);
+        }
+
+        private void drain() {
+            for (int sent = 0; ; sent++) {
+                Object next;
+                synchronized (this) {
+                    next = closed ? null : queue.poll();
+                    if (next == null || sent == 64) {
+                        if (next != null) queue.addFirst(next);
+                        draining = false;
+                        break;
+                    }
+                }
+                try {
+                    send(next);
+                } catch (IOException | IllegalStateException e) {
+                    droppedClosed.increment();
+                    close();
+                    return;
+                }
+            }
+            // yield the sender thread to other subscribers after a burst
+            schedule();
+        }
+
+        private void send(Object message) throws IOException {
+            if (message == HEARTBEAT) {
+                emitter.send(SseEmitter.event().comment("keep-alive"));
+            } else if (message instanceof Published p) {
+                emitter.send(SseEmitter.event().id(Long.toString(p.event().getId())).name("slot").data(p.json(), MediaType.APPLICATION_JSON));
+            } else {
+                emitter.send(SseEmitter.event().name("reset").data("{\"reason\":\"history no longer available, reload the schedule\"}", MediaType.APPLICATION_JSON));
+            }
+        }
+
+        void close() {
+            synchronized (this) {
+                if (closed) return;
+                closed = true;
+                queue.clear();
+            }
+            unregister(this);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.hms.doctor.service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Maps timestamps onto the fixed 30-minute booking grid. Slot numbers count from the
+ * UTC epoch, so slot / SLOTS_PER_DAY is the UTC epoch day and slot % SLOTS_PER_DAY the
+ * position inside that day.
+ */
+public final class SlotGrid {
+    public static final int SLOT_MINUTES = 30;
+    public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+    private static final long SLOT_SECONDS = SLOT_MINUTES * 60L;
+
+    private SlotGrid() {}
+
+    /** Slot containing the given instant. */
+    public static long slotOf(OffsetDateTime t) {
+        return Math.floorDiv(t.toEpochSecond(), SLOT_SECONDS);
+    }
+
+    /** First slot at or after the given instant (exclusive upper bound for ranges). */
+    public static long slotCeil(OffsetDateTime t) {
+        return Math.floorDiv(t.toEpochSecond() + SLOT_SECONDS - 1, SLOT_SECONDS);
+    }
+
+    /** True when the instant is a slot boundary, i.e. on the half-hour in UTC. */
+    public static boolean isBoundary(OffsetDateTime t) {
+        return Math.floorMod(t.toEpochSecond(), SLOT_SECONDS) == 0;
+    }
+
+    public static OffsetDateTime startOf(long slot) {
+        return OffsetDateTime.ofInstant(Instant.ofEpochSecond(slot * SLOT_SECONDS), ZoneOffset.UTC);
+    }
+
+    public static long epochDay(long slot) {
+        return Math.floorDiv(slot, SLOTS_PER_DAY);
+    }
+
+    /** UTC date of a slot. */
+    public static LocalDate dayOf(long slot) {
+        return LocalDate.ofEpochDay(epochDay(slot));
+    }
+
+    public static int slotInDay(long slot) {
+        return (int) Math.floorMod(slot, SLOTS_PER_DAY);
+    }
+
+    /** Bits [fromBit, toBit) set; toBit may be SLOTS_PER_DAY. */
+    public static long mask(int fromBit, int toBit) {
+        if (fromBit >= toBit) return 0L;
+        long upper = toBit >= 64 ? -1L : (1L << toBit) - 1;
+        return upper & ~((1L << fromBit) - 1);
+    }
+}
@@ -0,0 +1,241 @@
+package org.hms.doctor.service;
+
+import org.hms.doctor.model.SlotEvent;
+import org.hms.doctor.repo.SlotHoldRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-process view of which grid slots are taken by HELD or CONFIRMED holds.
+ * Per doctor and UTC epoch day it keeps a single long whose low SLOTS_PER_DAY bits are
+ * the day's slots, so an availability check is a couple of map lookups and a mask test.
+ * Holds off the UTC half-hour (+05:45) share a slot with their neighbours, which bits cannot
+ * tell apart; they only set the day's OFF_GRID flag, and {@link #covers} sends such days to the
+ * database. The database stays the source of truth: reservations still lock rows, the index only
+ * answers read-only availability questions.
+ * <p>
+ * A rebuild or snapshot restore loads a new generation off to the side while the current one keeps
+ * answering. Changes made meanwhile are applied to the current generation and journalled; the journal
+ * is replayed onto the new generation before it is swapped in, so no change is lost to the load.
+ */
+@Component
+public class SlotOccupancyIndex {
+    private static final Logger log = LoggerFactory.getLogger(SlotOccupancyIndex.class);
+
+    public enum Mode { DATABASE, INDEX, VERIFY }
+
+    /** Set on a doctor-day holding a hold off the UTC half-hour; above the SLOTS_PER_DAY slot bits. */
+    static final long OFF_GRID = 1L << 63;
+
+    /** Receives one doctor-day of occupied-slot bits. */
+    @FunctionalInterface
+    public interface DayVisitor { void visit(long doctorId, long epochDay, long bits); }
+
+    private record Change(Long doctorId, OffsetDateTime start, OffsetDateTime end, boolean set) {}
+
+    private final SlotHoldRepository holdRepo;
+    private final Mode mode;
+    private final AtomicLong mismatches = new AtomicLong();
+    private volatile Days current = new Days();
+    private volatile boolean ready;
+
+    // guards changes and the journal; readers go to the current generation without it
+    private final Object changeLock = new Object();
+    private List<Change> journal;
+    // one load at a time
+    private final Object loadLock = new Object();
+
+    public SlotOccupancyIndex(SlotHoldRepository holdRepo,
+                              @Value("${hms.scheduling.occupancy-index.mode:INDEX}") Mode mode) {
+        this.holdRepo = holdRepo;
+        this.mode = mode;
+    }
+
+    public Mode getMode() { return mode; }
+    public boolean isReady() { return ready; }
+    public long getMismatches() { return mismatches.get(); }
+
+    /** Visits every occupied doctor-day; concurrent changes may or may not be seen. */
+    public void forEachDay(DayVisitor visitor) {
+        current.forEach(visitor);
+    }
+
+    // not read-only: with replica routing that would load from a possibly lagging replica, and holds it
+    // missed would never be applied afterwards
+    @Transactional
+    public void rebuild() {
+        long started = System.nanoTime();
+        long[] count = {0};
+        boolean loaded = load(days -> {
+            try (Stream<Object[]> rows = holdRepo.streamActiveEndingAfter(SlotGrid.slotOf(OffsetDateTime.now(ZoneOffset.UTC)))) {
+                rows.forEach(r -> {
+                    days.occupy((Long) r[0], (OffsetDateTime) r[1], (OffsetDateTime) r[2]);
+                    count[0]++;
+                });
+            }
+        });
+        if (loaded) log.info("Slot occupancy index rebuilt from {} active holds in {} ms", count[0], (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Fills a new generation with the loader, replays the changes made while it ran and swaps it in;
+     * the index is ready from then on. The loader must read state committed no earlier than its call.
+     * False in DATABASE mode, where nothing is loaded.
+     */
+    public boolean load(Consumer<Days> loader) {
+        if (mode == Mode.DATABASE) return false;
+        synchronized (loadLock) {
+            synchronized (changeLock) {
+                journal = new ArrayList<>();
+            }
+            Days next = new Days();
+            try {
+                loader.accept(next);
+            } catch (RuntimeException e) {
+                synchronized (changeLock) {
+                    journal = null;
+                }
+                throw e;
+            }
+            int replayed;
+            synchronized (changeLock) {
+                replayed = journal.size();
+                journal.forEach(c -> next.apply(c.doctorId(), c.start(), c.end(), c.set()));
+                journal = null;
+                current = next;
+            }
+            ready = true;
+            if (replayed > 0) log.debug("Replayed {} occupancy changes made during the load", replayed);
+            return true;
+        }
+    }
+
+    /**
+     * Applies an outbox event, from whichever replica wrote it. Holds that overlap are serialized by
+     * their row locks, so outbox order is the order their slots changed in; slots are only ever vacated
+     * here, a local vacate could land after the next hold's occupy.
+     */
+    public void onEvent(SlotEvent e) {
+        switch (e.getEventType()) {
+            case "HELD", "CONFIRMED" -> occupy(e.getDoctorId(), e.getSlotStart(), e.getSlotEnd());
+            case "RELEASED", "EXPIRED" -> vacate(e.getDoctorId(), e.getSlotStart(), e.getSlotEnd());
+            default -> log.warn("Ignoring slot event {} of unknown type {}", e.getId(), e.getEventType());
+        }
+    }
+
+    public void occupy(Long doctorId, OffsetDateTime start, OffsetDateTime end) {
+        change(doctorId, start, end, true);
+    }
+
+    public void vacate(Long doctorId, OffsetDateTime start, OffsetDateTime end) {
+        change(doctorId, start, end, false);
+    }
+
+    /** True when the index can answer for [start, end): it is ready, on the UTC half-hour, on no OFF_GRID day. */
+    public boolean covers(Long doctorId, OffsetDateTime start, OffsetDateTime end) {
+        if (!ready || !SlotGrid.isBoundary(start) || !SlotGrid.isBoundary(end)) return false;
+        Map<Long, Long> days = current.byDoctor.get(doctorId);
+        if (days == null) return true;
+        for (long day = SlotGrid.epochDay(SlotGrid.slotOf(start)); day <= SlotGrid.epochDay(SlotGrid.slotCeil(end) - 1); day++) {
+            Long bits = days.get(day);
+            if (bits != null && (bits & OFF_GRID) != 0) return false;
+        }
+        return true;
+    }
+
+    /** True when no slot touched by [start, end) is occupied. */
+    public boolean isFree(Long doctorId, OffsetDateTime start, OffsetDateTime end) {
+        Map<Long, Long> days = current.byDoctor.get(doctorId);
+        if (days == null) return true;
+        long from = SlotGrid.slotOf(start), to = SlotGrid.slotCeil(end);
+        for (long day = SlotGrid.epochDay(from); day <= SlotGrid.epochDay(to - 1); day++) {
+            Long bits = days.get(day);
+            if (bits != null && (bits & dayMask(day, from, to)) != 0) return false;
+        }
+        return true;
+    }
+
+    /** Occupied-slot bits of one UTC epoch day, 0 when nothing is held. */
+    public long occupiedMask(Long doctorId, long epochDay) {
+        Map<Long, Long> days = current.byDoctor.get(doctorId);
+        if (days == null) return 0L;
+        Long bits = days.get(epochDay);
+        return bits == null ? 0L : bits & ~OFF_GRID;
+    }
+
+    /** Records a disagreement found while running in VERIFY mode. */
+    void reportMismatch(Long doctorId, OffsetDateTime start, OffsetDateTime end, boolean indexFree, boolean dbFree) {
+        mismatches.incrementAndGet();
+        log.warn("Occupancy index mismatch doctor={} slot=[{}, {}) index={} db={}",
+                doctorId, start, end, indexFree ? "free" : "taken", dbFree ? "free" : "taken");
+    }
+
+    private void change(Long doctorId, OffsetDateTime start, OffsetDateTime end, boolean set) {
+        if (mode == Mode.DATABASE) return;
+        synchronized (changeLock) {
+            if (journal != null) journal.add(new Change(doctorId, start, end, set));
+            current.apply(doctorId, start, end, set);
+        }
+    }
+
+    private static long dayMask(long day, long from, long to) {
+        long dayStart = day * SlotGrid.SLOTS_PER_DAY;
+        int lo = (int) Math.max(0, from - dayStart);
+        int hi = (int) Math.min(SlotGrid.SLOTS_PER_DAY, to - dayStart);
+        return SlotGrid.mask(lo, hi);
+    }
+
+    /** One generation of the index: occupied-slot bits per doctor and epoch day. */
+    public static final class Days {
+        private final Map<Long, Map<Long, Long>> byDoctor = new ConcurrentHashMap<>();
+
+        public void occupy(Long doctorId, OffsetDateTime start, OffsetDateTime end) {
+            apply(doctorId, start, end, true);
+        }
+
+        public void vacate(Long doctorId, OffsetDateTime start, OffsetDateTime end) {
+            apply(doctorId, start, end, false);
+        }
+
+        /** Sets a doctor-day's bits as written by {@link #forEach}, OFF_GRID flag included. */
+        public void put(long doctorId, long epochDay, long bits) {
+            byDoctor.computeIfAbsent(doctorId, k -> new ConcurrentHashMap<>()).put(epochDay, bits);
+        }
+
+        void forEach(DayVisitor visitor) {
+            byDoctor.forEach((doctorId, days) -> days.forEach((day, bits) -> visitor.visit(doctorId, day, bits)));
+        }
+
+        private void apply(Long doctorId, OffsetDateTime start, OffsetDateTime end, boolean set) {
+            long from = SlotGrid.slotOf(start), to = SlotGrid.slotCeil(end);
+            boolean offGrid = !SlotGrid.isBoundary(start) || !SlotGrid.isBoundary(end);
+            Map<Long, Long> days = byDoctor.computeIfAbsent(doctorId, k -> new ConcurrentHashMap<>());
+            for (long day = SlotGrid.epochDay(from); day <= SlotGrid.epochDay(to - 1); day++) {
+                if (offGrid) {
+                    // sticky until the next rebuild: releasing it cannot tell which shared slots stay taken
+                    days.merge(day, OFF_GRID, (a, b) -> a | b);
+                    continue;
+                }
+                long m = dayMask(day, from, to);
+                if (set) {
+                    days.merge(day, m, (a, b) -> a | b);
+                } else {
+                    days.computeIfPresent(day, (k, bits) -> (bits & ~m) == 0 ? null : bits & ~m);
+                }
+            }
+        }
+    }
+}
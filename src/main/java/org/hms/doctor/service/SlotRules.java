@@ -0,0 +1,31 @@
+package org.hms.doctor.service;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * The checks a requested slot must pass before any database work: grid alignment and lead time. Pure
+ * functions of the request and the clock, so they need no collaborators.
+ */
+public final class SlotRules {
+    public static final Duration LEAD_TIME = Duration.ofHours(2);
+
+    private SlotRules() {}
+
+    /** On the hour or half-hour in the offset the client sent, and a whole number of slots long. */
+    public static boolean isAligned(OffsetDateTime start, OffsetDateTime end) {
+        Duration dur = Duration.between(start, end);
+        if (dur.toMinutes() % SlotGrid.SLOT_MINUTES != 0) return false;
+        return (start.getMinute() % SlotGrid.SLOT_MINUTES) == 0;
+    }
+
+    public static boolean isWithinLeadTime(OffsetDateTime start) {
+        return start.isAfter(leadTimeCutoff());
+    }
+
+    /** Slots must start strictly after this instant to be bookable. */
+    public static OffsetDateTime leadTimeCutoff() {
+        return OffsetDateTime.now(ZoneOffset.UTC).plus(LEAD_TIME);
+    }
+}
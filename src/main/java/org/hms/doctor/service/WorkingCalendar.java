@@ -0,0 +1,225 @@
+package org.hms.doctor.service;
+
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.hms.doctor.cache.CacheInvalidationBroadcaster;
+import org.hms.doctor.model.ScheduleRule;
+import org.hms.doctor.repo.DoctorRepository;
+import org.hms.doctor.repo.ScheduleRuleRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Doctors' working hours as slot bitmasks. A doctor's template (doctor_schedule_rules) is compiled into
+ * one long per UTC epoch day, in SlotGrid's layout, whose bits are the slots inside a shift and outside
+ * every break and leave; a booking is on-schedule when all of its slots are set, so availability is that
+ * mask ANDed with the free slots. Day masks are compiled on first use and cached per doctor; changing a
+ * template drops only that doctor's masks, here and, through the cache broadcaster, on other replicas.
+ * <p>
+ * Shifts must cover a slot entirely to make it working, breaks and leave block every slot they touch.
+ * Doctors without a SHIFT rule are treated as working around the clock, as before templates existed.
+ */
+@Service
+public class WorkingCalendar {
+    public static final int MAX_RULES = 200;
+    private static final long ALL_DAY = SlotGrid.mask(0, SlotGrid.SLOTS_PER_DAY);
+    private static final int MAX_CACHED_DAYS = 400;
+
+    private final ScheduleRuleRepository ruleRepo;
+    private final DoctorRepository doctorRepo;
+    private final CacheInvalidationBroadcaster broadcaster;
+    private final ZoneId zone;
+    private final LoadingCache<Long, Compiled> compiled;
+
+    public WorkingCalendar(ScheduleRuleRepository ruleRepo, DoctorRepository doctorRepo,
+                           CacheInvalidationBroadcaster broadcaster, MeterRegistry meters,
+                           @Value("${hms.scheduling.calendar.zone:UTC}") ZoneId zone,
+                           @Value("${hms.scheduling.calendar.max-size:10000}") long maxDoctors) {
+        this.ruleRepo = ruleRepo;
+        this.doctorRepo = doctorRepo;
+        this.broadcaster = broadcaster;
+        this.zone = zone;
+        this.compiled = Caffeine.newBuilder().maximumSize(maxDoctors).recordStats()
+                .build(id -> new Compiled(ruleRepo.findByDoctorIdOrderById(id)));
+        CaffeineCacheMetrics.monitor(meters, compiled, "workingCalendars");
+        broadcaster.subscribe(this::invalidateLocal);
+    }
+
+    public ZoneId getZone() { return zone; }
+
+    public List<ScheduleRule> getTemplate(Long doctorId) {
+        return ruleRepo.findByDoctorIdOrderById(doctorId);
+    }
+
+    /** Replaces the doctor's whole template; the new masks apply once the change has committed. */
+    @Transactional
+    public List<ScheduleRule> replaceTemplate(Long doctorId, List<ScheduleRule> rules) {
+        if (rules == null) throw new IllegalArgumentException("rules required");
+        if (rules.size() > MAX_RULES) throw new IllegalArgumentException("at most " + MAX_RULES + " rules per doctor");
+        if (!doctorRepo.existsById(doctorId)) throw new IllegalArgumentException("doctor not found");
+        for (ScheduleRule r : rules) validate(r);
+        ruleRepo.deleteByDoctorId(doctorId);
+        for (ScheduleRule r : rules) {
+            r.setId(null);
+            r.setDoctorId(doctorId);
+        }
+        List<ScheduleRule> saved = ruleRepo.saveAll(rules);
+        // published in this transaction, so it commits with the rules: after commit an insert would join the
+        // finished transaction and be rolled back with the connection
+        broadcaster.publish(doctorId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() { invalidateLocal(doctorId); }
+            });
+        } else {
+            invalidateLocal(doctorId);
+        }
+        return saved;
+    }
+
+    private static void validate(ScheduleRule r) {
+        if (r.getKind() == null) throw new IllegalArgumentException("kind required (SHIFT, BREAK or LEAVE)");
+        if ((r.getStartTime() == null) != (r.getEndTime() == null)) throw new IllegalArgumentException("startTime and endTime go together");
+        if (r.getStartTime() != null && r.getStartTime().equals(r.getEndTime())) throw new IllegalArgumentException("startTime and endTime must differ");
+        if (r.getFromDate() != null && r.getToDate() != null && r.getToDate().isBefore(r.getFromDate())) {
+            throw new IllegalArgumentException("toDate must not be before fromDate");
+        }
+        if (r.getKind() == ScheduleRule.Kind.LEAVE) {
+            if (r.getFromDate() == null) throw new IllegalArgumentException("LEAVE needs fromDate");
+            if (r.getToDate() == null) r.setToDate(r.getFromDate());
+            r.setDayOfWeek(null);
+        } else {
+            if (r.getDayOfWeek() == null || r.getDayOfWeek() < 1 || r.getDayOfWeek() > 7) {
+                throw new IllegalArgumentException(r.getKind() + " needs dayOfWeek 1-7 (1 = Monday)");
+            }
+            if (r.getStartTime() == null) throw new IllegalArgumentException(r.getKind() + " needs startTime and endTime");
+        }
+    }
+
+    /** Working slots of the doctor on the UTC epoch day, bit i being slot i of that day. */
+    public long workingMask(Long doctorId, long epochDay) {
+        return compiled.get(doctorId).day(epochDay);
+    }
+
+    /** True when every slot in [fromSlot, toSlot) is inside the doctor's working hours. */
+    public boolean isWorking(Long doctorId, long fromSlot, long toSlot) {
+        Compiled c = compiled.get(doctorId);
+        if (c.open) return true;
+        for (long s = fromSlot; s < toSlot; ) {
+            long day = SlotGrid.epochDay(s);
+            long dayEnd = (day + 1) * SlotGrid.SLOTS_PER_DAY;
+            long stop = Math.min(toSlot, dayEnd);
+            long required = SlotGrid.mask(SlotGrid.slotInDay(s), stop == dayEnd ? SlotGrid.SLOTS_PER_DAY : SlotGrid.slotInDay(stop));
+            if ((c.day(day) & required) != required) return false;
+            s = stop;
+        }
+        return true;
+    }
+
+    /** Drops a doctor's masks (or everyone's for {@code null}) here and on every other replica. */
+    public void invalidate(Long doctorId) {
+        invalidateLocal(doctorId);
+        broadcaster.publish(doctorId);
+    }
+
+    void invalidateLocal(Long doctorId) {
+        if (doctorId == null) compiled.invalidateAll();
+        else compiled.invalidate(doctorId);
+    }
+
+    /** One doctor's rules and the day masks compiled from them so far. */
+    private final class Compiled {
+        final List<ScheduleRule> rules;
+        final boolean open;
+        final boolean hasShifts;
+        final Map<Long, Long> days = new ConcurrentHashMap<>();
+
+        Compiled(List<ScheduleRule> rules) {
+            this.rules = rules;
+            this.open = rules.isEmpty();
+            this.hasShifts = rules.stream().anyMatch(r -> r.getKind() == ScheduleRule.Kind.SHIFT);
+        }
+
+        long day(long epochDay) {
+            if (open) return ALL_DAY;
+            Long mask = days.get(epochDay);
+            if (mask == null) {
+                if (days.size() >= MAX_CACHED_DAYS) days.clear();
+                mask = compile(epochDay);
+                days.put(epochDay, mask);
+            }
+            return mask;
+        }
+
+        // local dates whose rules can reach into the UTC day: offsets are within +-18h and shifts may run
+        // past midnight, so the day before the earliest candidate counts too
+        private long compile(long epochDay) {
+            long first = epochDay * SlotGrid.SLOTS_PER_DAY;
+            long working = hasShifts ? 0 : ALL_DAY;
+            long blocked = 0;
+            LocalDate utcDate = LocalDate.ofEpochDay(epochDay);
+            for (LocalDate d = utcDate.minusDays(2); !d.isAfter(utcDate.plusDays(1)); d = d.plusDays(1)) {
+                for (ScheduleRule r : rules) {
+                    switch (r.getKind()) {
+                        case SHIFT -> {
+                            if (recursOn(r, d)) working |= covered(first, start(d, r.getStartTime()), end(d, r.getStartTime(), r.getEndTime()));
+                        }
+                        case BREAK -> {
+                            if (recursOn(r, d)) blocked |= touched(first, start(d, r.getStartTime()), end(d, r.getStartTime(), r.getEndTime()));
+                        }
+                        case LEAVE -> {
+                            if (d.isBefore(r.getFromDate()) || d.isAfter(r.getToDate())) continue;
+                            blocked |= r.getStartTime() == null
+                                    ? touched(first, start(d, LocalTime.MIDNIGHT), start(d.plusDays(1), LocalTime.MIDNIGHT))
+                                    : touched(first, start(d, r.getStartTime()), end(d, r.getStartTime(), r.getEndTime()));
+                        }
+                    }
+                }
+            }
+            return working & ~blocked;
+        }
+    }
+
+    private static boolean recursOn(ScheduleRule r, LocalDate d) {
+        return r.getDayOfWeek() == d.getDayOfWeek().getValue()
+                && (r.getFromDate() == null || !d.isBefore(r.getFromDate()))
+                && (r.getToDate() == null || !d.isAfter(r.getToDate()));
+    }
+
+    private OffsetDateTime start(LocalDate d, LocalTime t) {
+        return d.atTime(t).atZone(zone).toOffsetDateTime();
+    }
+
+    private OffsetDateTime end(LocalDate d, LocalTime start, LocalTime end) {
+        return (end.isAfter(start) ? d : d.plusDays(1)).atTime(end).atZone(zone).toOffsetDateTime();
+    }
+
+    // slots of the day starting at first that lie entirely within [start, end)
+    private static long covered(long first, OffsetDateTime start, OffsetDateTime end) {
+        return clip(first, SlotGrid.slotCeil(start), SlotGrid.slotOf(end));
+    }
+
+    // slots of the day starting at first that overlap [start, end)
+    private static long touched(long first, OffsetDateTime start, OffsetDateTime end) {
+        return clip(first, SlotGrid.slotOf(start), SlotGrid.slotCeil(end));
+    }
+
+    private static long clip(long first, long from, long to) {
+        long lo = Math.max(from, first) - first, hi = Math.min(to, first + SlotGrid.SLOTS_PER_DAY) - first;
+        return lo >= hi ? 0L : SlotGrid.mask((int) lo, (int) hi);
+    }
+}
@@ -0,0 +1,97 @@
+package org.hms.doctor.perf;
+
+import jakarta.servlet.FilterChain;
+import org.hms.doctor.security.AuthorizationTable;
+import org.hms.doctor.security.RoleBasedAccessFilter;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpMethod;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one authorization decision. {@code table} is the compiled lookup alone, {@code filter}
+ * runs RoleBasedAccessFilter end to end on a mock request, and {@code legacyChecks} replays the
+ * previous per-request logic (lower-casing, Set.of, regex) for comparison.
+ * Add {@code -prof gc} to the JMH arguments to see allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class AuthorizationBenchmark {
+
+    @Param({"reception:POST:/v1/doctors/42/reserve",
+            "admin:POST:/v1/doctors/42/reserve/9001/confirm",
+            "doctor:GET:/v1/doctors/cursor",
+            "anonymous:GET:/v1/patients/17/exists"})
+    public String request;
+
+    private String role, method, path;
+    private AuthorizationTable.Role parsedRole;
+    private RoleBasedAccessFilter filter;
+    private MockHttpServletRequest servletRequest;
+    private MockHttpServletResponse servletResponse;
+    private final FilterChain chain = (req, res) -> {};
+
+    @Setup
+    public void setUp() {
+        String[] parts = request.split(":", 3);
+        role = parts[0];
+        method = parts[1];
+        path = parts[2];
+        parsedRole = AuthorizationTable.Role.of(role);
+        filter = new RoleBasedAccessFilter();
+        servletRequest = new MockHttpServletRequest(method, path);
+        servletRequest.addHeader("X-User-Role", role);
+        servletResponse = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public AuthorizationTable.Decision table() {
+        return RoleBasedAccessFilter.RULES.decide(AuthorizationTable.Role.of(role), method, path);
+    }
+
+    @Benchmark
+    public AuthorizationTable.Decision tableResolvedRole() {
+        return RoleBasedAccessFilter.RULES.decide(parsedRole, method, path);
+    }
+
+    @Benchmark
+    public int filter() throws Exception {
+        // the filter is a OncePerRequestFilter: clear its "already filtered" marker between runs
+        servletRequest.clearAttributes();
+        filter.doFilter(servletRequest, servletResponse, chain);
+        return servletResponse.getStatus();
+    }
+
+    @Benchmark
+    public boolean legacyChecks() {
+        return legacyFilter(role, method, path) && legacyController(role, method, path);
+    }
+
+    // RoleBasedAccessFilter.checkPermission before the table
+    private static boolean legacyFilter(String role, String method, String path) {
+        if ("admin".equalsIgnoreCase(role)) return true;
+        if ("doctor".equalsIgnoreCase(role)) return HttpMethod.GET.matches(method);
+        if ("reception".equalsIgnoreCase(role)) {
+            if (HttpMethod.DELETE.matches(method)) return false;
+            return Set.of("GET", "POST", "PUT").contains(method);
+        }
+        if ("anonymous".equalsIgnoreCase(role)) {
+            return HttpMethod.GET.matches(method) && path.matches("^/v1/patients/\\d+/exists$");
+        }
+        return false;
+    }
+
+    // the header checks the scheduling controllers used to repeat
+    private static boolean legacyController(String role, String method, String path) {
+        if (path.endsWith("/confirm")) return "admin".equals(role);
+        if (path.startsWith("/v1/doctors/") && "POST".equals(method)) return role.equals("admin") || role.equals("reception");
+        return true;
+    }
+}
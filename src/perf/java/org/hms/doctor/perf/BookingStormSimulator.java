@@ -0,0 +1,385 @@
+package org.hms.doctor.perf;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.hms.doctor.model.Doctor;
+import org.hms.doctor.repo.DoctorJdbcRepository;
+import org.hms.doctor.service.SlotGrid;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.web.context.support.ServletRequestHandledEvent;
+
+import java.io.File;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Replays a booking storm against the service running on the embedded profile, over HTTP so the
+ * controllers and admission lanes are part of the measurement. Doctors are drawn from a Zipf
+ * distribution and slots from a narrow window, so most callers fight over a few doctor-days.
+ * <p>
+ * Workload options are {@code key=value} arguments; arguments starting with {@code --} are passed
+ * to the service, e.g. {@code --hms.scheduling.admission.enabled=false}:
+ * <pre>
+ * mvn -Pperf test-compile exec:exec@simulate -Dsim.args="threads=300 seconds=60 zipf=1.2 mix=60:25:15"
+ * </pre>
+ * At the end the database is checked for overlapping active holds and for doctor-days whose
+ * confirmed holds exceed their capacity; the run exits non-zero if either is found.
+ */
+public class BookingStormSimulator {
+
+    enum Op { RESERVE, CONFIRM, RELEASE }
+
+    private record Hold(long doctorId, long holdId, boolean confirmed) {}
+
+    private final int threads;
+    private final int seconds;
+    private final int doctorCount;
+    private final double zipf;
+    private final int[] mix;
+    private final int ttlMinutes;
+    private final int days;
+    private final int slotsPerDay;
+    private final int firstSlotOfDay;
+    private final String resultFile;
+    private final List<String> serviceArgs;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).connectTimeout(Duration.ofSeconds(5)).build();
+    private final String auth = "Basic " + Base64.getEncoder().encodeToString("admin:password".getBytes(StandardCharsets.UTF_8));
+    private final AtomicLong appointmentSeq = new AtomicLong();
+    private final AtomicLong deadlocks = new AtomicLong();
+    private final AtomicLong lockTimeouts = new AtomicLong();
+    private final AtomicLong optimisticFailures = new AtomicLong();
+    private final AtomicLong otherFailures = new AtomicLong();
+
+    private String baseUrl;
+    private List<Long> doctorIds;
+    private double[] zipfCdf;
+    private long windowStartDay;
+
+    BookingStormSimulator(Map<String, String> opts, List<String> serviceArgs) {
+        this.threads = Integer.parseInt(opts.getOrDefault("threads", "200"));
+        this.seconds = Integer.parseInt(opts.getOrDefault("seconds", "30"));
+        this.doctorCount = Integer.parseInt(opts.getOrDefault("doctors", "25"));
+        this.zipf = Double.parseDouble(opts.getOrDefault("zipf", "1.1"));
+        this.mix = Arrays.stream(opts.getOrDefault("mix", "60:25:15").split(":")).mapToInt(Integer::parseInt).toArray();
+        this.ttlMinutes = Integer.parseInt(opts.getOrDefault("ttl", "1"));
+        this.days = Integer.parseInt(opts.getOrDefault("days", "5"));
+        this.slotsPerDay = Integer.parseInt(opts.getOrDefault("slotsPerDay", "16"));
+        this.firstSlotOfDay = Integer.parseInt(opts.getOrDefault("firstSlotOfDay", "16"));
+        this.resultFile = opts.getOrDefault("out", "target/simulator-result.json");
+        this.serviceArgs = serviceArgs;
+        if (mix.length != 3) throw new IllegalArgumentException("mix must be reserve:confirm:release");
+        if (firstSlotOfDay + slotsPerDay > SlotGrid.SLOTS_PER_DAY) throw new IllegalArgumentException("slot window past end of day");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> opts = new LinkedHashMap<>();
+        List<String> serviceArgs = new ArrayList<>();
+        for (String a : args) {
+            if (a.startsWith("--")) serviceArgs.add(a.substring(2));
+            else if (a.contains("=")) opts.put(a.substring(0, a.indexOf('=')), a.substring(a.indexOf('=') + 1));
+            else throw new IllegalArgumentException("expected key=value or --service.property=value: " + a);
+        }
+        int violations = new BookingStormSimulator(opts, serviceArgs).run();
+        System.exit(violations == 0 ? 0 : 1);
+    }
+
+    int run() throws Exception {
+        List<String> props = new ArrayList<>();
+        for (String d : List.of("server.tomcat.threads.max=" + Math.max(200, threads),
+                "spring.datasource.hikari.maximum-pool-size=20")) {
+            String key = d.substring(0, d.indexOf('=') + 1);
+            if (serviceArgs.stream().noneMatch(a -> a.startsWith(key))) props.add(d);
+        }
+        props.addAll(serviceArgs);
+        try (ConfigurableApplicationContext ctx = EmbeddedService.start(props.toArray(String[]::new))) {
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) ctx).getWebServer().getPort();
+            ctx.addApplicationListener((ServletRequestHandledEvent e) -> classify(e.getFailureCause()));
+            prepare(ctx);
+
+            Recorder[] recorders = new Recorder[Op.values().length];
+            for (Op op : Op.values()) recorders[op.ordinal()] = new Recorder();
+            long deadline = System.nanoTime() + seconds * 1_000_000_000L;
+            CountDownLatch done = new CountDownLatch(threads);
+            for (int t = 0; t < threads; t++) {
+                long seed = t * 0x9E3779B97F4A7C15L;
+                new Thread(() -> {
+                    try {
+                        worker(new SplittableRandom(seed), deadline, recorders);
+                    } finally {
+                        done.countDown();
+                    }
+                }, "storm-" + t).start();
+            }
+            done.await();
+
+            Map<String, Object> report = report(ctx, recorders);
+            mapper.writerWithDefaultPrettyPrinter().writeValue(new File(resultFile), report);
+            System.out.println(mapper.writerWithDefaultPrettyPrinter().writeValueAsString(report));
+            System.out.println("Result written to " + resultFile);
+            @SuppressWarnings("unchecked")
+            Map<String, Object> invariants = (Map<String, Object>) report.get("invariants");
+            return ((Number) invariants.get("overlappingActiveHolds")).intValue()
+                    + ((Number) invariants.get("overbookedDoctorDays")).intValue();
+        }
+    }
+
+    private void prepare(ConfigurableApplicationContext ctx) {
+        JdbcTemplate jdbc = ctx.getBean(JdbcTemplate.class);
+        doctorIds = jdbc.queryForList("select doctor_id from doctors where active = true order by doctor_id", Long.class);
+        if (doctorIds.size() < doctorCount) {
+            List<Doctor> extra = new ArrayList<>();
+            for (int i = doctorIds.size(); i < doctorCount; i++) {
+                Doctor d = new Doctor();
+                d.setName("Dr. Storm " + i);
+                d.setEmail("storm" + i + "@example.org");
+                d.setDepartment("Load");
+                d.setActive(true);
+                extra.add(d);
+            }
+            ctx.getBean(DoctorJdbcRepository.class).insertAll(extra);
+            doctorIds = jdbc.queryForList("select doctor_id from doctors where active = true order by doctor_id", Long.class);
+        }
+        doctorIds = doctorIds.subList(0, doctorCount);
+
+        // rank 1 is the most popular doctor
+        zipfCdf = new double[doctorCount];
+        double sum = 0;
+        for (int k = 1; k <= doctorCount; k++) sum += 1 / Math.pow(k, zipf);
+        double acc = 0;
+        for (int k = 1; k <= doctorCount; k++) zipfCdf[k - 1] = (acc += 1 / Math.pow(k, zipf) / sum);
+
+        windowStartDay = SlotGrid.epochDay(SlotGrid.slotCeil(OffsetDateTime.now(ZoneOffset.UTC))) + 1;
+        EmbeddedService.createCapacityRows(ctx, doctorIds, windowStartDay, windowStartDay + days - 1);
+    }
+
+    private long pickDoctor(SplittableRandom rnd) {
+        int i = Arrays.binarySearch(zipfCdf, rnd.nextDouble());
+        if (i < 0) i = -i - 1;
+        return doctorIds.get(Math.min(i, doctorCount - 1));
+    }
+
+    private OffsetDateTime pickSlot(SplittableRandom rnd) {
+        long day = windowStartDay + rnd.nextInt(days);
+        return SlotGrid.startOf(day * SlotGrid.SLOTS_PER_DAY + firstSlotOfDay + rnd.nextInt(slotsPerDay));
+    }
+
+    private void worker(SplittableRandom rnd, long deadline, Recorder[] recorders) {
+        Deque<Hold> mine = new ArrayDeque<>();
+        int total = mix[0] + mix[1] + mix[2];
+        while (System.nanoTime() < deadline) {
+            int roll = rnd.nextInt(total);
+            Op op = roll < mix[0] ? Op.RESERVE : roll < mix[0] + mix[1] ? Op.CONFIRM : Op.RELEASE;
+            if (op == Op.CONFIRM) {
+                // confirm the oldest unconfirmed hold; without one, reserve instead
+                Hold h = mine.stream().filter(x -> !x.confirmed()).findFirst().orElse(null);
+                if (h != null) {
+                    int status = call(recorders[Op.CONFIRM.ordinal()], "/v1/doctors/" + h.doctorId() + "/reserve/" + h.holdId() + "/confirm",
+                            "{\"appointmentId\":" + appointmentSeq.incrementAndGet() + "}");
+                    mine.remove(h);
+                    if (status == 200) mine.addLast(new Hold(h.doctorId(), h.holdId(), true));
+                    continue;
+                }
+                op = Op.RESERVE;
+            }
+            if (op == Op.RELEASE && !mine.isEmpty()) {
+                Hold h = mine.pollFirst();
+                call(recorders[Op.RELEASE.ordinal()], "/v1/doctors/" + h.doctorId() + "/reserve/" + h.holdId() + "/release", "{}");
+                continue;
+            }
+            long doctorId = pickDoctor(rnd);
+            OffsetDateTime start = pickSlot(rnd);
+            String body = "{\"slotStart\":\"" + start + "\",\"slotEnd\":\"" + start.plusMinutes(SlotGrid.SLOT_MINUTES)
+                    + "\",\"ttlMinutes\":" + ttlMinutes + "}";
+            Recorder r = recorders[Op.RESERVE.ordinal()];
+            long t0 = System.nanoTime();
+            try {
+                HttpResponse<String> resp = http.send(post("/v1/doctors/" + doctorId + "/reserve", body), HttpResponse.BodyHandlers.ofString());
+                r.record(resp.statusCode(), System.nanoTime() - t0);
+                if (resp.statusCode() == 201) {
+                    JsonNode json = mapper.readTree(resp.body());
+                    mine.addLast(new Hold(doctorId, json.get("holdId").asLong(), false));
+                }
+            } catch (Exception e) {
+                r.record(-1, System.nanoTime() - t0);
+            }
+        }
+    }
+
+    private int call(Recorder r, String path, String body) {
+        long t0 = System.nanoTime();
+        try {
+            int status = http.send(post(path, body), HttpResponse.BodyHandlers.discarding()).statusCode();
+            r.record(status, System.nanoTime() - t0);
+            return status;
+        } catch (Exception e) {
+            r.record(-1, System.nanoTime() - t0);
+            return -1;
+        }
+    }
+
+    private HttpRequest post(String path, String body) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30))
+                .header("Authorization", auth)
+                .header("X-User-Role", "admin")
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body))
+                .build();
+    }
+
+    // requests that escaped the controllers as exceptions, sorted by lock failure kind
+    private void classify(Throwable failure) {
+        if (failure == null) return;
+        for (Throwable t = failure; t != null; t = t.getCause()) {
+            String msg = String.valueOf(t.getMessage()).toLowerCase();
+            boolean deadlockState = t instanceof SQLException sql && "40001".equals(sql.getSQLState());
+            if (deadlockState || msg.contains("deadlock")) {
+                deadlocks.incrementAndGet();
+                return;
+            }
+        }
+        if (failure instanceof CannotAcquireLockException || failure instanceof PessimisticLockingFailureException) lockTimeouts.incrementAndGet();
+        else if (failure instanceof OptimisticLockingFailureException) optimisticFailures.incrementAndGet();
+        else otherFailures.incrementAndGet();
+    }
+
+    private Map<String, Object> report(ConfigurableApplicationContext ctx, Recorder[] recorders) {
+        Map<String, Object> out = new LinkedHashMap<>();
+        Map<String, Object> workload = new LinkedHashMap<>();
+        workload.put("threads", threads);
+        workload.put("seconds", seconds);
+        workload.put("doctors", doctorCount);
+        workload.put("zipf", zipf);
+        workload.put("mix", mix[0] + ":" + mix[1] + ":" + mix[2]);
+        workload.put("ttlMinutes", ttlMinutes);
+        workload.put("slots", days * slotsPerDay);
+        workload.put("serviceArgs", serviceArgs);
+        out.put("workload", workload);
+
+        long requests = 0, conflicts = 0;
+        Map<String, Object> ops = new LinkedHashMap<>();
+        for (Op op : Op.values()) {
+            Recorder r = recorders[op.ordinal()];
+            long[] lat = r.sortedLatencies();
+            requests += lat.length;
+            conflicts += r.count(409);
+            Map<String, Object> o = new LinkedHashMap<>();
+            o.put("requests", lat.length);
+            o.put("throughputPerSecond", Math.round(lat.length / (double) seconds));
+            o.put("p50Ms", percentileMs(lat, 0.50));
+            o.put("p99Ms", percentileMs(lat, 0.99));
+            o.put("p999Ms", percentileMs(lat, 0.999));
+            o.put("status", r.statusCounts());
+            ops.put(op.name().toLowerCase(), o);
+        }
+        out.put("operations", ops);
+
+        Map<String, Object> totals = new LinkedHashMap<>();
+        totals.put("requests", requests);
+        totals.put("throughputPerSecond", Math.round(requests / (double) seconds));
+        totals.put("conflictRate", requests == 0 ? 0 : Math.round(conflicts * 10000.0 / requests) / 10000.0);
+        totals.put("deadlocks", deadlocks.get());
+        totals.put("lockTimeouts", lockTimeouts.get());
+        totals.put("optimisticLockFailures", optimisticFailures.get());
+        totals.put("otherServerErrors", otherFailures.get());
+        out.put("totals", totals);
+
+        JdbcTemplate jdbc = ctx.getBean(JdbcTemplate.class);
+        Map<String, Object> invariants = new LinkedHashMap<>();
+        invariants.put("overlappingActiveHolds", jdbc.queryForObject("""
+                select count(*) from doctor_slots_hold a join doctor_slots_hold b
+                  on a.doctor_id = b.doctor_id and a.hold_id < b.hold_id
+                 and a.slot_start < b.slot_end and b.slot_start < a.slot_end
+                where a.hold_status in ('HELD','CONFIRMED') and b.hold_status in ('HELD','CONFIRMED')
+                """, Long.class));
+        invariants.put("overbookedDoctorDays", jdbc.queryForObject("""
+                select count(*) from doctor_daily_capacity c
+                where c.booked_count > c.capacity
+                   or (select count(*) from doctor_slots_hold h
+                       where h.doctor_id = c.doctor_id and h.hold_status = 'CONFIRMED'
+                         and cast(h.slot_start as date) = c.doc_date) > c.capacity
+                """, Long.class));
+        out.put("invariants", invariants);
+        return out;
+    }
+
+    private static double percentileMs(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int i = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return Math.round(sorted[Math.max(i, 0)] / 1000.0) / 1000.0;
+    }
+
+    /** Latencies and status codes of one operation; threads append, the report reads after they finish. */
+    static final class Recorder {
+        private static final int[] STATUSES = {200, 201, 400, 409, 429, 500, -1};
+
+        private final AtomicLongArray statusCounts = new AtomicLongArray(STATUSES.length + 1);
+        private final List<long[]> chunks = new ArrayList<>();
+        private final ThreadLocal<long[]> current = new ThreadLocal<>();
+        private final ThreadLocal<int[]> fill = ThreadLocal.withInitial(() -> new int[1]);
+
+        void record(int status, long nanos) {
+            int slot = STATUSES.length;
+            for (int i = 0; i < STATUSES.length; i++) if (STATUSES[i] == status) slot = i;
+            statusCounts.incrementAndGet(slot);
+            long[] buf = current.get();
+            int[] n = fill.get();
+            if (buf == null || n[0] == buf.length) {
+                buf = new long[4096];
+                Arrays.fill(buf, -1);
+                current.set(buf);
+                n[0] = 0;
+                synchronized (chunks) {
+                    chunks.add(buf);
+                }
+            }
+            buf[n[0]++] = nanos;
+        }
+
+        long count(int status) {
+            for (int i = 0; i < STATUSES.length; i++) if (STATUSES[i] == status) return statusCounts.get(i);
+            return 0;
+        }
+
+        Map<String, Long> statusCounts() {
+            Map<String, Long> m = new LinkedHashMap<>();
+            for (int i = 0; i < STATUSES.length; i++) {
+                if (statusCounts.get(i) > 0) m.put(STATUSES[i] == -1 ? "io_error" : Integer.toString(STATUSES[i]), statusCounts.get(i));
+            }
+            if (statusCounts.get(STATUSES.length) > 0) m.put("other", statusCounts.get(STATUSES.length));
+            return m;
+        }
+
+        long[] sortedLatencies() {
+            synchronized (chunks) {
+                return chunks.stream().flatMapToLong(Arrays::stream).filter(v -> v >= 0).sorted().toArray();
+            }
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.hms.doctor.perf;
+
+import org.hms.doctor.service.CapacityLedger;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Confirm-style capacity booking on one hot doctor-day: the conditional single-statement
+ * UPDATE against SELECT ... FOR UPDATE + save, each in its own transaction.
+ * Run with different -t values to see how each path scales under contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+@Threads(8)
+public class CapacityContentionBenchmark {
+    private static final Long DOCTOR_ID = 1L;
+
+    private ConfigurableApplicationContext ctx;
+    private CapacityLedger ledger;
+    private TransactionTemplate tx;
+    private LocalDate day;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = EmbeddedService.start();
+        ledger = ctx.getBean(CapacityLedger.class);
+        tx = ctx.getBean(TransactionTemplate.class);
+        day = LocalDate.now().plusDays(7);
+        tx.executeWithoutResult(s -> ledger.bookAtomic(DOCTOR_ID, day));
+        // never run out of capacity during the measurement
+        ctx.getBean(JdbcTemplate.class).update(
+                "update doctor_daily_capacity set capacity = ? where doctor_id = ? and doc_date = ?", Integer.MAX_VALUE, DOCTOR_ID, day);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public Boolean atomicConditionalUpdate() {
+        return tx.execute(s -> ledger.bookAtomic(DOCTOR_ID, day));
+    }
+
+    @Benchmark
+    public Boolean selectForUpdateThenSave() {
+        return tx.execute(s -> ledger.bookLocking(DOCTOR_ID, day));
+    }
+}
@@ -0,0 +1,46 @@
+package org.hms.doctor.perf;
+
+import org.hms.doctor.DoctorServiceApplication;
+import org.hms.doctor.service.SchedulingService;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/** Boots the service on the in-memory "embedded" profile for benchmarks. */
+final class EmbeddedService {
+    private EmbeddedService() {}
+
+    static ConfigurableApplicationContext start(String... properties) {
+        List<String> props = new ArrayList<>(List.of(
+                "server.port=0",
+                "spring.main.banner-mode=off",
+                "logging.level.root=WARN",
+                // separate database per context so benchmarks never share state
+                "spring.datasource.url=jdbc:h2:mem:perf" + System.nanoTime() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1;LOCK_TIMEOUT=10000"));
+        props.addAll(List.of(properties));
+        // passed as command-line arguments so they win over application-embedded.yml
+        return new SpringApplicationBuilder(DoctorServiceApplication.class)
+                .profiles("embedded")
+                .run(props.stream().map(p -> "--" + p).toArray(String[]::new));
+    }
+
+    /**
+     * Inserts a capacity row for every doctor and epoch day in [firstDay, lastDay]. H2, unlike MySQL,
+     * fails when two ON DUPLICATE KEY UPDATE inserts of the same row race, so concurrent runs must not
+     * depend on confirm creating the row.
+     */
+    static void createCapacityRows(ConfigurableApplicationContext ctx, List<Long> doctorIds, long firstDay, long lastDay) {
+        List<Object[]> rows = new ArrayList<>();
+        for (Long doctorId : doctorIds) {
+            for (long day = firstDay; day <= lastDay; day++) {
+                rows.add(new Object[]{LocalDate.ofEpochDay(day), doctorId, SchedulingService.DEFAULT_DAILY_CAPACITY});
+            }
+        }
+        ctx.getBean(JdbcTemplate.class).batchUpdate(
+                "insert into doctor_daily_capacity (doc_date, doctor_id, booked_count, capacity, version) values (?, ?, 0, ?, 0)", rows);
+    }
+}
@@ -0,0 +1,92 @@
+package org.hms.doctor.perf;
+
+import org.hms.doctor.model.HoldStatus;
+import org.hms.doctor.repo.SlotHoldRepository;
+import org.hms.doctor.service.SlotGrid;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The reserve path's locking overlap query for one doctor with 2000 live holds, as {@code history}
+ * unarchived rows pile up in doctor_slots_hold (half RELEASED in the same 60 days, half CONFIRMED in the
+ * past two years). {@code index} compares the status-aware idx_hold_slots with an index shaped like the
+ * original one, (doctorId, slotFrom, slotTo).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class HoldHistoryBenchmark {
+    private static final Long DOCTOR_ID = 1L;
+    private static final int DAYS = 60;
+    private static final int LIVE = 2000;
+    private static final int CHUNK = 10_000;
+
+    @Param({"0", "100000", "1000000"})
+    public int history;
+
+    @Param({"status_aware", "legacy"})
+    public String index;
+
+    private ConfigurableApplicationContext ctx;
+    private SlotHoldRepository holdRepo;
+    private TransactionTemplate tx;
+    private long firstSlot;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = EmbeddedService.start("hms.scheduling.occupancy-index.mode=DATABASE", "hms.scheduling.expiry.enabled=false",
+                "hms.scheduling.archive.enabled=false");
+        holdRepo = ctx.getBean(SlotHoldRepository.class);
+        tx = ctx.getBean(TransactionTemplate.class);
+        JdbcTemplate jdbc = ctx.getBean(JdbcTemplate.class);
+        if ("legacy".equals(index)) {
+            jdbc.execute("drop index idx_hold_slots");
+            jdbc.execute("drop index idx_hold_status_slot");
+            jdbc.execute("create index idx_doctor_slot on doctor_slots_hold (doctor_id, slot_from, slot_to)");
+        }
+        firstSlot = SlotGrid.slotCeil(OffsetDateTime.now(ZoneOffset.UTC).plusDays(1));
+        long pastSlot = firstSlot - 2L * 365 * SlotGrid.SLOTS_PER_DAY;
+
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        insert(jdbc, LIVE, i -> SlotGrid.startOf(firstSlot + rnd.nextInt(DAYS * SlotGrid.SLOTS_PER_DAY)), "HELD");
+        insert(jdbc, history / 2, i -> SlotGrid.startOf(firstSlot + rnd.nextInt(DAYS * SlotGrid.SLOTS_PER_DAY)), "RELEASED");
+        insert(jdbc, history - history / 2, i -> SlotGrid.startOf(pastSlot + rnd.nextInt(365 * SlotGrid.SLOTS_PER_DAY)), "CONFIRMED");
+        jdbc.execute("analyze");
+    }
+
+    private static void insert(JdbcTemplate jdbc, int count, java.util.function.IntFunction<OffsetDateTime> start, String status) {
+        for (int from = 0; from < count; from += CHUNK) {
+            List<Object[]> rows = new ArrayList<>(CHUNK);
+            for (int i = from; i < Math.min(count, from + CHUNK); i++) {
+                OffsetDateTime s = start.apply(i);
+                long slot = SlotGrid.slotOf(s);
+                rows.add(new Object[]{DOCTOR_ID, s, s.plusMinutes(SlotGrid.SLOT_MINUTES), slot, slot + 1, status, HoldStatus.codeOf(status)});
+            }
+            jdbc.batchUpdate("insert into doctor_slots_hold (doctor_id, slot_start, slot_end, slot_from, slot_to, hold_status, status_code, version)"
+                    + " values (?, ?, ?, ?, ?, ?, ?, 0)", rows);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public Boolean overlapForUpdate() {
+        OffsetDateTime start = SlotGrid.startOf(firstSlot + ThreadLocalRandom.current().nextInt(DAYS * SlotGrid.SLOTS_PER_DAY));
+        return tx.execute(s -> holdRepo.findOverlappingForUpdate(DOCTOR_ID, start, start.plusMinutes(60)).isEmpty());
+    }
+}
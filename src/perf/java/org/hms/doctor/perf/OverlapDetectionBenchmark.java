@@ -0,0 +1,79 @@
+package org.hms.doctor.perf;
+
+import org.hms.doctor.repo.SlotHoldRepository;
+import org.hms.doctor.service.SlotGrid;
+import org.hms.doctor.service.SlotOccupancyIndex;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * "Is this slot free?" for a doctor with {@code holds} active holds spread over the next 60 days:
+ * the overlap query against the embedded database versus the in-memory occupancy index.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class OverlapDetectionBenchmark {
+    private static final Long DOCTOR_ID = 1L;
+    private static final int DAYS = 60;
+
+    @Param({"100", "2000"})
+    public int holds;
+
+    private ConfigurableApplicationContext ctx;
+    private SlotHoldRepository holdRepo;
+    private SlotOccupancyIndex index;
+    private long firstSlot;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = EmbeddedService.start("hms.scheduling.occupancy-index.mode=INDEX", "hms.scheduling.expiry.enabled=false");
+        holdRepo = ctx.getBean(SlotHoldRepository.class);
+        index = ctx.getBean(SlotOccupancyIndex.class);
+        firstSlot = SlotGrid.slotCeil(OffsetDateTime.now(ZoneOffset.UTC).plusDays(1));
+
+        List<Object[]> rows = new ArrayList<>(holds);
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        for (int i = 0; i < holds; i++) {
+            OffsetDateTime start = SlotGrid.startOf(firstSlot + rnd.nextInt(DAYS * SlotGrid.SLOTS_PER_DAY));
+            long slot = SlotGrid.slotOf(start);
+            rows.add(new Object[]{DOCTOR_ID, start, start.plusMinutes(SlotGrid.SLOT_MINUTES), slot, slot + 1, start.plusDays(DAYS + 1)});
+        }
+        ctx.getBean(JdbcTemplate.class).batchUpdate(
+                "insert into doctor_slots_hold (doctor_id, slot_start, slot_end, slot_from, slot_to, hold_status, status_code, expires_at, version)"
+                        + " values (?, ?, ?, ?, ?, 'HELD', 1, ?, 0)", rows);
+        index.rebuild();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    private OffsetDateTime randomStart() {
+        return SlotGrid.startOf(firstSlot + ThreadLocalRandom.current().nextInt(DAYS * SlotGrid.SLOTS_PER_DAY));
+    }
+
+    @Benchmark
+    public boolean databaseOverlapQuery() {
+        OffsetDateTime start = randomStart();
+        return holdRepo.findOverlapping(DOCTOR_ID, start, start.plusMinutes(60)).isEmpty();
+    }
+
+    @Benchmark
+    public boolean occupancyIndex() {
+        OffsetDateTime start = randomStart();
+        return index.isFree(DOCTOR_ID, start, start.plusMinutes(60));
+    }
+}
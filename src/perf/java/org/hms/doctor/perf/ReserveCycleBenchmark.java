@@ -0,0 +1,120 @@
+package org.hms.doctor.perf;
+
+import org.hms.doctor.dto.AvailabilityRequest;
+import org.hms.doctor.dto.ConfirmRequest;
+import org.hms.doctor.dto.ReserveRequest;
+import org.hms.doctor.dto.ReserveResponse;
+import org.hms.doctor.service.SchedulingService;
+import org.hms.doctor.service.SlotGrid;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One booking end to end as the API drives it: availability check, reserve, confirm, release.
+ * {@code occupancyMode} switches the availability answer between the overlap query (DATABASE) and
+ * the in-memory index (INDEX); reserve/confirm/release hit the embedded database either way.
+ * Every thread books its own slots, so failures would mean a bug rather than expected contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 3)
+@Measurement(iterations = 3, time = 5)
+@Fork(1)
+public class ReserveCycleBenchmark {
+    private static final int MAX_THREADS = 64;
+    private static final int SLOTS_PER_THREAD = 1000;
+
+    @Param({"DATABASE", "INDEX"})
+    public String occupancyMode;
+
+    private ConfigurableApplicationContext ctx;
+    private SchedulingService svc;
+    private List<Long> doctorIds;
+    private long firstSlot;
+    private final AtomicInteger threadSeq = new AtomicInteger();
+    private final AtomicInteger appointmentSeq = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = EmbeddedService.start("hms.scheduling.occupancy-index.mode=" + occupancyMode, "hms.scheduling.expiry.enabled=false");
+        svc = ctx.getBean(SchedulingService.class);
+        JdbcTemplate jdbc = ctx.getBean(JdbcTemplate.class);
+        doctorIds = jdbc.queryForList("select doctor_id from doctors order by doctor_id", Long.class);
+        if (doctorIds.isEmpty()) throw new IllegalStateException("seed roster not loaded");
+        firstSlot = SlotGrid.slotCeil(OffsetDateTime.now(ZoneOffset.UTC).plusDays(1));
+
+        // steady-state path only: the doctor-day capacity rows already exist
+        EmbeddedService.createCapacityRows(ctx, doctorIds, SlotGrid.epochDay(firstSlot),
+                SlotGrid.epochDay(firstSlot + (long) SLOTS_PER_THREAD * MAX_THREADS));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Caller {
+        int thread;
+        Long doctorId;
+        int next;
+
+        @Setup(Level.Trial)
+        public void setUp(ReserveCycleBenchmark b) {
+            thread = b.threadSeq.getAndIncrement();
+            doctorId = b.doctorIds.get(thread % b.doctorIds.size());
+        }
+
+        // threads sharing a doctor use interleaved slots, so they never collide
+        OffsetDateTime nextStart(long firstSlot) {
+            int i = next++ % SLOTS_PER_THREAD;
+            return SlotGrid.startOf(firstSlot + (long) i * MAX_THREADS + thread);
+        }
+    }
+
+    private Object cycle(Caller c) {
+        OffsetDateTime start = c.nextStart(firstSlot);
+        OffsetDateTime end = start.plusMinutes(SlotGrid.SLOT_MINUTES);
+        AvailabilityRequest check = new AvailabilityRequest();
+        check.slotStart = start;
+        check.slotEnd = end;
+        if (!svc.isAvailable(c.doctorId, check)) throw new IllegalStateException("slot unexpectedly taken");
+
+        ReserveRequest reserve = new ReserveRequest();
+        reserve.slotStart = start;
+        reserve.slotEnd = end;
+        ReserveResponse held = svc.reserve(c.doctorId, reserve);
+
+        ConfirmRequest confirm = new ConfirmRequest();
+        confirm.appointmentId = (long) appointmentSeq.incrementAndGet();
+        svc.confirm(c.doctorId, held.holdId, confirm);
+        svc.release(c.doctorId, held.holdId);
+        return held;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Object cycle1Thread(Caller c) {
+        return cycle(c);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public Object cycle8Threads(Caller c) {
+        return cycle(c);
+    }
+
+    @Benchmark
+    @Threads(MAX_THREADS)
+    public Object cycle64Threads(Caller c) {
+        return cycle(c);
+    }
+}
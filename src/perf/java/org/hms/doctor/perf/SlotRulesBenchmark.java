@@ -0,0 +1,48 @@
+package org.hms.doctor.perf;
+
+import org.hms.doctor.service.SlotRules;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+/** The per-request slot validation done before any database work; SlotRules is stateless, no Spring context needed. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 1)
+@Measurement(iterations = 3, time = 2)
+@Fork(1)
+public class SlotRulesBenchmark {
+    private OffsetDateTime alignedStart, alignedEnd, misalignedStart, soon;
+
+    @Setup
+    public void setUp() {
+        OffsetDateTime base = OffsetDateTime.now(ZoneOffset.UTC).plusDays(3).withHour(10).withMinute(0).withSecond(0).withNano(0);
+        alignedStart = base;
+        alignedEnd = base.plusMinutes(60);
+        misalignedStart = base.plusMinutes(7);
+        soon = OffsetDateTime.now(ZoneOffset.UTC).plusMinutes(30);
+    }
+
+    @Benchmark
+    public boolean isAlignedAligned() {
+        return SlotRules.isAligned(alignedStart, alignedEnd);
+    }
+
+    @Benchmark
+    public boolean isAlignedMisaligned() {
+        return SlotRules.isAligned(misalignedStart, alignedEnd);
+    }
+
+    @Benchmark
+    public boolean isWithinLeadTimeFarAhead() {
+        return SlotRules.isWithinLeadTime(alignedStart);
+    }
+
+    @Benchmark
+    public boolean isWithinLeadTimeTooSoon() {
+        return SlotRules.isWithinLeadTime(soon);
+    }
+}
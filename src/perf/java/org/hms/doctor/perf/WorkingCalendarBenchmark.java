@@ -0,0 +1,88 @@
+package org.hms.doctor.perf;
+
+import org.hms.doctor.model.ScheduleRule;
+import org.hms.doctor.service.SlotGrid;
+import org.hms.doctor.service.SlotOccupancyIndex;
+import org.hms.doctor.service.WorkingCalendar;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The working-hours check on the availability path for a random hour in the next 60 days: {@code template}
+ * none (always open) or a weekday 09:00-17:00 shift with a lunch break and a week of leave, in Asia/Kolkata.
+ * {@code availability} adds the occupancy index test it is combined with.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 3)
+@Fork(1)
+public class WorkingCalendarBenchmark {
+    private static final Long DOCTOR_ID = 1L;
+    private static final int DAYS = 60;
+
+    @Param({"none", "weekly"})
+    public String template;
+
+    private ConfigurableApplicationContext ctx;
+    private WorkingCalendar calendar;
+    private SlotOccupancyIndex index;
+    private long firstSlot;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        ctx = EmbeddedService.start("hms.scheduling.expiry.enabled=false", "hms.scheduling.calendar.zone=Asia/Kolkata");
+        calendar = ctx.getBean(WorkingCalendar.class);
+        index = ctx.getBean(SlotOccupancyIndex.class);
+        firstSlot = SlotGrid.slotCeil(OffsetDateTime.now(ZoneOffset.UTC).plusDays(1));
+        if ("weekly".equals(template)) {
+            List<ScheduleRule> rules = new ArrayList<>();
+            for (int day = 1; day <= 5; day++) {
+                rules.add(rule(ScheduleRule.Kind.SHIFT, day, LocalTime.of(9, 0), LocalTime.of(17, 0)));
+                rules.add(rule(ScheduleRule.Kind.BREAK, day, LocalTime.of(13, 0), LocalTime.of(14, 0)));
+            }
+            ScheduleRule leave = rule(ScheduleRule.Kind.LEAVE, null, null, null);
+            leave.setFromDate(LocalDate.now().plusDays(20));
+            leave.setToDate(LocalDate.now().plusDays(26));
+            rules.add(leave);
+            calendar.replaceTemplate(DOCTOR_ID, rules);
+        }
+    }
+
+    private static ScheduleRule rule(ScheduleRule.Kind kind, Integer day, LocalTime start, LocalTime end) {
+        ScheduleRule r = new ScheduleRule();
+        r.setKind(kind);
+        r.setDayOfWeek(day);
+        r.setStartTime(start);
+        r.setEndTime(end);
+        return r;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        ctx.close();
+    }
+
+    @Benchmark
+    public boolean onSchedule() {
+        long slot = firstSlot + ThreadLocalRandom.current().nextInt(DAYS * SlotGrid.SLOTS_PER_DAY);
+        return calendar.isWorking(DOCTOR_ID, slot, slot + 2);
+    }
+
+    @Benchmark
+    public boolean availability() {
+        long slot = firstSlot + ThreadLocalRandom.current().nextInt(DAYS * SlotGrid.SLOTS_PER_DAY);
+        OffsetDateTime start = SlotGrid.startOf(slot);
+        return calendar.isWorking(DOCTOR_ID, slot, slot + 2) && index.isFree(DOCTOR_ID, start, start.plusMinutes(60));
+    }
+}
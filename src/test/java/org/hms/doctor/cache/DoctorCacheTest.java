@@ -0,0 +1,127 @@
+package org.hms.doctor.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hms.doctor.config.ReadWriteRoutingDataSource;
+import org.hms.doctor.model.Doctor;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class DoctorCacheTest {
+    private final LoopbackInvalidationBroadcaster broadcaster = new LoopbackInvalidationBroadcaster();
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    @Test
+    void profileIsLoadedOnceUntilInvalidated() {
+        DoctorCache cache = cache(Duration.ZERO);
+        AtomicInteger loads = new AtomicInteger();
+        cache.getDoctor(1L, () -> load(loads, 1L));
+        cache.getDoctor(1L, () -> load(loads, 1L));
+        assertEquals(1, loads.get());
+
+        cache.invalidate(1L);
+        cache.getDoctor(1L, () -> load(loads, 1L));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void missesAreNotCached() {
+        DoctorCache cache = cache(Duration.ZERO);
+        AtomicInteger loads = new AtomicInteger();
+        assertTrue(cache.getDoctor(2L, () -> { loads.incrementAndGet(); return Optional.empty(); }).isEmpty());
+        cache.getDoctor(2L, () -> load(loads, 2L));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void invalidationFromAnotherReplicaDropsTheDoctorAndEveryPage() {
+        DoctorCache cache = cache(Duration.ZERO);
+        AtomicInteger loads = new AtomicInteger();
+        AtomicInteger pageLoads = new AtomicInteger();
+        cache.getDoctor(1L, () -> load(loads, 1L));
+        cache.getDoctor(2L, () -> load(loads, 2L));
+        cache.getPage("Cardiology", PageRequest.of(0, 20), () -> page(pageLoads));
+
+        // what the JDBC broadcaster's poller does with another replica's row
+        broadcaster.publish(1L);
+        cache.getDoctor(1L, () -> load(loads, 1L));
+        cache.getDoctor(2L, () -> load(loads, 2L));
+        cache.getPage("cardiology", PageRequest.of(0, 20), () -> page(pageLoads));
+        assertEquals(3, loads.get());
+        assertEquals(2, pageLoads.get());
+
+        broadcaster.publish(null);
+        cache.getDoctor(2L, () -> load(loads, 2L));
+        assertEquals(4, loads.get());
+    }
+
+    @Test
+    void loadsRightAfterAnInvalidationReadThePrimary() {
+        DoctorCache cache = cache(Duration.ofMinutes(1));
+        Probe router = new Probe();
+        cache.invalidate(1L);
+        List<ReadWriteRoutingDataSource.Target> targets = new ArrayList<>();
+        cache.getDoctor(1L, () -> {
+            targets.add(router.target());
+            return Optional.of(doctor(1L));
+        });
+        assertEquals(List.of(ReadWriteRoutingDataSource.Target.PRIMARY), targets);
+
+        DoctorCache settled = cache(Duration.ZERO);
+        settled.getDoctor(1L, () -> {
+            targets.add(router.target());
+            return Optional.of(doctor(1L));
+        });
+        assertEquals(ReadWriteRoutingDataSource.Target.REPLICA, targets.get(1));
+    }
+
+    private DoctorCache cache(Duration readYourWrites) {
+        return new DoctorCache(broadcaster, meters, 100, 100, Duration.ofMinutes(5), readYourWrites);
+    }
+
+    private static Optional<Doctor> load(AtomicInteger loads, Long id) {
+        loads.incrementAndGet();
+        return Optional.of(doctor(id));
+    }
+
+    private static Page<Doctor> page(AtomicInteger loads) {
+        loads.incrementAndGet();
+        return new PageImpl<>(List.of(doctor(1L)));
+    }
+
+    private static Doctor doctor(Long id) {
+        Doctor d = new Doctor();
+        d.setDoctorId(id);
+        d.setName("Dr " + id);
+        return d;
+    }
+
+    /** Asks the router where a read-only transaction on this thread would go. */
+    private final class Probe extends ReadWriteRoutingDataSource {
+        Probe() {
+            super(mock(DataSource.class), mock(DataSource.class), meters);
+        }
+
+        Target target() {
+            TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+            try {
+                return (Target) determineCurrentLookupKey();
+            } finally {
+                TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+            }
+        }
+    }
+}
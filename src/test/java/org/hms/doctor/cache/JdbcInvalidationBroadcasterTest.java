@@ -0,0 +1,96 @@
+package org.hms.doctor.cache;
+
+import org.hms.doctor.model.CacheInvalidationEvent;
+import org.hms.doctor.repo.CacheInvalidationRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class JdbcInvalidationBroadcasterTest {
+    // the committed rows of doctor_cache_invalidation
+    private final List<CacheInvalidationEvent> table = new ArrayList<>();
+    private final CacheInvalidationRepository repo = mock(CacheInvalidationRepository.class);
+    private final JdbcInvalidationBroadcaster broadcaster = new JdbcInvalidationBroadcaster(repo, Duration.ofHours(1), Duration.ofSeconds(2));
+    private final List<Long> received = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(repo.findMaxId()).thenAnswer(i -> table.stream().mapToLong(CacheInvalidationEvent::getId).max().orElse(0));
+        when(repo.findTop500ByIdGreaterThanOrderById(anyLong())).thenAnswer(i -> {
+            long after = i.getArgument(0);
+            return table.stream().filter(e -> e.getId() > after)
+                    .sorted((a, b) -> Long.compare(a.getId(), b.getId())).limit(500).toList();
+        });
+        table.add(row(10, "other", 1L, Duration.ofMinutes(1)));
+        broadcaster.subscribe(received::add);
+        broadcaster.start();
+    }
+
+    @Test
+    void deliversRowsFromOtherReplicasInOrder() {
+        table.add(row(11, "other", 2L, Duration.ZERO));
+        table.add(row(12, "other", null, Duration.ZERO));
+        broadcaster.poll();
+        assertEquals(Arrays.asList(2L, null), received);
+        broadcaster.poll();
+        assertEquals(2, received.size());
+    }
+
+    @Test
+    void gapIsWaitedOnWithinGrace() {
+        table.add(row(12, "other", 3L, Duration.ZERO));
+        broadcaster.poll();
+        assertEquals(List.of(), received);
+
+        table.add(row(11, "other", 2L, Duration.ZERO));
+        broadcaster.poll();
+        assertEquals(List.of(2L, 3L), received);
+    }
+
+    @Test
+    void gapOlderThanGraceIsPassed() {
+        table.add(row(12, "other", 3L, Duration.ofSeconds(5)));
+        broadcaster.poll();
+        assertEquals(List.of(3L), received);
+    }
+
+    @Test
+    void ownRowsAreNotDeliveredBack() {
+        when(repo.save(any())).thenAnswer(i -> {
+            CacheInvalidationEvent e = i.getArgument(0);
+            e.setId(11L);
+            table.add(e);
+            return e;
+        });
+        broadcaster.publish(4L);
+        table.add(row(12, "other", 5L, Duration.ZERO));
+        broadcaster.poll();
+        assertEquals(List.of(5L), received);
+    }
+
+    @Test
+    void failedPurgeIsLoggedAndRetriedLater() {
+        when(repo.deleteOlderThan(any())).thenThrow(new IllegalStateException("database down"));
+        broadcaster.purge();
+    }
+
+    private static CacheInvalidationEvent row(long id, String origin, Long doctorId, Duration age) {
+        CacheInvalidationEvent e = new CacheInvalidationEvent();
+        e.setId(id);
+        e.setOrigin(origin);
+        e.setDoctorId(doctorId);
+        e.setCreatedAt(OffsetDateTime.now().minus(age));
+        return e;
+    }
+}
@@ -0,0 +1,69 @@
+package org.hms.doctor.importer;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvReaderTest {
+
+    @Test
+    void plainFieldsAndEmptyTrailingField() throws IOException {
+        assertEquals(List.of(List.of("a", "b", ""), List.of("c", "d", "e")), records("a,b,\nc,d,e"));
+    }
+
+    @Test
+    void quotedFieldKeepsCommasAndDoubledQuotes() throws IOException {
+        assertEquals(List.of(List.of("Dr. \"Bob\", MD", "x")), records("\"Dr. \"\"Bob\"\", MD\",x\n"));
+    }
+
+    @Test
+    void quotedFieldSpansLinesAndRecordLineTracksStart() throws IOException {
+        try (CsvReader r = new CsvReader(new StringReader("a,\"line1\nline2\"\nb,c\n"))) {
+            assertEquals(List.of("a", "line1\nline2"), r.next());
+            assertEquals(1, r.getRecordLine());
+            assertEquals(List.of("b", "c"), r.next());
+            assertEquals(3, r.getRecordLine());
+        }
+    }
+
+    @Test
+    void crlfEndsRecordsAndBlankLinesAreSkipped() throws IOException {
+        try (CsvReader r = new CsvReader(new StringReader("a,b\r\n\r\n\r\nc,d\r\n"))) {
+            assertEquals(List.of("a", "b"), r.next());
+            assertEquals(List.of("c", "d"), r.next());
+            assertEquals(4, r.getRecordLine());
+            assertEquals(null, r.next());
+        }
+    }
+
+    @Test
+    void crlfSplitAcrossBufferRefill() throws IOException {
+        // the reader buffers 8192 chars; put the \r last in the first fill and the \n first in the next
+        String first = "x".repeat(8191);
+        assertEquals(List.of(List.of(first), List.of("y")), records(first + "\r\ny"));
+    }
+
+    @Test
+    void unterminatedQuoteFails() {
+        assertThrows(IOException.class, () -> records("a,\"never closed\n"));
+    }
+
+    @Test
+    void oversizedFieldFails() {
+        assertThrows(IOException.class, () -> records("x".repeat(64 * 1024 + 1)));
+    }
+
+    private static List<List<String>> records(String csv) throws IOException {
+        List<List<String>> out = new ArrayList<>();
+        try (CsvReader r = new CsvReader(new StringReader(csv))) {
+            for (List<String> rec; (rec = r.next()) != null; ) out.add(rec);
+        }
+        return out;
+    }
+}
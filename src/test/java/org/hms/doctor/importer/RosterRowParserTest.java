@@ -0,0 +1,55 @@
+package org.hms.doctor.importer;
+
+import org.hms.doctor.model.Doctor;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RosterRowParserTest {
+
+    @Test
+    void headerDetection() {
+        assertTrue(RosterRowParser.isHeader(List.of("id", "Name", "EMAIL", "phone", "department")));
+        assertFalse(RosterRowParser.isHeader(List.of("Ann", "ann@x.org", "1", "Cardiology", "")));
+    }
+
+    @Test
+    void rowWithIdAndCreatedAt() {
+        Doctor d = RosterRowParser.parse(List.of("42", " Ann ", "ann@x.org", "", "Cardiology", "Echo", "2024-01-02 03:04:05"));
+        assertEquals(42L, d.getDoctorId());
+        assertEquals("Ann", d.getName());
+        assertNull(d.getPhone());
+        assertEquals("Echo", d.getSpecialization());
+        assertEquals(OffsetDateTime.of(2024, 1, 2, 3, 4, 5, 0, ZoneOffset.UTC), d.getCreatedAt());
+    }
+
+    @Test
+    void rowWithoutIdAndUnparseableCreatedAt() {
+        Doctor d = RosterRowParser.parse(List.of("Ann", "ann@x.org", "555", "Cardiology", "", "yesterday"));
+        assertNull(d.getDoctorId());
+        assertEquals("Cardiology", d.getDepartment());
+        assertNull(d.getSpecialization());
+        assertNotNull(d.getCreatedAt());
+    }
+
+    @Test
+    void tooFewColumns() {
+        assertThrows(IllegalArgumentException.class, () -> RosterRowParser.parse(List.of("Ann", "ann@x.org", "555", "Cardiology")));
+        assertThrows(IllegalArgumentException.class, () -> RosterRowParser.parse(List.of("42", "Ann", "ann@x.org", "555", "Cardiology")));
+    }
+
+    @Test
+    void missingNameOrDepartment() {
+        assertThrows(IllegalArgumentException.class, () -> RosterRowParser.parse(List.of(" ", "ann@x.org", "555", "Cardiology", "")));
+        assertThrows(IllegalArgumentException.class, () -> RosterRowParser.parse(List.of("Ann", "ann@x.org", "555", "", "")));
+    }
+}
@@ -0,0 +1,209 @@
+package org.hms.doctor.service;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hms.doctor.dto.ConfirmRequest;
+import org.hms.doctor.model.HoldStatus;
+import org.hms.doctor.model.SlotHold;
+import org.hms.doctor.repo.SlotEventJdbcRepository;
+import org.hms.doctor.repo.SlotHoldJdbcRepository;
+import org.hms.doctor.repo.SlotHoldRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionSystemException;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ConfirmPipelineTest {
+    private static final Long DOCTOR = 7L;
+    private static final OffsetDateTime NINE = OffsetDateTime.of(2030, 3, 4, 9, 0, 0, 0, ZoneOffset.UTC);
+    private static final LocalDate DAY = NINE.toLocalDate();
+
+    private final SchedulingService scheduling = mock(SchedulingService.class);
+    private final SlotHoldRepository holdRepo = mock(SlotHoldRepository.class);
+    private final SlotHoldJdbcRepository holdJdbc = mock(SlotHoldJdbcRepository.class);
+    private final CapacityLedger ledger = mock(CapacityLedger.class);
+    private final SlotEventJdbcRepository outbox = mock(SlotEventJdbcRepository.class);
+    private final SlotOccupancyIndex occupancy = new SlotOccupancyIndex(null, SlotOccupancyIndex.Mode.INDEX);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final Transactions transactions = new Transactions();
+    private final Map<Long, SlotHold> table = new HashMap<>();
+    private ConfirmPipeline pipeline;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        if (pipeline != null) pipeline.stop();
+    }
+
+    @Test
+    void groupBeyondFreeCapacityConfirmsWhatFits() throws Exception {
+        hold(1);
+        hold(2);
+        hold(3);
+        when(ledger.lockFree(DOCTOR, DAY)).thenReturn(2);
+        lockedAs(Map.of(1L, HoldStatus.HELD.code, 2L, HoldStatus.HELD.code, 3L, HoldStatus.HELD.code));
+
+        List<CompletableFuture<SlotHold>> results = submitAll(1, 2, 3);
+
+        assertEquals("CONFIRMED", results.get(0).get(1, TimeUnit.SECONDS).getHoldStatus());
+        assertEquals(1002L, results.get(1).get(1, TimeUnit.SECONDS).getAppointmentId());
+        assertEquals("daily capacity reached at confirm", cause(results.get(2)).getMessage());
+        verify(ledger).bookLocked(DOCTOR, DAY, 2);
+        verify(holdJdbc).confirmAll(List.of(1L, 2L), List.of(1001L, 1002L));
+        verify(scheduling, never()).confirm(anyLong(), anyLong(), any());
+        assertFalse(occupancy.isFree(DOCTOR, NINE.plusMinutes(30), NINE.plusMinutes(60)));
+        assertTrue(occupancy.isFree(DOCTOR, NINE.plusMinutes(90), NINE.plusMinutes(120)));
+        assertEquals(3, timed());
+    }
+
+    @Test
+    void holdConfirmedTwiceInOneBatchGoesOneByOneTheSecondTime() throws Exception {
+        hold(1);
+        when(ledger.lockFree(DOCTOR, DAY)).thenReturn(5);
+        lockedAs(Map.of(1L, HoldStatus.HELD.code));
+        SlotHold again = new SlotHold();
+        when(scheduling.confirm(eq(DOCTOR), eq(1L), any())).thenReturn(again);
+
+        List<CompletableFuture<SlotHold>> results = submitAll(1, 1);
+
+        assertEquals("CONFIRMED", results.get(0).get(1, TimeUnit.SECONDS).getHoldStatus());
+        assertSame(again, results.get(1).get(1, TimeUnit.SECONDS));
+        verify(holdJdbc).confirmAll(List.of(1L), List.of(1001L));
+        verify(scheduling, times(1)).confirm(eq(DOCTOR), eq(1L), any());
+        assertEquals(2, timed());
+    }
+
+    @Test
+    void holdChangedBeforeItWasLockedGetsTheDirectAnswer() throws Exception {
+        hold(1);
+        hold(2);
+        when(ledger.lockFree(DOCTOR, DAY)).thenReturn(5);
+        // hold 2 was released between the read and the lock
+        lockedAs(Map.of(1L, HoldStatus.HELD.code, 2L, HoldStatus.RELEASED.code));
+        when(scheduling.confirm(eq(DOCTOR), eq(2L), any())).thenThrow(new IllegalStateException("hold not HELD"));
+
+        List<CompletableFuture<SlotHold>> results = submitAll(1, 2);
+
+        assertEquals("CONFIRMED", results.get(0).get(1, TimeUnit.SECONDS).getHoldStatus());
+        assertEquals("hold not HELD", cause(results.get(1)).getMessage());
+        verify(ledger).bookLocked(DOCTOR, DAY, 1);
+        verify(holdJdbc).confirmAll(List.of(1L), List.of(1001L));
+        assertEquals(2, timed());
+    }
+
+    @Test
+    void failedGroupTransactionFallsBackToDirectAnswers() throws Exception {
+        hold(1);
+        hold(2);
+        when(ledger.lockFree(DOCTOR, DAY)).thenReturn(5);
+        lockedAs(Map.of(1L, HoldStatus.HELD.code, 2L, HoldStatus.HELD.code));
+        transactions.failCommit = true;
+        SlotHold direct = new SlotHold();
+        when(scheduling.confirm(eq(DOCTOR), eq(1L), any())).thenReturn(direct);
+        when(scheduling.confirm(eq(DOCTOR), eq(2L), any())).thenThrow(new IllegalStateException("daily capacity reached at confirm"));
+
+        List<CompletableFuture<SlotHold>> results = submitAll(1, 2);
+
+        assertSame(direct, results.get(0).get(1, TimeUnit.SECONDS));
+        assertInstanceOf(IllegalStateException.class, cause(results.get(1)));
+        // nothing from the rolled-back group reaches the index
+        assertTrue(occupancy.isFree(DOCTOR, NINE, NINE.plusMinutes(120)));
+        assertEquals(2, timed());
+    }
+
+    private void hold(long id) {
+        SlotHold h = new SlotHold();
+        h.setHoldId(id);
+        h.setDoctorId(DOCTOR);
+        h.setHoldStatus("HELD");
+        h.setSlotStart(NINE.plusMinutes(30 * id));
+        h.setSlotEnd(NINE.plusMinutes(30 * id + 30));
+        h.setVersion(0L);
+        table.put(id, h);
+    }
+
+    private void lockedAs(Map<Long, Short> statuses) {
+        when(holdJdbc.lockStatuses(anyCollection())).thenReturn(new HashMap<>(statuses));
+    }
+
+    /** Submits the confirms so that they form one batch, then lets the flusher run. */
+    private List<CompletableFuture<SlotHold>> submitAll(long... holdIds) throws InterruptedException {
+        when(holdRepo.findAllById(anyList())).thenAnswer(i -> {
+            List<SlotHold> found = new ArrayList<>();
+            for (Long id : i.<List<Long>>getArgument(0)) if (table.containsKey(id)) found.add(table.get(id));
+            return found;
+        });
+        occupancy.load(days -> {});
+        pipeline = new ConfirmPipeline(scheduling, mock(DoctorAdmissionLanes.class), holdRepo, holdJdbc, ledger, outbox,
+                occupancy, mock(HoldExpiryService.class), new SchedulingMetrics(meters, null), new TransactionTemplate(transactions),
+                meters, ConfirmPipeline.Mode.GROUPED, holdIds.length, 5_000, 100, 5_000);
+        pipeline.start();
+        List<CompletableFuture<SlotHold>> results = new ArrayList<>();
+        for (long id : holdIds) {
+            ConfirmRequest req = new ConfirmRequest();
+            req.appointmentId = 1000 + id;
+            results.add(pipeline.submit(DOCTOR, id, req));
+        }
+        return results;
+    }
+
+    private static RuntimeException cause(CompletableFuture<SlotHold> f) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> f.get(1, TimeUnit.SECONDS));
+        return (RuntimeException) e.getCause();
+    }
+
+    private long timed() throws InterruptedException {
+        // a future completes just before its sample is stopped; stopping joins the flusher
+        pipeline.stop();
+        return meters.find("scheduling.operation").tag("operation", "confirm_grouped").timers().stream().mapToLong(Timer::count).sum();
+    }
+
+    /** Runs transaction synchronizations like a real manager; commits can be made to fail. */
+    private static final class Transactions extends AbstractPlatformTransactionManager {
+        volatile boolean failCommit;
+
+        @Override
+        protected Object doGetTransaction() { return new Object(); }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {}
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+            if (failCommit) throw new TransactionSystemException("commit failed");
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {}
+    }
+}
@@ -0,0 +1,75 @@
+package org.hms.doctor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConsistentHashRingTest {
+    private static final int DOCTORS = 20_000;
+    private static final int VNODES = 128;
+
+    @Test
+    void emptyRingOwnsNothing() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of(), VNODES);
+        assertTrue(ring.isEmpty());
+        assertNull(ring.ownerOf(1));
+    }
+
+    @Test
+    void memberOrderDoesNotMatter() {
+        ConsistentHashRing a = new ConsistentHashRing(List.of("a", "b", "c"), VNODES);
+        ConsistentHashRing b = new ConsistentHashRing(List.of("c", "a", "b"), VNODES);
+        for (long d = 0; d < DOCTORS; d++) assertEquals(a.ownerOf(d), b.ownerOf(d));
+    }
+
+    @Test
+    void addingAMemberOnlyMovesDoctorsToIt() {
+        Map<Long, String> before = owners(new ConsistentHashRing(List.of("a", "b", "c", "d"), VNODES));
+        Map<Long, String> after = owners(new ConsistentHashRing(List.of("a", "b", "c", "d", "e"), VNODES));
+        int moved = 0;
+        for (long d = 0; d < DOCTORS; d++) {
+            if (before.get(d).equals(after.get(d))) continue;
+            assertEquals("e", after.get(d));
+            moved++;
+        }
+        // about 1/5 of the doctors; generous bounds for the virtual-node spread
+        assertTrue(moved > DOCTORS / 10 && moved < DOCTORS * 3 / 10, "moved " + moved);
+    }
+
+    @Test
+    void removingAMemberOnlyMovesItsDoctors() {
+        Map<Long, String> before = owners(new ConsistentHashRing(List.of("a", "b", "c", "d"), VNODES));
+        Map<Long, String> after = owners(new ConsistentHashRing(List.of("a", "b", "d"), VNODES));
+        for (long d = 0; d < DOCTORS; d++) {
+            if (!before.get(d).equals("c")) assertEquals(before.get(d), after.get(d));
+            else assertNotEquals("c", after.get(d));
+        }
+    }
+
+    @Test
+    void loadIsRoughlyEven() {
+        Map<String, Integer> counts = new HashMap<>();
+        owners(new ConsistentHashRing(List.of("a", "b", "c", "d"), VNODES)).values().forEach(m -> counts.merge(m, 1, Integer::sum));
+        assertEquals(4, counts.size());
+        counts.values().forEach(n -> assertTrue(n > DOCTORS / 8 && n < DOCTORS / 2, counts.toString()));
+    }
+
+    @Test
+    void rejectsZeroVirtualNodes() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of("a"), 0));
+    }
+
+    private static Map<Long, String> owners(ConsistentHashRing ring) {
+        Map<Long, String> m = new HashMap<>();
+        for (long d = 0; d < DOCTORS; d++) m.put(d, ring.ownerOf(d));
+        return m;
+    }
+}
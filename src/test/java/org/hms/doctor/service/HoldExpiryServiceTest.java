@@ -0,0 +1,76 @@
+package org.hms.doctor.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hms.doctor.model.SlotHold;
+import org.hms.doctor.repo.SlotEventJdbcRepository;
+import org.hms.doctor.repo.SlotHoldRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HoldExpiryServiceTest {
+    private static final long TICK_MS = 10;
+
+    private final SlotHoldRepository holdRepo = mock(SlotHoldRepository.class);
+    private final SlotEventJdbcRepository outbox = mock(SlotEventJdbcRepository.class);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private final HoldExpiryService expiry = new HoldExpiryService(holdRepo, new TransactionTemplate(mock(PlatformTransactionManager.class)),
+            meters, new SchedulingMetrics(meters, null), outbox, true, TICK_MS, 8, 500, Duration.ofSeconds(30));
+
+    @Test
+    void sweepReleasesHoldsReservedThroughAnotherReplica() throws InterruptedException {
+        OffsetDateTime deadline = OffsetDateTime.now(ZoneOffset.UTC).minusMinutes(1);
+        when(holdRepo.findHeldExpiredBefore(any(), any(Limit.class))).thenReturn(List.<Object[]>of(new Object[]{5L, 7L, deadline}));
+        SlotHold hold = hold(5L, deadline);
+        when(holdRepo.findExpiredHeldForUpdate(eq(List.of(5L)), any())).thenReturn(List.of(hold));
+
+        expiry.sweep();
+        Thread.sleep(3 * TICK_MS);
+        expiry.tick();
+
+        verify(holdRepo).markReleased(List.of(5L));
+        verify(outbox).appendAll(anyList());
+    }
+
+    @Test
+    void holdResolvedMeanwhileIsLeftAlone() throws InterruptedException {
+        OffsetDateTime deadline = OffsetDateTime.now(ZoneOffset.UTC).minusMinutes(1);
+        when(holdRepo.findHeldExpiredBefore(any(), any(Limit.class))).thenReturn(List.<Object[]>of(new Object[]{5L, 7L, deadline}));
+        // confirmed by its own replica between the sweep and the tick: the locked re-check finds nothing
+        when(holdRepo.findExpiredHeldForUpdate(anyList(), any())).thenReturn(List.of());
+
+        expiry.sweep();
+        Thread.sleep(3 * TICK_MS);
+        expiry.tick();
+
+        verify(holdRepo, never()).markReleased(anyList());
+    }
+
+    @Test
+    void failedSweepIsRetriedNextTime() {
+        when(holdRepo.findHeldExpiredBefore(any(), any(Limit.class))).thenThrow(new IllegalStateException("database down"));
+        expiry.sweep();
+    }
+
+    private static SlotHold hold(Long id, OffsetDateTime expiresAt) {
+        SlotHold h = new SlotHold();
+        h.setHoldId(id);
+        h.setDoctorId(7L);
+        h.setExpiresAt(expiresAt);
+        return h;
+    }
+}
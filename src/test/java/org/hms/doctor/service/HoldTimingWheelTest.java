@@ -0,0 +1,102 @@
+package org.hms.doctor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HoldTimingWheelTest {
+    // level spans: 40 ms, 160 ms, 640 ms, ...
+    private static final long TICK = 10;
+    private static final int SIZE = 4;
+
+    @Test
+    void firesOnceItsTickHasPassed() {
+        HoldTimingWheel wheel = new HoldTimingWheel(TICK, SIZE, 0);
+        wheel.schedule(1, 7, 29);
+        wheel.schedule(2, 7, 30);
+        assertTrue(wheel.advance(29).isEmpty());
+        assertEquals(List.of(1L), ids(wheel.advance(30)));
+        assertTrue(wheel.advance(39).isEmpty());
+        assertEquals(List.of(2L), ids(wheel.advance(40)));
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void farDeadlineCascadesDownThroughOverflowLevels() {
+        HoldTimingWheel wheel = new HoldTimingWheel(TICK, SIZE, 0);
+        wheel.schedule(1, 7, 500);
+        for (long t = 0; t < 510; t++) assertTrue(wheel.advance(t).isEmpty(), "fired early at " + t);
+        assertEquals(List.of(1L), ids(wheel.advance(510)));
+    }
+
+    @Test
+    void everyDeadlineFiresExactlyOnceWithinATick() {
+        long start = 1234;
+        Random rnd = new Random(42);
+        Map<Long, Long> deadlines = new HashMap<>();
+        for (long id = 0; id < 500; id++) deadlines.put(id, start + rnd.nextInt(5000));
+        for (boolean stepwise : new boolean[] {true, false}) {
+            HoldTimingWheel wheel = new HoldTimingWheel(TICK, SIZE, start);
+            deadlines.forEach((id, d) -> wheel.schedule(id, 7, d));
+            Map<Long, Long> firedAt = new HashMap<>();
+            for (long t = start; t <= start + 5100; t += stepwise ? 1 : 37) {
+                for (HoldTimingWheel.Entry e : wheel.advance(t)) {
+                    assertEquals(null, firedAt.put(e.holdId(), t), "fired twice: " + e);
+                }
+            }
+            assertEquals(deadlines.keySet(), firedAt.keySet());
+            long step = stepwise ? 1 : 37;
+            deadlines.forEach((id, d) -> {
+                long t = firedAt.get(id);
+                assertTrue(t > d && t <= d + TICK + step - 1, "deadline " + d + " fired at " + t);
+            });
+        }
+    }
+
+    @Test
+    void cancelledHoldNeverFires() {
+        HoldTimingWheel wheel = new HoldTimingWheel(TICK, SIZE, 0);
+        wheel.schedule(1, 7, 20);
+        wheel.schedule(2, 7, 300);
+        wheel.cancel(1);
+        wheel.cancel(2);
+        assertEquals(0, wheel.size());
+        assertTrue(wheel.advance(1000).isEmpty());
+    }
+
+    @Test
+    void rescheduleReplacesTheEarlierDeadline() {
+        HoldTimingWheel wheel = new HoldTimingWheel(TICK, SIZE, 0);
+        wheel.schedule(1, 7, 50);
+        wheel.schedule(1, 7, 300);
+        assertTrue(wheel.advance(100).isEmpty());
+        assertEquals(List.of(1L), ids(wheel.advance(310)));
+        assertTrue(wheel.advance(1000).isEmpty());
+    }
+
+    @Test
+    void pastDeadlineFiresOnTheNextTick() {
+        HoldTimingWheel wheel = new HoldTimingWheel(TICK, SIZE, 0);
+        wheel.advance(1000);
+        wheel.schedule(1, 7, 10);
+        assertTrue(wheel.advance(1009).isEmpty());
+        assertEquals(List.of(1L), ids(wheel.advance(1010)));
+    }
+
+    @Test
+    void rejectsDegenerateWheel() {
+        assertThrows(IllegalArgumentException.class, () -> new HoldTimingWheel(0, SIZE, 0));
+        assertThrows(IllegalArgumentException.class, () -> new HoldTimingWheel(TICK, 1, 0));
+    }
+
+    private static List<Long> ids(List<HoldTimingWheel.Entry> entries) {
+        return entries.stream().map(HoldTimingWheel.Entry::holdId).toList();
+    }
+}
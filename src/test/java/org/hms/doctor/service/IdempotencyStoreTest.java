@@ -0,0 +1,113 @@
+package org.hms.doctor.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hms.doctor.repo.IdempotencyKeyJdbcRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdempotencyStoreTest {
+    private static final String SCOPE = "admin:key-1";
+    private static final String REQUEST = "POST /v1/doctors/1/reserve {\"appointmentId\":5}";
+    private static final byte[] BODY = "{\"holdId\":9}".getBytes(StandardCharsets.UTF_8);
+
+    private JdbcTemplate jdbc;
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        jdbc = new JdbcTemplate(new DriverManagerDataSource("jdbc:h2:mem:" + UUID.randomUUID() + ";DB_CLOSE_DELAY=-1;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", ""));
+        jdbc.execute("""
+                create table idempotency_keys (
+                  idempotency_key varchar(300) primary key, fingerprint varchar(64), response_status int,
+                  response_body blob, claimed_at timestamp with time zone, expires_at timestamp with time zone)
+                """);
+    }
+
+    @Test
+    void retryReplaysTheRecordedResponse() {
+        IdempotencyStore store = store(false, Duration.ofSeconds(30));
+        assertNull(store.begin("reserve", SCOPE, REQUEST));
+        store.complete(SCOPE, 201, BODY);
+
+        IdempotencyStore.Replay replay = store.begin("reserve", SCOPE, REQUEST);
+        assertEquals(201, replay.status());
+        assertArrayEquals(BODY, replay.body());
+        assertEquals(1, count("replayed"));
+    }
+
+    @Test
+    void sameKeyWithADifferentBodyIsRejected() {
+        IdempotencyStore store = store(false, Duration.ofSeconds(30));
+        store.begin("reserve", SCOPE, REQUEST);
+        store.complete(SCOPE, 201, BODY);
+        assertThrows(IdempotencyKeyReusedException.class, () -> store.begin("reserve", SCOPE, REQUEST + " "));
+        assertEquals(1, count("mismatch"));
+    }
+
+    @Test
+    void retryWhileTheFirstRequestRunsIsRejected() {
+        IdempotencyStore store = store(false, Duration.ofSeconds(30));
+        store.begin("reserve", SCOPE, REQUEST);
+        assertThrows(IllegalStateException.class, () -> store.begin("reserve", SCOPE, REQUEST));
+        assertEquals(1, count("in_progress"));
+    }
+
+    @Test
+    void serverErrorsAndThrottlingReleaseTheKey() {
+        IdempotencyStore store = store(true, Duration.ofSeconds(30));
+        store.begin("release", SCOPE, REQUEST);
+        store.complete(SCOPE, 500, BODY);
+        assertNull(store.begin("release", SCOPE, REQUEST));
+        store.complete(SCOPE, 429, BODY);
+        assertNull(store.begin("release", SCOPE, REQUEST));
+
+        // a 409 is final and replayed
+        store.complete(SCOPE, 409, BODY);
+        assertEquals(409, store.begin("release", SCOPE, REQUEST).status());
+        assertEquals(3, count("executed"));
+    }
+
+    @Test
+    void otherReplicaReplaysAndRejectsFromTheTable() {
+        IdempotencyStore first = store(true, Duration.ofSeconds(30));
+        IdempotencyStore second = store(true, Duration.ofSeconds(30));
+        first.begin("confirm", SCOPE, REQUEST);
+        assertThrows(IllegalStateException.class, () -> second.begin("confirm", SCOPE, REQUEST));
+
+        first.complete(SCOPE, 200, BODY);
+        assertEquals(200, second.begin("confirm", SCOPE, REQUEST).status());
+        assertThrows(IdempotencyKeyReusedException.class, () -> second.begin("confirm", SCOPE, "other"));
+    }
+
+    @Test
+    void pendingKeyOfAStoppedReplicaIsTakenOverAfterTheLease() throws InterruptedException {
+        IdempotencyStore crashed = store(true, Duration.ofMillis(50));
+        IdempotencyStore survivor = store(true, Duration.ofMillis(50));
+        crashed.begin("reserve", SCOPE, REQUEST);
+        assertThrows(IllegalStateException.class, () -> survivor.begin("reserve", SCOPE, REQUEST));
+
+        Thread.sleep(100);
+        assertNull(survivor.begin("reserve", SCOPE, REQUEST));
+        survivor.complete(SCOPE, 201, BODY);
+        assertEquals(201, survivor.begin("reserve", SCOPE, REQUEST).status());
+    }
+
+    private IdempotencyStore store(boolean durable, Duration pendingLease) {
+        return new IdempotencyStore(new IdempotencyKeyJdbcRepository(jdbc), meters, durable, Duration.ofHours(1), 100, pendingLease);
+    }
+
+    private double count(String result) {
+        return meters.find("scheduling.idempotency").tag("result", result).counters().stream().mapToDouble(c -> c.count()).sum();
+    }
+}
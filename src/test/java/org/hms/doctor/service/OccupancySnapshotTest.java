@@ -0,0 +1,139 @@
+package org.hms.doctor.service;
+
+import org.hms.doctor.model.SlotEvent;
+import org.hms.doctor.repo.SlotEventJdbcRepository;
+import org.hms.doctor.repo.SlotHoldRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class OccupancySnapshotTest {
+    private static final OffsetDateTime TEN = OffsetDateTime.now(ZoneOffset.UTC).plusDays(2)
+            .withHour(10).withMinute(0).withSecond(0).withNano(0);
+
+    @TempDir
+    Path dir;
+    private Path file;
+    private final SlotEventJdbcRepository events = mock(SlotEventJdbcRepository.class);
+    private final SlotHoldRepository holdRepo = mock(SlotHoldRepository.class);
+
+    @BeforeEach
+    void setUp() {
+        file = dir.resolve("occupancy.snap");
+        when(events.findMaxId()).thenReturn(5L);
+        when(events.findAfter(anyLong(), anyInt())).thenReturn(List.of());
+    }
+
+    @Test
+    void roundTripKeepsEveryDayAndTheOffGridFlag() {
+        SlotOccupancyIndex source = loadedIndex();
+        source.occupy(1L, TEN, TEN.plusMinutes(60));
+        source.occupy(1L, TEN.plusDays(1), TEN.plusDays(1).plusMinutes(30));
+        OffsetDateTime offGrid = TEN.withOffsetSameLocal(ZoneOffset.ofHoursMinutes(5, 45));
+        source.occupy(2L, offGrid, offGrid.plusMinutes(30));
+        snapshot(source).write();
+
+        SlotOccupancyIndex restored = index();
+        assertTrue(snapshot(restored).restore());
+        assertTrue(restored.isReady());
+        assertEquals(days(source), days(restored));
+        assertFalse(restored.covers(2L, TEN, TEN.plusMinutes(30)));
+    }
+
+    @Test
+    void eventsAfterTheMarkAreReplayed() {
+        SlotOccupancyIndex source = loadedIndex();
+        source.occupy(1L, TEN, TEN.plusMinutes(30));
+        snapshot(source).write();
+
+        // released and archived after the snapshot: only the event is left
+        SlotEvent released = new SlotEvent();
+        released.setId(6L);
+        released.setHoldId(99L);
+        released.setDoctorId(1L);
+        released.setEventType("RELEASED");
+        released.setSlotStart(TEN);
+        released.setSlotEnd(TEN.plusMinutes(30));
+        when(events.findAfter(eq(5L), anyInt())).thenReturn(List.of(released));
+        when(holdRepo.findAllById(any())).thenReturn(List.of());
+
+        SlotOccupancyIndex restored = index();
+        assertTrue(snapshot(restored).restore());
+        assertTrue(restored.isFree(1L, TEN, TEN.plusMinutes(30)));
+    }
+
+    @Test
+    void corruptBodyFailsTheChecksum() throws IOException {
+        SlotOccupancyIndex source = loadedIndex();
+        source.occupy(1L, TEN, TEN.plusMinutes(30));
+        snapshot(source).write();
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(file, bytes);
+
+        SlotOccupancyIndex restored = index();
+        assertFalse(snapshot(restored).restore());
+        assertFalse(restored.isReady());
+    }
+
+    @Test
+    void wrongMagicOrTruncatedFileIsRejected() throws IOException {
+        snapshot(loadedIndex()).write();
+        byte[] bytes = Files.readAllBytes(file);
+        bytes[0] ^= 1;
+        Files.write(file, bytes);
+        assertFalse(snapshot(index()).restore());
+
+        Files.write(file, new byte[8]);
+        assertFalse(snapshot(index()).restore());
+    }
+
+    @Test
+    void missingOrAheadOfTheOutboxFallsBackToRebuild() {
+        assertFalse(snapshot(index()).restore());
+
+        snapshot(loadedIndex()).write();
+        when(events.findMaxId()).thenReturn(3L);
+        assertFalse(snapshot(index()).restore());
+    }
+
+    private SlotOccupancyIndex index() {
+        return new SlotOccupancyIndex(null, SlotOccupancyIndex.Mode.INDEX);
+    }
+
+    private SlotOccupancyIndex loadedIndex() {
+        SlotOccupancyIndex index = index();
+        index.load(days -> {});
+        return index;
+    }
+
+    private OccupancySnapshot snapshot(SlotOccupancyIndex index) {
+        return new OccupancySnapshot(index, events, holdRepo, true, file, Duration.ofHours(12), Duration.ofMinutes(1));
+    }
+
+    private static Map<Long, Map<Long, Long>> days(SlotOccupancyIndex index) {
+        Map<Long, Map<Long, Long>> days = new TreeMap<>();
+        index.forEachDay((doctorId, day, bits) -> days.computeIfAbsent(doctorId, k -> new TreeMap<>()).put(day, bits));
+        return days;
+    }
+}
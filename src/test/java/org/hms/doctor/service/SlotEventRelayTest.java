@@ -0,0 +1,117 @@
+package org.hms.doctor.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hms.doctor.model.SlotEvent;
+import org.hms.doctor.repo.SlotEventJdbcRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class SlotEventRelayTest {
+    private static final long DOCTOR = 7L;
+    private static final OffsetDateTime NINE = OffsetDateTime.of(2030, 3, 4, 9, 0, 0, 0, ZoneOffset.UTC);
+
+    // the committed rows of slot_events
+    private final List<SlotEvent> table = new ArrayList<>();
+    private final SlotEventJdbcRepository events = mock(SlotEventJdbcRepository.class);
+    private final SlotOccupancyIndex occupancy = new SlotOccupancyIndex(null, SlotOccupancyIndex.Mode.INDEX);
+    private final SimpleMeterRegistry meters = new SimpleMeterRegistry();
+    private SlotEventRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        when(events.findMaxId()).thenAnswer(i -> table.stream().mapToLong(SlotEvent::getId).max().orElse(0));
+        when(events.findAfter(anyLong(), anyInt())).thenAnswer(i -> {
+            long after = i.getArgument(0);
+            return table.stream().filter(e -> e.getId() > after)
+                    .sorted((a, b) -> Long.compare(a.getId(), b.getId())).limit((int) i.getArgument(1)).toList();
+        });
+        when(events.findByIds(any())).thenAnswer(i -> {
+            Collection<Long> ids = i.getArgument(0);
+            return table.stream().filter(e -> ids.contains(e.getId())).toList();
+        });
+        occupancy.load(days -> {});
+        table.add(event(10, "HELD", 0, Duration.ofMinutes(1)));
+        relay = new SlotEventRelay(events, mock(DoctorService.class), occupancy, new ObjectMapper().findAndRegisterModules(), meters,
+                64, Duration.ofSeconds(2), Duration.ofMinutes(2), Duration.ofHours(24), 16, 100, Duration.ofMinutes(1), 1);
+        relay.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        relay.stop();
+    }
+
+    @Test
+    void gapIsWaitedOnWithinGrace() {
+        table.add(event(12, "HELD", 1, Duration.ZERO));
+        relay.poll();
+        assertTrue(occupancy.isFree(DOCTOR, slot(1), slot(2)));
+
+        table.add(event(11, "HELD", 2, Duration.ZERO));
+        relay.poll();
+        assertFalse(occupancy.isFree(DOCTOR, slot(1), slot(2)));
+        assertFalse(occupancy.isFree(DOCTOR, slot(2), slot(3)));
+        assertEquals(0, meters.counter("scheduling.events.late").count());
+    }
+
+    @Test
+    void eventCommittedAfterTheGapWasSkippedIsStillApplied() {
+        table.add(event(12, "HELD", 1, Duration.ofSeconds(5)));
+        relay.poll();
+        assertFalse(occupancy.isFree(DOCTOR, slot(1), slot(2)));
+
+        // id 11 was handed out first but its transaction commits only now
+        table.add(event(11, "HELD", 2, Duration.ofSeconds(6)));
+        relay.poll();
+        assertFalse(occupancy.isFree(DOCTOR, slot(2), slot(3)));
+        assertEquals(1, meters.counter("scheduling.events.late").count());
+
+        relay.poll();
+        assertEquals(1, meters.counter("scheduling.events.late").count());
+    }
+
+    @Test
+    void lateReleaseFreesTheSlot() {
+        occupancy.occupy(DOCTOR, slot(3), slot(4));
+        table.add(event(13, "HELD", 1, Duration.ofSeconds(5)));
+        relay.poll();
+
+        table.add(event(12, "RELEASED", 3, Duration.ofSeconds(6)));
+        relay.poll();
+        assertTrue(occupancy.isFree(DOCTOR, slot(3), slot(4)));
+    }
+
+    private static OffsetDateTime slot(int n) {
+        return NINE.plusMinutes(30L * n);
+    }
+
+    private static SlotEvent event(long id, String type, int slot, Duration age) {
+        SlotEvent e = new SlotEvent();
+        e.setId(id);
+        e.setHoldId(100 + id);
+        e.setDoctorId(DOCTOR);
+        e.setEventType(type);
+        e.setSlotStart(slot(slot));
+        e.setSlotEnd(slot(slot + 1));
+        e.setCreatedAt(OffsetDateTime.now().minus(age));
+        return e;
+    }
+}
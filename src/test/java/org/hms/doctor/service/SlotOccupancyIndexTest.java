@@ -0,0 +1,91 @@
+package org.hms.doctor.service;
+
+import org.hms.doctor.model.SlotEvent;
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlotOccupancyIndexTest {
+    private static final Long DOCTOR = 7L;
+    private static final OffsetDateTime NINE = OffsetDateTime.of(2030, 3, 4, 9, 0, 0, 0, ZoneOffset.UTC);
+
+    private final SlotOccupancyIndex index = new SlotOccupancyIndex(null, SlotOccupancyIndex.Mode.INDEX);
+
+    @Test
+    void notReadyUntilFirstLoad() {
+        assertFalse(index.isReady());
+        index.load(days -> {});
+        assertTrue(index.isReady());
+    }
+
+    @Test
+    void vacateDuringLoadWinsOverStaleRead() {
+        index.load(days -> days.occupy(DOCTOR, NINE, NINE.plusMinutes(30)));
+        index.load(days -> {
+            // the loader read the hold as active, then it was released before the swap
+            days.occupy(DOCTOR, NINE, NINE.plusMinutes(30));
+            index.vacate(DOCTOR, NINE, NINE.plusMinutes(30));
+        });
+        assertTrue(index.isFree(DOCTOR, NINE, NINE.plusMinutes(30)));
+    }
+
+    @Test
+    void occupyDuringLoadSurvivesSwap() {
+        index.load(days -> {});
+        index.load(days -> index.occupy(DOCTOR, NINE, NINE.plusMinutes(60)));
+        assertFalse(index.isFree(DOCTOR, NINE.plusMinutes(30), NINE.plusMinutes(60)));
+    }
+
+    @Test
+    void currentGenerationAnswersWhileLoading() {
+        index.load(days -> days.occupy(DOCTOR, NINE, NINE.plusMinutes(30)));
+        index.load(days -> {
+            assertTrue(index.isReady());
+            assertFalse(index.isFree(DOCTOR, NINE, NINE.plusMinutes(30)));
+        });
+    }
+
+    @Test
+    void failedLoadKeepsCurrentGeneration() {
+        index.load(days -> days.occupy(DOCTOR, NINE, NINE.plusMinutes(30)));
+        assertThrows(IllegalStateException.class, () -> index.load(days -> { throw new IllegalStateException("boom"); }));
+        index.vacate(DOCTOR, NINE, NINE.plusMinutes(30));
+        assertTrue(index.isFree(DOCTOR, NINE, NINE.plusMinutes(30)));
+    }
+
+    @Test
+    void outboxEventsOccupyAndVacate() {
+        index.load(days -> {});
+        index.onEvent(event("HELD", NINE, NINE.plusMinutes(30)));
+        assertFalse(index.isFree(DOCTOR, NINE, NINE.plusMinutes(30)));
+        index.onEvent(event("EXPIRED", NINE, NINE.plusMinutes(30)));
+        assertTrue(index.isFree(DOCTOR, NINE, NINE.plusMinutes(30)));
+    }
+
+    @Test
+    void offGridHoldSendsTheDayToTheDatabase() {
+        index.load(days -> {});
+        OffsetDateTime start = OffsetDateTime.of(2030, 3, 4, 10, 0, 0, 0, ZoneOffset.ofHoursMinutes(5, 45));
+        assertTrue(index.covers(DOCTOR, NINE, NINE.plusMinutes(30)));
+        index.occupy(DOCTOR, start, start.plusMinutes(30));
+        assertFalse(index.covers(DOCTOR, NINE, NINE.plusMinutes(30)));
+        assertFalse(index.covers(DOCTOR.longValue() + 1, start, start.plusMinutes(30)));
+        index.vacate(DOCTOR, start, start.plusMinutes(30));
+        assertFalse(index.covers(DOCTOR, NINE, NINE.plusMinutes(30)));
+        assertTrue(index.covers(DOCTOR, NINE.plusDays(1), NINE.plusDays(1).plusMinutes(30)));
+    }
+
+    private static SlotEvent event(String type, OffsetDateTime start, OffsetDateTime end) {
+        SlotEvent e = new SlotEvent();
+        e.setDoctorId(DOCTOR);
+        e.setEventType(type);
+        e.setSlotStart(start);
+        e.setSlotEnd(end);
+        return e;
+    }
+}
@@ -0,0 +1,33 @@
+package org.hms.doctor.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SlotRulesTest {
+    private static final OffsetDateTime TEN = OffsetDateTime.of(2030, 3, 4, 10, 0, 0, 0, ZoneOffset.UTC);
+
+    @Test
+    void alignedOnTheHalfHourInTheClientOffset() {
+        assertTrue(SlotRules.isAligned(TEN, TEN.plusMinutes(60)));
+        OffsetDateTime kathmandu = OffsetDateTime.of(2030, 3, 4, 10, 0, 0, 0, ZoneOffset.ofHoursMinutes(5, 45));
+        assertTrue(SlotRules.isAligned(kathmandu, kathmandu.plusMinutes(30)));
+    }
+
+    @Test
+    void misalignedStartOrPartialSlotRejected() {
+        assertFalse(SlotRules.isAligned(TEN.plusMinutes(7), TEN.plusMinutes(37)));
+        assertFalse(SlotRules.isAligned(TEN, TEN.plusMinutes(45)));
+    }
+
+    @Test
+    void leadTimeCutoff() {
+        OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+        assertFalse(SlotRules.isWithinLeadTime(now.plusMinutes(30)));
+        assertTrue(SlotRules.isWithinLeadTime(now.plus(SlotRules.LEAD_TIME).plusMinutes(5)));
+    }
+}
@@ -0,0 +1,81 @@
+package org.hms.doctor.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hms.doctor.cache.CacheInvalidationBroadcaster;
+import org.hms.doctor.model.ScheduleRule;
+import org.hms.doctor.repo.DoctorRepository;
+import org.hms.doctor.repo.ScheduleRuleRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WorkingCalendarTest {
+    private static final Long DOCTOR = 1L;
+    // a Monday
+    private static final long DAY = LocalDate.of(2030, 3, 4).toEpochDay();
+
+    private final ScheduleRuleRepository ruleRepo = mock(ScheduleRuleRepository.class);
+    private final DoctorRepository doctorRepo = mock(DoctorRepository.class);
+    private final CacheInvalidationBroadcaster broadcaster = mock(CacheInvalidationBroadcaster.class);
+    private final WorkingCalendar calendar = new WorkingCalendar(ruleRepo, doctorRepo, broadcaster,
+            new SimpleMeterRegistry(), ZoneOffset.UTC, 100);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void templateChangeIsPublishedInsideTheTransaction() {
+        when(doctorRepo.existsById(DOCTOR)).thenReturn(true);
+        when(ruleRepo.saveAll(anyList())).thenAnswer(i -> i.getArgument(0));
+        when(ruleRepo.findByDoctorIdOrderById(DOCTOR)).thenReturn(List.of());
+        long before = calendar.workingMask(DOCTOR, DAY);
+
+        List<ScheduleRule> shift = List.of(shift(9, 17));
+        when(ruleRepo.findByDoctorIdOrderById(DOCTOR)).thenReturn(shift);
+        TransactionSynchronizationManager.initSynchronization();
+        calendar.replaceTemplate(DOCTOR, shift);
+
+        // before commit: the broadcast row must be part of the transaction, local masks still the old ones
+        verify(broadcaster).publish(DOCTOR);
+        assertEquals(before, calendar.workingMask(DOCTOR, DAY));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertNotEquals(before, calendar.workingMask(DOCTOR, DAY));
+        assertEquals(SlotGrid.mask(18, 34), calendar.workingMask(DOCTOR, DAY));
+    }
+
+    @Test
+    void invalidationFromAnotherReplicaDropsTheMasks() {
+        when(ruleRepo.findByDoctorIdOrderById(DOCTOR)).thenReturn(List.of());
+        long before = calendar.workingMask(DOCTOR, DAY);
+        when(ruleRepo.findByDoctorIdOrderById(DOCTOR)).thenReturn(List.of(shift(9, 17)));
+        assertEquals(before, calendar.workingMask(DOCTOR, DAY));
+
+        calendar.invalidateLocal(DOCTOR);
+        assertEquals(SlotGrid.mask(18, 34), calendar.workingMask(DOCTOR, DAY));
+    }
+
+    private static ScheduleRule shift(int fromHour, int toHour) {
+        ScheduleRule r = new ScheduleRule();
+        r.setKind(ScheduleRule.Kind.SHIFT);
+        r.setDayOfWeek(1);
+        r.setStartTime(LocalTime.of(fromHour, 0));
+        r.setEndTime(LocalTime.of(toHour, 0));
+        return r;
+    }
+}